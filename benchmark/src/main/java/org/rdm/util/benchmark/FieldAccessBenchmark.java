@@ -0,0 +1,126 @@
+/***************************************************************************************************
+*
+*	@(#)FieldAccessBenchmark.java
+*
+***************************************************************************************************/
+package org.rdm.util.benchmark;
+
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rdm.util.FieldRef;
+import org.rdm.util.ReflectionObject;
+
+
+/**
+*	The cost of reading the fields of a wrapped object the way <CODE>WifiConfigurationWrapper</CODE>
+*	reads them, through the cached accessors of {@link ReflectionObject}, against the lookup on
+*	every access they replaced and a {@link FieldRef} held by the caller.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldAccessBenchmark
+{
+	/** Stands for a WifiConfiguration. */
+	public static class Configuration
+	{
+		public enum IpAssignment { STATIC, DHCP, UNASSIGNED }
+
+		public int				disableReason = 3;
+		public IpAssignment		ipAssignment  = IpAssignment.DHCP;
+		private Object			linkProperties = new Object();
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public int	getIntFieldUncached() throws Exception
+	{
+		final Field field = myTarget.getClass().getField("disableReason");
+		return (Integer)field.get(myTarget);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public int	getIntField() throws Exception
+	{
+		return ReflectionObject.getIntField(myTarget,"disableReason");
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public int	fieldRefGetInt()
+	{
+		return myDisableReason.getInt(myTarget);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public String	getEnumFieldUncached() throws Exception
+	{
+		final Field field = myTarget.getClass().getField("ipAssignment");
+		return ((Enum)field.get(myTarget)).name();
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public String	getEnumField() throws Exception
+	{
+		return ReflectionObject.getEnumField(myTarget,"ipAssignment");
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public Object	getDeclaredFieldUncached() throws Exception
+	{
+		final Field field = myTarget.getClass().getDeclaredField("linkProperties");
+		field.setAccessible(true);
+		return field.get(myTarget);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public Object	getDeclaredField() throws Exception
+	{
+		return ReflectionObject.getDeclaredField(myTarget,"linkProperties");
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private final Configuration		myTarget        = new Configuration();
+	private final FieldRef			myDisableReason = new FieldRef(Configuration.class,"disableReason");
+
+}
@@ -0,0 +1,216 @@
+/***************************************************************************************************
+*
+*	@(#)LRUCacheBenchmark.java
+*
+***************************************************************************************************/
+package org.rdm.util.benchmark;
+
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rdm.util.LRUCache;
+
+
+/**
+*	The throughput and latency of {@link LRUCache} reads, writes and a read-mostly mix, for each
+*	eviction policy, at 1, 4 and 16 threads.
+*
+*	The keys follow a Zipf distribution over eight times as many keys as the cache holds, so that
+*	reads both hit and miss and writes both replace and evict.  They are drawn and boxed once,
+*	ahead of time, and each thread walks the sequence from its own starting point.
+*
+*	Run with <CODE>gradlew :benchmark:jmh</CODE>; a single thread count is chosen by class name,
+*	e.g. <CODE>-PjmhArgs="LRUCacheBenchmark.FourThreads"</CODE>.
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class LRUCacheBenchmark
+{
+	@Param({"LRU", "WINDOW_TINY_LFU", "SAMPLED"})
+	public LRUCache.Policy	policy;
+
+	@Param({"1000"})
+	public int				capacity;
+
+
+
+	/***************************************************************************************************
+	*
+	*	Create the cache and fill it from the key distribution, so that measuring starts in the
+	*	steady state.
+	*
+	***************************************************************************************************/
+	@Setup(Level.Trial)
+	public void	createCache()
+	{
+		myCache = new LRUCache.Builder<Integer,Integer>()
+		              .maximumSize(capacity)
+		              .concurrencyLevel(16)
+		              .policy(policy)
+		              .build();
+
+		myKeys = zipfKeys(capacity,KEY_COUNT,SEED);
+		for (int i = 0; i < myKeys.length; ++i)
+		{
+			myCache.put(myKeys[i],myKeys[i]);
+		}
+	}
+
+
+
+	/**
+	*	The position of one thread in the key sequence.
+	*/
+	@State(Scope.Thread)
+	public static class KeyPosition
+	{
+		@Setup(Level.Trial)
+		public void	start()
+		{
+			myIndex = ourNextStart.getAndAdd(KEY_COUNT / 16 + 1);
+		}
+
+		int	next()
+		{
+			return myIndex++ & (KEY_COUNT - 1);
+		}
+
+		private static final AtomicInteger	ourNextStart = new AtomicInteger();
+
+		private int	myIndex;
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public Integer	get(KeyPosition position_i)
+	{
+		return myCache.get(myKeys[position_i.next()]);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public void	put(KeyPosition position_i)
+	{
+		final Integer key = myKeys[position_i.next()];
+		myCache.put(key,key);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Read, and store the key on a miss, as a cache in front of a computation does.
+	*
+	***************************************************************************************************/
+	@Benchmark
+	public Integer	mixed(KeyPosition position_i)
+	{
+		final Integer key   = myKeys[position_i.next()];
+		final Integer value = myCache.get(key);
+		if (value != null)
+		{
+			return value;
+		}
+		myCache.put(key,key);
+		return key;
+	}
+
+
+
+	/***************************************************************************************************/
+	@Threads(1)
+	public static class OneThread extends LRUCacheBenchmark
+	{
+	}
+
+
+
+	/***************************************************************************************************/
+	@Threads(4)
+	public static class FourThreads extends LRUCacheBenchmark
+	{
+	}
+
+
+
+	/***************************************************************************************************/
+	@Threads(16)
+	public static class SixteenThreads extends LRUCacheBenchmark
+	{
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/** The length of the key sequence; a power of two. */
+	private static final int	KEY_COUNT = 1 << 16;
+
+	private static final long	SEED = 42;
+
+
+	private LRUCache<Integer,Integer>	myCache;
+	private Integer[]					myKeys;
+
+
+
+	/***************************************************************************************************
+	*
+	*	Draw keys from a Zipf distribution (exponent 1) over eight times the capacity of the cache,
+	*	then scatter the ranks so that the popular keys do not share segments.
+	*
+	***************************************************************************************************/
+	private static Integer[]	zipfKeys(int capacity_i, int count_i, long seed_i)
+	{
+		final int keySpace = 8 * capacity_i;
+		final double[] cumulative = new double[keySpace];
+		double total = 0;
+		for (int rank = 0; rank < keySpace; ++rank)
+		{
+			total += 1.0 / (rank + 1);
+			cumulative[rank] = total;
+		}
+
+		final Random random = new Random(seed_i);
+		final Integer[] keys = new Integer[count_i];
+		for (int i = 0; i < count_i; ++i)
+		{
+			int rank = Arrays.binarySearch(cumulative,random.nextDouble() * total);
+			if (rank < 0)
+			{
+				rank = -rank - 1;
+			}
+			keys[i] = Integer.valueOf(rank * 0x9E3779B9);
+		}
+		return keys;
+	}
+
+}
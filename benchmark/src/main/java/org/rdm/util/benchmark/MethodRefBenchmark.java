@@ -0,0 +1,155 @@
+/***************************************************************************************************
+*
+*	@(#)MethodRefBenchmark.java
+*
+***************************************************************************************************/
+package org.rdm.util.benchmark;
+
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rdm.util.MethodRef;
+import org.rdm.util.ReflectionUtils;
+
+
+/**
+*	The cost of a reflective call through a {@link MethodRef}, against a direct
+*	{@link Method#invoke} and a call by name through {@link ReflectionUtils}, the way a
+*	<CODE>ReflectionObject</CODE> wrapper makes it.
+*
+*	The inflation threshold <CODE>0</CODE> measures the reflective backend; any other measures the
+*	generated invoker that replaces it after the warmup.  <CODE>methodRef</CODE> returns the
+*	<CODE>int</CODE> without boxing, <CODE>methodRefObject</CODE> boxes it as
+*	{@link Method#invoke} does.  <CODE>methodRefPrimitiveArguments</CODE> passes the
+*	<CODE>int</CODE> arguments without boxing them either; run with <CODE>-prof gc</CODE> to see that
+*	it allocates nothing once inflated.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodRefBenchmark
+{
+	/***************************************************************************************************/
+	@Setup
+	public void	setUp()
+	{
+		MethodRef.setInflationThreshold(inflationThreshold);
+		myLength  = new MethodRef(String.class,"length");
+		myIndexOf = new MethodRef(String.class,"indexOf",int.class,int.class);
+		MethodRef.setInflationThreshold(0);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public int	methodRef()
+	{
+		return myLength.invokeInt(myTarget);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public Object	methodRefObject()
+	{
+		return myLength.invoke(myTarget);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public Object	methodInvoke() throws Exception
+	{
+		return LENGTH_METHOD.invoke(myTarget);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public Object	methodRefWithArguments()
+	{
+		return myIndexOf.invoke(myTarget,myCharacter,myFromIndex);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public int	methodRefPrimitiveArguments()
+	{
+		return myIndexOf.invokeIntSlots(myTarget,myCharacterValue,myFromIndexValue);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public Object	methodInvokeWithArguments() throws Exception
+	{
+		return INDEX_OF_METHOD.invoke(myTarget,myCharacter,myFromIndex);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public Object	invokeByName()
+	{
+		return ReflectionUtils.invokeMethodWithoutThrowing(myTarget,"length");
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static final Method		LENGTH_METHOD;
+	private static final Method		INDEX_OF_METHOD;
+	static
+	{
+		try
+		{
+			LENGTH_METHOD   = String.class.getMethod("length");
+			INDEX_OF_METHOD = String.class.getMethod("indexOf",int.class,int.class);
+		}
+		catch (NoSuchMethodException e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+
+	@Param({ "0", "1000" })
+	public int	inflationThreshold;
+
+	private final String	myTarget    = "benchmark";
+	private final Integer	myCharacter = Integer.valueOf('m');
+	private final Integer	myFromIndex = Integer.valueOf(1);
+	private int				myCharacterValue = 'm';
+	private int				myFromIndexValue = 1;
+	private MethodRef		myLength;
+	private MethodRef		myIndexOf;
+
+}
@@ -0,0 +1,66 @@
+/***************************************************************************************************
+*
+*	@(#)ReflectionUtilsBenchmark.java
+*
+***************************************************************************************************/
+package org.rdm.util.benchmark;
+
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rdm.util.ReflectionUtils;
+
+
+/**
+*	The cost of finding a method through {@link ReflectionUtils} when the method cache already
+*	holds it, which is the cost every reflective call pays.
+*
+*	Run with the GC profiler to see the allocation per lookup, which should be none:
+*	<CODE>gradlew :benchmark:jmh -PjmhArgs="-prof gc ReflectionUtilsBenchmark"</CODE>.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReflectionUtilsBenchmark
+{
+	/***************************************************************************************************/
+	@Benchmark
+	public Method	findMethodWithoutParameters() throws Exception
+	{
+		return ReflectionUtils.geMethodThatBestMatches(String.class,"length",myNoParameterTypes);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Benchmark
+	public Method	findMethodWithParameters() throws Exception
+	{
+		return ReflectionUtils.geMethodThatBestMatches(String.class,"substring",myTwoParameterTypes);
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private final Class[]	myNoParameterTypes  = new Class[0];
+	private final Class[]	myTwoParameterTypes = { Integer.class, Integer.class };
+
+}
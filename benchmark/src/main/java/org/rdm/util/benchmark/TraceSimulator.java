@@ -0,0 +1,214 @@
+/***************************************************************************************************
+*
+*	@(#)TraceSimulator.java
+*
+***************************************************************************************************/
+package org.rdm.util.benchmark;
+
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.rdm.util.LRUCache;
+
+
+/**
+*	Replays a recorded trace of cache keys against an {@link LRUCache} of each eviction policy and
+*	each given capacity, and prints the hit ratios, so that a capacity or policy can be chosen
+*	from the real access pattern of an application.
+*
+*	Every access is a read that, on a miss, stores the key, as a cache in front of a computation
+*	does.  The caches have one segment, so the results are those of the exact policies.
+*
+*	<PRE>
+*	TraceSimulator [-arc] trace-file [capacity ...]
+*	</PRE>
+*
+*	A trace holds one access per line, the key being the first word of the line; blank lines and
+*	lines starting with <CODE>#</CODE> are skipped.  With <CODE>-arc</CODE> the lines are in the
+*	format of the ARC traces (first block, block count, ignored, request number), and each line
+*	reads the given number of consecutive blocks.  A trace whose name ends in <CODE>.gz</CODE> is
+*	decompressed.  The capacities default to 100, 1000 and 10000 entries.
+*
+*	Run with <CODE>gradlew :benchmark:simulate -PtraceArgs="..."</CODE>.
+*/
+public final class TraceSimulator
+{
+	/***************************************************************************************************/
+	public static void	main(String[] arguments_i) throws IOException
+	{
+		int argument = 0;
+		boolean arcFormat = false;
+		if ((arguments_i.length > 0) && arguments_i[0].equals("-arc"))
+		{
+			arcFormat = true;
+			++argument;
+		}
+		if (argument >= arguments_i.length)
+		{
+			System.err.println("usage: TraceSimulator [-arc] trace-file [capacity ...]");
+			System.exit(2);
+		}
+
+		final String fileName = arguments_i[argument++];
+		final long[] trace = readTrace(fileName,arcFormat);
+
+		final List<Integer> capacities = new ArrayList<Integer>();
+		for (; argument < arguments_i.length; ++argument)
+		{
+			capacities.add(Integer.valueOf(arguments_i[argument]));
+		}
+		if (capacities.isEmpty())
+		{
+			capacities.addAll(Arrays.asList(100,1000,10000));
+		}
+
+		final Set<Long> distinctKeys = new HashSet<Long>();
+		for (int i = 0; i < trace.length; ++i)
+		{
+			distinctKeys.add(trace[i]);
+		}
+		System.out.println(fileName + ": " + trace.length + " accesses, " + distinctKeys.size() + " distinct keys");
+
+		final LRUCache.Policy[] policies = LRUCache.Policy.values();
+		System.out.printf("%10s","capacity");
+		for (int i = 0; i < policies.length; ++i)
+		{
+			System.out.printf("%18s",policies[i]);
+		}
+		System.out.println();
+
+		for (int capacity : capacities)
+		{
+			System.out.printf("%10d",capacity);
+			for (int i = 0; i < policies.length; ++i)
+			{
+				System.out.printf("%16.2f %%",100 * simulate(trace,capacity,policies[i]));
+			}
+			System.out.println();
+		}
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Replay a trace against a new cache.
+	*
+	*		@return		The hit ratio.
+	*
+	***************************************************************************************************/
+	public static double	simulate(long[] trace_i, int capacity_i, LRUCache.Policy policy_i)
+	{
+		final LRUCache<Long,Long> cache = new LRUCache.Builder<Long,Long>()
+		                                      .maximumSize(capacity_i)
+		                                      .policy(policy_i)
+		                                      .recordStats(true)
+		                                      .build();
+		for (int i = 0; i < trace_i.length; ++i)
+		{
+			final Long key = Long.valueOf(trace_i[i]);
+			if (cache.get(key) == null)
+			{
+				cache.put(key,key);
+			}
+		}
+		return cache.stats().hitRatio();
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Read the keys of a trace file.  Numeric keys are kept as they are; other words are numbered
+	*	in order of appearance, with negative numbers.
+	*
+	***************************************************************************************************/
+	public static long[]	readTrace(String fileName_i, boolean arcFormat_i) throws IOException
+	{
+		InputStream input = new FileInputStream(fileName_i);
+		if (fileName_i.endsWith(".gz"))
+		{
+			input = new GZIPInputStream(input);
+		}
+
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(input,"UTF-8"));
+		try
+		{
+			final Map<String,Long> wordKeys = new HashMap<String,Long>();
+			long[] trace = new long[1024];
+			int length = 0;
+			for (String line; (line = reader.readLine()) != null;)
+			{
+				final String trimmedLine = line.trim();
+				if ((trimmedLine.length() == 0) || trimmedLine.startsWith("#"))
+				{
+					continue;
+				}
+
+				final String[] words = trimmedLine.split("\\s+");
+				final long first = keyFor(words[0],wordKeys);
+				final long count = arcFormat_i ? Long.parseLong(words[1]) : 1;
+				for (long block = 0; block < count; ++block)
+				{
+					if (length == trace.length)
+					{
+						trace = Arrays.copyOf(trace,2 * length);
+					}
+					trace[length++] = first + block;
+				}
+			}
+			return Arrays.copyOf(trace,length);
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/***************************************************************************************************/
+	private TraceSimulator()
+	{
+	}
+
+
+
+	/***************************************************************************************************/
+	private static long	keyFor(String word_i, Map<String,Long> wordKeys_io)
+	{
+		try
+		{
+			return Long.parseLong(word_i);
+		}
+		catch (NumberFormatException e)
+		{
+			Long key = wordKeys_io.get(word_i);
+			if (key == null)
+			{
+				key = Long.valueOf(-1 - wordKeys_io.size());
+				wordKeys_io.put(word_i,key);
+			}
+			return key;
+		}
+	}
+
+}
@@ -0,0 +1,36 @@
+package com.sr105.ntp;
+
+import org.rdm.util.ReflectedClass;
+
+/**
+ * The members of Android's hidden android.net.SntpClient class that
+ * {@link SntpClient} uses. The reflection processor generates the wrapper
+ * that calls them, AndroidSntpClientWrapped.
+ */
+@ReflectedClass("android.net.SntpClient")
+interface AndroidSntpClient
+{
+    /**
+     * Sends an SNTP request to the given host and processes the response.
+     *
+     * @param host    host name of the server.
+     * @param timeout network timeout in milliseconds.
+     * @return true if the transaction was successful.
+     */
+    boolean requestTime(String host, int timeout);
+
+    /**
+     * Returns the time computed from the NTP transaction.
+     *
+     * @return time value computed from NTP server response.
+     */
+    long getNtpTime();
+
+    /**
+     * Returns the reference clock value (value of SystemClock.elapsedRealtime())
+     * corresponding to the NTP time.
+     *
+     * @return reference clock corresponding to the NTP time.
+     */
+    long getNtpTimeReference();
+}
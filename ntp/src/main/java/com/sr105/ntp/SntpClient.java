@@ -2,18 +2,15 @@ package com.sr105.ntp;
 
 import android.os.SystemClock;
 
-import org.rdm.util.ReflectionObject;
-
 import java.util.Date;
 
 /**
  * SntpClient is a proxy (using reflection) of Android's hidden
- * android.net.SntpClient class.
+ * android.net.SntpClient class. Its members are declared by
+ * {@link AndroidSntpClient}.
  */
-public class SntpClient extends ReflectionObject
+public class SntpClient extends AndroidSntpClientWrapped
 {
-    public final String className() { return "android.net.SntpClient"; }
-
     /**
      * Sends an SNTP request to the given host and processes the response.
      *
@@ -39,37 +36,4 @@ public class SntpClient extends ReflectionObject
         }
         return null;
     }
-
-    /**
-     * Sends an SNTP request to the given host and processes the response.
-     *
-     * @param host    host name of the server.
-     * @param timeout network timeout in milliseconds.
-     * @return true if the transaction was successful.
-     */
-    public boolean requestTime(String host, int timeout)
-    {
-        return invokeBooleanMethod("requestTime", host, timeout);
-    }
-
-    /**
-     * Returns the time computed from the NTP transaction.
-     *
-     * @return time value computed from NTP server response.
-     */
-    public long getNtpTime()
-    {
-        return invokeLongMethod("getNtpTime");
-    }
-
-    /**
-     * Returns the reference clock value (value of SystemClock.elapsedRealtime())
-     * corresponding to the NTP time.
-     *
-     * @return reference clock corresponding to the NTP time.
-     */
-    public long getNtpTimeReference()
-    {
-        return invokeLongMethod("getNtpTimeReference");
-    }
 }
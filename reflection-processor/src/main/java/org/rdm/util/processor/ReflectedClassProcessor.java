@@ -0,0 +1,489 @@
+/***************************************************************************************************
+*
+*	@(#)ReflectedClassProcessor.java
+*
+***************************************************************************************************/
+package org.rdm.util.processor;
+
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+import org.rdm.util.ReflectedClass;
+import org.rdm.util.ReflectedMethod;
+
+
+/**
+*	Generates the {@link org.rdm.util.ReflectionObject} subclass of each interface annotated with
+*	{@link ReflectedClass}, so that a wrapper of a hidden class is declared rather than written.
+*
+*	For an interface <CODE>Foo</CODE>, the generated <CODE>FooWrapped</CODE> holds a
+*	{@link org.rdm.util.MethodRef} per method, all resolved in one pass when the class is loaded;
+*	the methods missing on the running system are listed by its static
+*	<CODE>missingMembers()</CODE>, and printed once.  Each method of the interface calls its
+*	{@link org.rdm.util.MethodRef}, without looking anything up; methods of up to two parameters
+*	returning an <CODE>int</CODE>, <CODE>long</CODE> or <CODE>boolean</CODE> use the typed calls,
+*	which do not box the value.  Where their integral and <CODE>boolean</CODE> arguments fit the
+*	primitive slots of the <CODE>Slots</CODE> calls, they are passed there, without boxing them
+*	either.  The class is not final, so that a hand-written wrapper can extend it with
+*	constructors and conveniences of its own.
+*
+*	The interface must be accessible from its package and may neither be generic nor extend other
+*	interfaces.
+*/
+@SupportedAnnotationTypes({ "org.rdm.util.ReflectedClass", "org.rdm.util.ReflectedMethod" })
+public final class ReflectedClassProcessor extends AbstractProcessor
+{
+	/***************************************************************************************************/
+	public SourceVersion	getSupportedSourceVersion()
+	{
+		return SourceVersion.latestSupported();
+	}
+
+
+
+	/***************************************************************************************************/
+	public boolean	process(Set<? extends TypeElement> annotations_i, RoundEnvironment round_i)
+	{
+		for (Element element : round_i.getElementsAnnotatedWith(ReflectedClass.class))
+		{
+			if (element.getKind() == ElementKind.PARAMETER)
+			{
+				continue;								// handled with its method
+			}
+			if (element.getKind() != ElementKind.INTERFACE)
+			{
+				error(element,"@ReflectedClass must annotate an interface or a parameter");
+				continue;
+			}
+
+			final TypeElement wrappedInterface = (TypeElement)element;
+			if (isValid(wrappedInterface))
+			{
+				try
+				{
+					writeWrapper(wrappedInterface);
+				}
+				catch (IOException e)
+				{
+					error(wrappedInterface,"cannot write the wrapper: " + e);
+				}
+			}
+		}
+		return true;
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static final String		WRAPPER_SUFFIX = "Wrapped";
+	private static final String		METHOD_REF     = "org.rdm.util.MethodRef";
+
+
+
+	/***************************************************************************************************/
+	private boolean	isValid(TypeElement interface_i)
+	{
+		boolean valid = true;
+		if (interface_i.getModifiers().contains(Modifier.PRIVATE))
+		{
+			error(interface_i,"a @ReflectedClass interface must not be private");
+			valid = false;
+		}
+		if (!interface_i.getTypeParameters().isEmpty())
+		{
+			error(interface_i,"a @ReflectedClass interface must not be generic");
+			valid = false;
+		}
+		if (!interface_i.getInterfaces().isEmpty())
+		{
+			error(interface_i,"a @ReflectedClass interface must not extend other interfaces");
+			valid = false;
+		}
+		for (ExecutableElement method : ElementFilter.methodsIn(interface_i.getEnclosedElements()))
+		{
+			if (!method.getTypeParameters().isEmpty())
+			{
+				error(method,"a @ReflectedClass method must not be generic");
+				valid = false;
+			}
+			for (VariableElement parameter : method.getParameters())
+			{
+				final ReflectedClass parameterClass = parameter.getAnnotation(ReflectedClass.class);
+				if ((parameterClass != null) && (parameter.asType().getKind() != TypeKind.DECLARED))
+				{
+					error(parameter,"a @ReflectedClass parameter must be an Object or a ReflectionObject");
+					valid = false;
+				}
+			}
+		}
+		return valid;
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	writeWrapper(TypeElement interface_i) throws IOException
+	{
+		final String packageName = processingEnv.getElementUtils().getPackageOf(interface_i).getQualifiedName().toString();
+		final String wrapperName = interface_i.getSimpleName() + WRAPPER_SUFFIX;
+		final String wrappedClassName = interface_i.getAnnotation(ReflectedClass.class).value();
+
+		final List<ExecutableElement> methods = new ArrayList<ExecutableElement>();
+		for (ExecutableElement method : ElementFilter.methodsIn(interface_i.getEnclosedElements()))
+		{
+			if (method.getModifiers().contains(Modifier.ABSTRACT))
+			{
+				methods.add(method);
+			}
+		}
+		final List<String> constants = constantNames(methods);
+
+		final StringBuilder source = new StringBuilder();
+		if (packageName.length() > 0)
+		{
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		source.append("/**\n");
+		source.append(" * Wraps {@code ").append(wrappedClassName).append("} through {@link ").append(interface_i.getQualifiedName()).append("}.\n");
+		source.append(" *\n");
+		source.append(" * Generated by ").append(ReflectedClassProcessor.class.getName()).append("; do not edit.\n");
+		source.append(" */\n");
+		source.append("public class ").append(wrapperName).append(" extends org.rdm.util.ReflectionObject implements ").append(interface_i.getQualifiedName()).append("\n");
+		source.append("{\n");
+		source.append("    public static final String CLASS_NAME = \"").append(escape(wrappedClassName)).append("\";\n\n");
+
+		boolean needsClassForName = false;
+		for (int i = 0; i < methods.size(); ++i)
+		{
+			final ExecutableElement method = methods.get(i);
+			final ReflectedMethod reflectedMethod = method.getAnnotation(ReflectedMethod.class);
+			final String methodName = (reflectedMethod != null) ? reflectedMethod.value() : method.getSimpleName().toString();
+
+			source.append("    private static final ").append(METHOD_REF).append(" ").append(constants.get(i)).append(" =\n");
+			source.append("            new ").append(METHOD_REF).append("(CLASS_NAME, \"").append(escape(methodName)).append("\"");
+			for (VariableElement parameter : method.getParameters())
+			{
+				final ReflectedClass parameterClass = parameter.getAnnotation(ReflectedClass.class);
+				if (parameterClass != null)
+				{
+					source.append(", classForName(\"").append(escape(parameterClass.value())).append("\")");
+					needsClassForName = true;
+				}
+				else
+				{
+					source.append(", ").append(processingEnv.getTypeUtils().erasure(parameter.asType())).append(".class");
+				}
+			}
+			source.append(");\n");
+		}
+
+		source.append("\n");
+		source.append("    // resolved all at once, when the class is loaded\n");
+		source.append("    private static final java.util.List<String> MISSING_MEMBERS = ").append(METHOD_REF).append(".findMissing(");
+		for (int i = 0; i < constants.size(); ++i)
+		{
+			source.append((i > 0) ? ", " : "").append(constants.get(i));
+		}
+		source.append(");\n\n");
+		source.append("    static\n");
+		source.append("    {\n");
+		source.append("        if (!MISSING_MEMBERS.isEmpty())\n");
+		source.append("        {\n");
+		source.append("            System.out.println(CLASS_NAME + \" is missing \" + MISSING_MEMBERS);\n");
+		source.append("        }\n");
+		source.append("    }\n\n");
+
+		source.append("    // Whether every method exists on this system\n");
+		source.append("    public static boolean isAvailable()\n");
+		source.append("    {\n");
+		source.append("        return MISSING_MEMBERS.isEmpty();\n");
+		source.append("    }\n\n");
+		source.append("    public static java.util.List<String> missingMembers()\n");
+		source.append("    {\n");
+		source.append("        return MISSING_MEMBERS;\n");
+		source.append("    }\n\n");
+
+		source.append("    @Override\n");
+		source.append("    public String className() { return CLASS_NAME; }\n\n");
+		source.append("    // Create a new object with the default constructor\n");
+		source.append("    public ").append(wrapperName).append("()\n");
+		source.append("    {\n");
+		source.append("        super();\n");
+		source.append("    }\n\n");
+		source.append("    // Wrap an existing object\n");
+		source.append("    public ").append(wrapperName).append("(Object object)\n");
+		source.append("    {\n");
+		source.append("        super(object);\n");
+		source.append("    }\n\n");
+		source.append("    // Create a new object using a constructor matching types\n");
+		source.append("    protected ").append(wrapperName).append("(Class<?>[] types, Object... args)\n");
+		source.append("    {\n");
+		source.append("        super(types, args);\n");
+		source.append("    }\n");
+
+		for (int i = 0; i < methods.size(); ++i)
+		{
+			source.append("\n");
+			writeMethod(source,methods.get(i),constants.get(i));
+		}
+
+		if (needsClassForName)
+		{
+			source.append("\n");
+			source.append("    private static Class<?> classForName(String className)\n");
+			source.append("    {\n");
+			source.append("        try\n");
+			source.append("        {\n");
+			source.append("            return Class.forName(className);\n");
+			source.append("        }\n");
+			source.append("        catch (ClassNotFoundException ignored)\n");
+			source.append("        {\n");
+			source.append("            return null;\n");
+			source.append("        }\n");
+			source.append("    }\n");
+		}
+		source.append("}\n");
+
+		final String qualifiedName = (packageName.length() > 0) ? packageName + "." + wrapperName : wrapperName;
+		final Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName,interface_i).openWriter();
+		try
+		{
+			writer.write(source.toString());
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	writeMethod(StringBuilder source_io, ExecutableElement method_i, String constant_i)
+	{
+		final TypeMirror returnType = method_i.getReturnType();
+		if (isUncheckedCast(returnType))
+		{
+			source_io.append("    @SuppressWarnings(\"unchecked\")\n");
+		}
+		source_io.append("    @Override\n");
+		source_io.append("    public ").append(returnType).append(" ").append(method_i.getSimpleName()).append("(");
+
+		final List<? extends VariableElement> parameters = method_i.getParameters();
+		final boolean[] slots = new boolean[parameters.size()];
+		for (int i = 0; i < parameters.size(); ++i)
+		{
+			slots[i] = (parameters.get(i).getAnnotation(ReflectedClass.class) == null) && takesPrimitiveSlot(parameters.get(i).asType().getKind());
+		}
+		// the calls of up to two arguments take the integral and boolean ones in primitive slots,
+		// either the last argument or both
+		final boolean useSlots = ((parameters.size() == 1) && slots[0])
+		                      || ((parameters.size() == 2) && slots[1]);
+		final String suffix = useSlots ? "Slots" : "";
+
+		final StringBuilder arguments = new StringBuilder();
+		for (int i = 0; i < parameters.size(); ++i)
+		{
+			final VariableElement parameter = parameters.get(i);
+			final String name = parameter.getSimpleName().toString();
+			source_io.append((i > 0) ? ", " : "").append(parameter.asType()).append(" ").append(name);
+
+			// a wrapper passed for a wrapped type passes the object it wraps; a boolean passed in a
+			// primitive slot passes 0 or 1
+			final boolean unwrap = (parameter.getAnnotation(ReflectedClass.class) != null) && !isObject(parameter.asType());
+			if (unwrap)
+			{
+				arguments.append(", (").append(name).append(" != null) ? ").append(name).append(".getObject() : null");
+			}
+			else if (useSlots && slots[i] && (parameter.asType().getKind() == TypeKind.BOOLEAN))
+			{
+				arguments.append(", ").append(name).append(" ? 1 : 0");
+			}
+			else
+			{
+				arguments.append(", ").append(name);
+			}
+		}
+		source_io.append(")");
+		final List<? extends TypeMirror> thrownTypes = method_i.getThrownTypes();
+		for (int i = 0; i < thrownTypes.size(); ++i)
+		{
+			source_io.append((i > 0) ? ", " : " throws ").append(thrownTypes.get(i));
+		}
+		source_io.append("\n");
+		source_io.append("    {\n");
+
+		final String call;
+		if (parameters.size() <= 2)
+		{
+			call = constant_i + ".invoke" + suffix + "(mObject" + arguments + ")";
+		}
+		else
+		{
+			call = constant_i + ".invokeWithArguments(mObject, new Object[] {" + arguments.substring(1) + " })";
+		}
+
+		final TypeKind kind = returnType.getKind();
+		if (kind == TypeKind.VOID)
+		{
+			source_io.append("        ").append(call).append(";\n");
+		}
+		else if ((parameters.size() <= 2) && (kind == TypeKind.INT))
+		{
+			source_io.append("        return ").append(constant_i).append(".invokeInt").append(suffix).append("(mObject").append(arguments).append(");\n");
+		}
+		else if ((parameters.size() <= 2) && (kind == TypeKind.LONG))
+		{
+			source_io.append("        return ").append(constant_i).append(".invokeLong").append(suffix).append("(mObject").append(arguments).append(");\n");
+		}
+		else if ((parameters.size() <= 2) && (kind == TypeKind.BOOLEAN))
+		{
+			source_io.append("        return ").append(constant_i).append(".invokeBoolean").append(suffix).append("(mObject").append(arguments).append(");\n");
+		}
+		else if (kind.isPrimitive())
+		{
+			final String wrapperType = processingEnv.getTypeUtils().boxedClass((PrimitiveType)returnType).getQualifiedName().toString();
+			final String defaultValue = (kind == TypeKind.BOOLEAN) ? "false" : "0";
+			source_io.append("        final Object returnValue = ").append(call).append(";\n");
+			source_io.append("        return (returnValue instanceof ").append(wrapperType).append(") ? ((").append(wrapperType).append(") returnValue).")
+			         .append(returnType).append("Value() : ").append(defaultValue).append(";\n");
+		}
+		else if (isObject(returnType))
+		{
+			source_io.append("        return ").append(call).append(";\n");
+		}
+		else
+		{
+			source_io.append("        return (").append(returnType).append(") ").append(call).append(";\n");
+		}
+		source_io.append("    }\n");
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Name the constant of each method after the method, in upper case with underscores, with a
+	*	number appended to overloads.
+	*
+	***************************************************************************************************/
+	private static List<String>	constantNames(List<ExecutableElement> methods_i)
+	{
+		final List<String> names = new ArrayList<String>(methods_i.size());
+		final Set<String> used = new HashSet<String>();
+		used.add("CLASS_NAME");
+		used.add("MISSING_MEMBERS");
+		for (ExecutableElement method : methods_i)
+		{
+			final String methodName = method.getSimpleName().toString();
+			final StringBuilder name = new StringBuilder(methodName.length() + 4);
+			for (int i = 0; i < methodName.length(); ++i)
+			{
+				// a word starts at a capital after a small letter, or at the last capital of an acronym
+				final char c = methodName.charAt(i);
+				final boolean afterLowerCase = (i > 0) && !Character.isUpperCase(methodName.charAt(i - 1));
+				final boolean beforeLowerCase = (i + 1 < methodName.length()) && Character.isLowerCase(methodName.charAt(i + 1));
+				if (Character.isUpperCase(c) && (i > 0) && (afterLowerCase || beforeLowerCase))
+				{
+					name.append('_');
+				}
+				name.append(Character.toUpperCase(c));
+			}
+
+			String constant = name.toString();
+			for (int suffix = 2; !used.add(constant); ++suffix)
+			{
+				constant = name + "_" + suffix;
+			}
+			names.add(constant);
+		}
+		return names;
+	}
+
+
+
+	/***************************************************************************************************/
+	private boolean	isObject(TypeMirror type_i)
+	{
+		return (type_i.getKind() == TypeKind.DECLARED) && type_i.toString().equals("java.lang.Object");
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Whether the cast of an Object to the type cannot be checked: a type argument other than an
+	*	unbounded wildcard is erased.
+	*
+	***************************************************************************************************/
+	private static boolean	isUncheckedCast(TypeMirror type_i)
+	{
+		if (type_i.getKind() != TypeKind.DECLARED)
+		{
+			return false;
+		}
+		for (TypeMirror argument : ((DeclaredType)type_i).getTypeArguments())
+		{
+			final WildcardType wildcard = (argument.getKind() == TypeKind.WILDCARD) ? (WildcardType)argument : null;
+			if ((wildcard == null) || (wildcard.getExtendsBound() != null) || (wildcard.getSuperBound() != null))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+
+	/***************************************************************************************************/
+	private static boolean	takesPrimitiveSlot(TypeKind kind_i)
+	{
+		return (kind_i == TypeKind.INT) || (kind_i == TypeKind.LONG) || (kind_i == TypeKind.BOOLEAN)
+		    || (kind_i == TypeKind.SHORT) || (kind_i == TypeKind.BYTE) || (kind_i == TypeKind.CHAR);
+	}
+
+
+
+	/***************************************************************************************************/
+	private static String	escape(String value_i)
+	{
+		return value_i.replace("\\","\\\\").replace("\"","\\\"");
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	error(Element element_i, String message_i)
+	{
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,message_i,element_i);
+	}
+
+}
@@ -0,0 +1,160 @@
+/***************************************************************************************************
+*
+*	@(#)ReflectedClassProcessorTest.java
+*
+***************************************************************************************************/
+package org.rdm.util.processor;
+
+
+import javax.tools.JavaFileObject;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import com.google.testing.compile.JavaFileObjects;
+
+import org.junit.Test;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+
+
+/**
+*	Compiles interfaces annotated with {@link org.rdm.util.ReflectedClass} through the
+*	{@link ReflectedClassProcessor}, checks the wrapper it generates, and that the wrapper compiles
+*	without a single warning of <CODE>-Xlint:all</CODE>.
+*/
+public class ReflectedClassProcessorTest
+{
+	/***************************************************************************************************/
+	@Test
+	public void	generatesWrapperWithoutWarnings()
+	{
+		final Compilation compilation = compile(JavaFileObjects.forSourceLines("test.Clock",
+			"package test;",
+			"",
+			"import java.util.Collection;",
+			"import java.util.List;",
+			"",
+			"import org.rdm.util.ReflectedClass;",
+			"import org.rdm.util.ReflectedMethod;",
+			"",
+			"@ReflectedClass(\"hidden.Clock\")",
+			"public interface Clock",
+			"{",
+			"    long getTime();",
+			"    boolean setTime(long time, boolean notify);",
+			"    void setZone(String zone);",
+			"    List<String> getZones();",
+			"    Collection<?> getAlarms();",
+			"    @ReflectedMethod(\"getOwner\")",
+			"    Object getOwnerObject();",
+			"    void addAlarm(@ReflectedClass(\"hidden.Alarm\") Object alarm);",
+			"    double getDrift(int from, int to, int step);",
+			"}"));
+
+		assertThat(compilation).succeededWithoutWarnings();
+		assertThat(compilation).generatedSourceFile("test.ClockWrapped").contentsAsUtf8String().containsMatch(
+			"public class ClockWrapped extends org\\.rdm\\.util\\.ReflectionObject implements test\\.Clock\\s");
+		assertGenerated(compilation,
+			// resolved once, with the name given by @ReflectedMethod and the hidden parameter type
+			"public static final String CLASS_NAME = \"hidden.Clock\";",
+			"new org.rdm.util.MethodRef(CLASS_NAME, \"setTime\", long.class, boolean.class);",
+			"new org.rdm.util.MethodRef(CLASS_NAME, \"getOwner\");",
+			"new org.rdm.util.MethodRef(CLASS_NAME, \"addAlarm\", classForName(\"hidden.Alarm\"));",
+			"private static Class<?> classForName(String className)",
+			"protected ClockWrapped(Class<?>[] types, Object... args)",
+
+			// typed calls, primitive slots, and casts to the declared types
+			"return GET_TIME.invokeLong(mObject);",
+			"return SET_TIME.invokeBooleanSlots(mObject, time, notify ? 1 : 0);",
+			"SET_ZONE.invoke(mObject, zone);",
+			"return (java.util.List<java.lang.String>) GET_ZONES.invoke(mObject);",
+			"return (java.util.Collection<?>) GET_ALARMS.invoke(mObject);",
+			"return GET_OWNER_OBJECT.invoke(mObject);",
+			"GET_DRIFT.invokeWithArguments(mObject, new Object[] { from, to, step });");
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	suppressesOnlyUncheckedCasts()
+	{
+		final Compilation compilation = compile(JavaFileObjects.forSourceLines("test.Casts",
+			"package test;",
+			"",
+			"import java.util.List;",
+			"import java.util.Map;",
+			"",
+			"@org.rdm.util.ReflectedClass(\"hidden.Casts\")",
+			"interface Casts",
+			"{",
+			"    List<?> getAny();",
+			"    Map<?, ?> getMap();",
+			"    List<? extends Number> getNumbers();",
+			"}"));
+
+		assertThat(compilation).succeededWithoutWarnings();
+		assertThat(compilation).generatedSourceFile("test.CastsWrapped").contentsAsUtf8String().containsMatch(
+			"(?s)unchecked.*getNumbers");
+		assertThat(compilation).generatedSourceFile("test.CastsWrapped").contentsAsUtf8String().doesNotContainMatch(
+			"(?s)unchecked.*getAny");
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	rejectsWhatItCannotWrap()
+	{
+		final Compilation compilation = compile(JavaFileObjects.forSourceLines("test.Invalid",
+			"package test;",
+			"",
+			"import org.rdm.util.ReflectedClass;",
+			"",
+			"public class Invalid",
+			"{",
+			"    @ReflectedClass(\"hidden.A\") static class NotAnInterface {}",
+			"    @ReflectedClass(\"hidden.B\") interface Generic<T> {}",
+			"    @ReflectedClass(\"hidden.C\") interface Extending extends Runnable {}",
+			"    @ReflectedClass(\"hidden.D\") interface GenericMethod { <T> T get(); }",
+			"    @ReflectedClass(\"hidden.E\") interface PrimitiveParameter { void set(@ReflectedClass(\"hidden.F\") int value); }",
+			"}"));
+
+		assertThat(compilation).failed();
+		assertThat(compilation).hadErrorCount(5);
+		assertThat(compilation).hadErrorContaining("@ReflectedClass must annotate an interface or a parameter");
+		assertThat(compilation).hadErrorContaining("must not be generic");
+		assertThat(compilation).hadErrorContaining("must not extend other interfaces");
+		assertThat(compilation).hadErrorContaining("a @ReflectedClass method must not be generic");
+		assertThat(compilation).hadErrorContaining("must be an Object or a ReflectionObject");
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/***************************************************************************************************/
+	private static Compilation	compile(JavaFileObject source_i)
+	{
+		return Compiler.javac()
+			.withProcessors(new ReflectedClassProcessor())
+			.withOptions("-Xlint:all","-Xlint:-options")
+			.compile(source_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	private static void	assertGenerated(Compilation compilation_i, String... lines_i)
+	{
+		for (String line : lines_i)
+		{
+			assertThat(compilation_i).generatedSourceFile("test.ClockWrapped").contentsAsUtf8String().contains(line);
+		}
+	}
+
+}
@@ -0,0 +1,348 @@
+/***************************************************************************************************
+*
+*	@(#)CacheNode.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+
+/**
+*	An entry of an {@link LRUCache}.  Besides the key and value it carries the times used to
+*	expire it; all of those are guarded by the lock of the segment that holds the node.  The links
+*	of the eviction policy's lists and of the timer wheel are left to subclasses, so that each
+*	policy creates nodes holding only what it uses (see {@link CachePolicy#newNode} and
+*	{@link LinkedNode}).
+*/
+class CacheNode<K,V> implements Map.Entry<K,V>
+{
+	/** The expiration time of a node that never expires. */
+	static final long	NEVER = Long.MAX_VALUE;
+
+	/** Stands in for a <CODE>null</CODE> key, which {@link java.util.concurrent.ConcurrentHashMap} cannot hold. */
+	static final Object	NULL_KEY = new Object();
+
+
+
+	/***************************************************************************************************/
+	CacheNode(Object key_i, Object value_i)
+	{
+		myKey   = key_i;
+		myValue = value_i;
+	}
+
+
+
+	/***************************************************************************************************/
+	@SuppressWarnings("unchecked")
+	public K	getKey()
+	{
+		return (K)unmaskKey(myKey);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Return the value, or <CODE>null</CODE> if it was only weakly or softly held and has been
+	*	collected.
+	*
+	***************************************************************************************************/
+	@SuppressWarnings("unchecked")
+	public V	getValue()
+	{
+		return (V)unwrapValue(myValue);
+	}
+
+
+
+	/***************************************************************************************************/
+	public V	setValue(V value_i)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+
+
+	/***************************************************************************************************/
+	public String	toString()
+	{
+		return getKey() + "=" + getValue();
+	}
+
+
+
+	/***************************************************************************************************/
+	static Object	maskNullKey(Object key_i)
+	{
+		return (key_i == null) ? NULL_KEY : key_i;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Return the caller's key for a key as stored or looked up by the cache, or <CODE>null</CODE>
+	*	if it was held weakly and has been collected.
+	*
+	***************************************************************************************************/
+	static Object	unmaskKey(Object key_i)
+	{
+		Object key = key_i;
+		if (key instanceof WeakKey)
+		{
+			key = ((WeakKey)key).get();
+		}
+		else if (key instanceof LookupKey)
+		{
+			key = ((LookupKey)key).myKey;
+		}
+		return (key == NULL_KEY) ? null : key;
+	}
+
+
+
+	/***************************************************************************************************/
+	static Object	unwrapValue(Object value_i)
+	{
+		return (value_i instanceof ValueReference) ? ((ValueReference)value_i).get() : value_i;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Determine if the garbage collector has taken the key or the value.  The node then only
+	*	waits to be removed from its segment.
+	*
+	***************************************************************************************************/
+	boolean	isCollected()
+	{
+		return ((myKey instanceof WeakKey) && (((WeakKey)myKey).get() == null))
+		    || ((myValue instanceof ValueReference) && (((ValueReference)myValue).get() == null));
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Claim the right to refresh the value, which only one thread holds at a time.
+	*
+	*		@return		<CODE>false</CODE> if a refresh is already running.
+	*
+	***************************************************************************************************/
+	boolean	startRefresh()
+	{
+		return ourRefreshingUpdater.compareAndSet(this,0,1);
+	}
+
+
+
+	/***************************************************************************************************/
+	void	endRefresh()
+	{
+		myRefreshing = 0;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Determine if the node has the links of the timer wheel, and so may be given an expiration
+	*	time.  A node without them can never expire.
+	*
+	***************************************************************************************************/
+	boolean	isTimed()
+	{
+		return false;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Return the previous node in the node's bucket of the timer wheel, or <CODE>null</CODE> if
+	*	it is not scheduled.
+	*
+	***************************************************************************************************/
+	CacheNode<K,V>	getPrevInWheel()
+	{
+		return null;
+	}
+
+
+
+	/***************************************************************************************************/
+	CacheNode<K,V>	getNextInWheel()
+	{
+		return null;
+	}
+
+
+
+	/***************************************************************************************************/
+	void	setPrevInWheel(CacheNode<K,V> node_i)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+
+
+	/***************************************************************************************************/
+	void	setNextInWheel(CacheNode<K,V> node_i)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+
+
+	/***************************************************************************************************/
+	boolean	isExpired(long now_i)
+	{
+		return (myExpirationTime != NEVER) && (myExpirationTime - now_i <= 0);
+	}
+
+
+
+	final Object		myKey;		// masked, see maskNullKey(), and a WeakKey if keys are weak
+	volatile Object		myValue;	// the value, or a ValueReference to it
+	int					myWeight;
+
+	// the time the value was stored, and the time it expires (NEVER if it does not)
+	volatile long		myWriteTime;
+	volatile long		myExpirationTime = NEVER;
+	boolean				myHasFixedExpiration;	// a per-entry time to live, not extended by access
+
+	volatile int		myRefreshing;	// 1 while a refresh of the value is running, see startRefresh()
+
+
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<CacheNode>	ourRefreshingUpdater = AtomicIntegerFieldUpdater.newUpdater(CacheNode.class,"myRefreshing");
+
+
+
+	/**
+	*	A key held weakly.  Weak keys are compared by identity, since the key an equal object
+	*	would find could be collected at any time; a WeakKey equals itself even once cleared, so
+	*	the node it leads to can still be removed.
+	*/
+	static final class WeakKey extends WeakReference<Object>
+	{
+		WeakKey(Object key_i, ReferenceQueue<Object> queue_i)
+		{
+			super(key_i,queue_i);
+			myHash = System.identityHashCode(key_i);
+		}
+
+		public int	hashCode()
+		{
+			return myHash;
+		}
+
+		public boolean	equals(Object object_i)
+		{
+			if (object_i == this)
+			{
+				return true;
+			}
+			final Object key = get();
+			if (key == null)
+			{
+				return false;
+			}
+			if (object_i instanceof WeakKey)
+			{
+				return key == ((WeakKey)object_i).get();
+			}
+			return (object_i instanceof LookupKey) && (key == ((LookupKey)object_i).myKey);
+		}
+
+		private final int	myHash;
+	}
+
+
+
+	/**
+	*	The strongly held stand-in for a weak key while it is being looked up.
+	*/
+	static final class LookupKey
+	{
+		LookupKey(Object key_i)
+		{
+			myKey = key_i;
+		}
+
+		public int	hashCode()
+		{
+			return System.identityHashCode(myKey);
+		}
+
+		public boolean	equals(Object object_i)
+		{
+			if (object_i instanceof LookupKey)
+			{
+				return myKey == ((LookupKey)object_i).myKey;
+			}
+			return (object_i instanceof WeakKey) && (myKey == ((WeakKey)object_i).get());
+		}
+
+		final Object	myKey;
+	}
+
+
+
+	/**
+	*	A value held weakly or softly, which knows its node so that it can be removed once collected.
+	*/
+	interface ValueReference
+	{
+		Object			get();
+		CacheNode<?,?>	getNode();
+	}
+
+
+
+	/***************************************************************************************************/
+	static final class WeakValue extends WeakReference<Object> implements ValueReference
+	{
+		WeakValue(Object value_i, CacheNode<?,?> node_i, ReferenceQueue<Object> queue_i)
+		{
+			super(value_i,queue_i);
+			myNode = node_i;
+		}
+
+		public CacheNode<?,?>	getNode()
+		{
+			return myNode;
+		}
+
+		private final CacheNode<?,?>	myNode;
+	}
+
+
+
+	/***************************************************************************************************/
+	static final class SoftValue extends SoftReference<Object> implements ValueReference
+	{
+		SoftValue(Object value_i, CacheNode<?,?> node_i, ReferenceQueue<Object> queue_i)
+		{
+			super(value_i,queue_i);
+			myNode = node_i;
+		}
+
+		public CacheNode<?,?>	getNode()
+		{
+			return myNode;
+		}
+
+		private final CacheNode<?,?>	myNode;
+	}
+
+}
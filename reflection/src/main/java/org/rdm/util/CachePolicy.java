@@ -0,0 +1,191 @@
+/***************************************************************************************************
+*
+*	@(#)CachePolicy.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+/**
+*	Decides which entry of an {@link LRUCache} segment is evicted when the segment is over its
+*	maximum weight.  A policy is told about every insertion, hit, update and removal of the
+*	segment's nodes, and keeps whatever ordering it needs in the nodes it creates; the policies
+*	that keep lists use {@link LinkedNode} and the helpers at the end of this class.
+*
+*	Not thread safe; every method except {@link #onRead} is called under the owning segment's lock.
+*/
+abstract class CachePolicy<K,V>
+{
+	/***************************************************************************************************
+	*
+	*	Create the node of a new entry, before it is added to the segment.  A policy that keeps
+	*	something else per node than list links returns a subclass carrying it, so that nodes of
+	*	other policies do not.
+	*
+	*		@param	timed_i					Whether the entry may be given an expiration time, in
+	*										which case the node must be {@link CacheNode#isTimed
+	*										timed}.  A node that is not can leave out the links of
+	*										the timer wheel.
+	*
+	***************************************************************************************************/
+	CacheNode<K,V>	newNode(Object key_i, boolean timed_i)
+	{
+		return new LinkedNode<K,V>(key_i);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	A node was added to the segment.
+	*
+	***************************************************************************************************/
+	abstract void	onInsert(CacheNode<K,V> node_i);
+
+
+
+	/***************************************************************************************************
+	*
+	*	A node still held by the policy was read.  Only called for policies that order by access,
+	*	and only when the reading thread could take the lock without waiting.
+	*
+	***************************************************************************************************/
+	abstract void	onAccess(CacheNode<K,V> node_i);
+
+
+
+	/***************************************************************************************************
+	*
+	*	A node was read.  Called on every hit, without the lock, so it may only record a hint in the
+	*	node.
+	*
+	***************************************************************************************************/
+	void	onRead(CacheNode<K,V> node_i)
+	{
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Determine if reads must be passed to {@link #onAccess}.  Policies that only need
+	*	{@link #onRead} spare readers the lock.
+	*
+	***************************************************************************************************/
+	boolean	ordersByAccess()
+	{
+		return true;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Determine if a node is still held by the policy, that is, has not been removed.
+	*
+	***************************************************************************************************/
+	boolean	holds(CacheNode<K,V> node_i)
+	{
+		return ((LinkedNode<K,V>)node_i).myNext != null;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	A node's value was replaced, possibly changing its weight.
+	*
+	***************************************************************************************************/
+	abstract void	onUpdate(CacheNode<K,V> node_i, int previousWeight_i);
+
+
+
+	/***************************************************************************************************
+	*
+	*	A node left the segment for any reason, including having been chosen by
+	*	{@link #selectVictim()}.
+	*
+	***************************************************************************************************/
+	abstract void	onRemove(CacheNode<K,V> node_i);
+
+
+
+	/***************************************************************************************************
+	*
+	*	Choose the node to evict next.  Only called while the segment holds at least one node.
+	*
+	***************************************************************************************************/
+	abstract CacheNode<K,V>	selectVictim();
+
+
+
+	/***************************************************************************************************
+	*
+	*	Forget every node.
+	*
+	***************************************************************************************************/
+	abstract void	clear();
+
+
+
+	/***************************************************************************************************/
+	static <K,V> LinkedNode<K,V>	newListHead()
+	{
+		final LinkedNode<K,V> head = new LinkedNode<K,V>(null);
+		head.myPrev = head;
+		head.myNext = head;
+		return head;
+	}
+
+
+
+	/***************************************************************************************************/
+	static <K,V> void	linkLast(LinkedNode<K,V> head_i, LinkedNode<K,V> node_i)
+	{
+		node_i.myPrev = head_i.myPrev;
+		node_i.myNext = head_i;
+		head_i.myPrev.myNext = node_i;
+		head_i.myPrev = node_i;
+	}
+
+
+
+	/***************************************************************************************************/
+	static <K,V> void	unlink(LinkedNode<K,V> node_i)
+	{
+		node_i.myPrev.myNext = node_i.myNext;
+		node_i.myNext.myPrev = node_i.myPrev;
+		node_i.myPrev = null;
+		node_i.myNext = null;
+	}
+
+
+
+	/***************************************************************************************************/
+	static <K,V> void	moveToLast(LinkedNode<K,V> head_i, LinkedNode<K,V> node_i)
+	{
+		unlink(node_i);
+		linkLast(head_i,node_i);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Empty a list, unlinking every node so none of them looks held by the policy any more.
+	*
+	***************************************************************************************************/
+	static <K,V> void	clearList(LinkedNode<K,V> head_i)
+	{
+		for (LinkedNode<K,V> node = head_i.myNext; node != head_i;)
+		{
+			final LinkedNode<K,V> next = node.myNext;
+			node.myPrev = null;
+			node.myNext = null;
+			node = next;
+		}
+		head_i.myPrev = head_i;
+		head_i.myNext = head_i;
+	}
+
+}
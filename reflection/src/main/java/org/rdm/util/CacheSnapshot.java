@@ -0,0 +1,341 @@
+/***************************************************************************************************
+*
+*	@(#)CacheSnapshot.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+*	The entries of an {@link LRUCache} saved in a file, so that a new process can start with the
+*	cache of the previous one.
+*
+*	The file is written and read through a memory mapping.  It starts with a header holding a
+*	version stamp chosen by the caller; a file with any other stamp is ignored, so that entries
+*	saved by another build of the application are never restored.  Each entry follows as the
+*	length and bytes of its key, then the length and bytes of its value, both written by an
+*	{@link LRUCache.Codec}.
+*
+*	Restoring is lazy.  Nothing is read when the file is opened beyond the header; the keys are
+*	indexed on the first lookup, and a value is only decoded when its key is asked for, at most
+*	once.  Entries nobody asks for cost nothing but the (unread) pages of the mapping.
+*/
+final class CacheSnapshot<K,V>
+{
+	/***************************************************************************************************
+	*
+	*	Write the entries of a cache to a file, replacing it.  The entries are first written to a
+	*	file next to it, which is then renamed, so that a crash never leaves a truncated snapshot.
+	*
+	***************************************************************************************************/
+	static <K,V> void	write(File file_i, LRUCache.Codec<K,V> codec_i, long version_i, Iterator<Map.Entry<K,V>> entries_i) throws IOException
+	{
+		final ByteArrayOutputStream bytes  = new ByteArrayOutputStream();
+		final DataOutputStream      output = new DataOutputStream(bytes);
+		final ByteArrayOutputStream item   = new ByteArrayOutputStream();
+		final DataOutputStream      itemOutput = new DataOutputStream(item);
+
+		output.writeInt(MAGIC);
+		output.writeInt(FORMAT);
+		output.writeLong(version_i);
+		output.writeInt(0);		// the entry count, filled in below
+
+		int count = 0;
+		while (entries_i.hasNext())
+		{
+			final Map.Entry<K,V> entry = entries_i.next();
+
+			item.reset();
+			codec_i.writeKey(entry.getKey(),itemOutput);
+			itemOutput.flush();
+			output.writeInt(item.size());
+			item.writeTo(output);
+
+			item.reset();
+			codec_i.writeValue(entry.getValue(),itemOutput);
+			itemOutput.flush();
+			output.writeInt(item.size());
+			item.writeTo(output);
+
+			++count;
+		}
+		output.flush();
+
+		final ByteBuffer contents = ByteBuffer.wrap(bytes.toByteArray());
+		contents.putInt(COUNT_OFFSET,count);
+
+		final File temporaryFile = new File(file_i.getPath() + ".tmp");
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(temporaryFile,"rw");
+		try
+		{
+			randomAccessFile.setLength(contents.remaining());
+			final MappedByteBuffer mapping = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE,0,contents.remaining());
+			mapping.put(contents);
+			mapping.force();
+		}
+		finally
+		{
+			randomAccessFile.close();
+		}
+
+		if (!temporaryFile.renameTo(file_i))
+		{
+			temporaryFile.delete();
+			throw new IOException("cannot replace " + file_i);
+		}
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Open a snapshot file.
+	*
+	*		@return		The snapshot, or <CODE>null</CODE> if the file does not exist, is not a
+	*					snapshot or carries a different version stamp.
+	*
+	***************************************************************************************************/
+	static <K,V> CacheSnapshot<K,V>	open(File file_i, LRUCache.Codec<K,V> codec_i, long version_i) throws IOException
+	{
+		if (!file_i.isFile() || (file_i.length() < HEADER_SIZE))
+		{
+			return null;
+		}
+
+		final MappedByteBuffer mapping;
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file_i,"r");
+		try
+		{
+			// the mapping stays valid after the file is closed
+			mapping = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY,0,randomAccessFile.length());
+		}
+		finally
+		{
+			randomAccessFile.close();
+		}
+
+		if ((mapping.getInt(0) != MAGIC) || (mapping.getInt(4) != FORMAT) || (mapping.getLong(8) != version_i))
+		{
+			return null;
+		}
+		return new CacheSnapshot<K,V>(mapping,codec_i);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Decode the value saved for a key and forget the key, so that it is decoded only once.
+	*
+	*		@return		The key as it was saved and the value, or <CODE>null</CODE> if none was saved
+	*					for the key or the codec could not restore it.
+	*
+	***************************************************************************************************/
+	Map.Entry<K,V>	take(Object key_i)
+	{
+		final Location<K> location = index().remove(CacheNode.maskNullKey(key_i));
+		if (location == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			final V value = myCodec.readValue(inputAt(location.myPosition,location.myLength));
+			return (value != null) ? new AbstractMap.SimpleImmutableEntry<K,V>(location.myKey,value) : null;
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+		catch (RuntimeException e)
+		{
+			return null;
+		}
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Determine if every entry has been taken.
+	*
+	***************************************************************************************************/
+	boolean	isExhausted()
+	{
+		final Map<Object,Location<K>> index = myIndex;
+		return (index != null) && index.isEmpty();
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static final int	MAGIC  = 0x4C525543;	// "LRUC"
+	private static final int	FORMAT = 1;
+	private static final int	COUNT_OFFSET = 16;
+	private static final int	HEADER_SIZE  = 20;
+
+
+	private final ByteBuffer				myMapping;
+	private final LRUCache.Codec<K,V>		myCodec;
+	private volatile Map<Object,Location<K>>	myIndex;	// masked key ==> Location of the value
+
+
+
+	/***************************************************************************************************/
+	private CacheSnapshot(ByteBuffer mapping_i, LRUCache.Codec<K,V> codec_i)
+	{
+		myMapping = mapping_i;
+		myCodec   = codec_i;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Return the index of the saved keys, reading them on first use.  A damaged entry ends the
+	*	index; the entries before it are still restored.
+	*
+	***************************************************************************************************/
+	private Map<Object,Location<K>>	index()
+	{
+		Map<Object,Location<K>> index = myIndex;
+		if (index != null)
+		{
+			return index;
+		}
+
+		synchronized (this)
+		{
+			if (myIndex == null)
+			{
+				final int count = myMapping.getInt(COUNT_OFFSET);
+				index = new ConcurrentHashMap<Object,Location<K>>(Math.max(16,(int)(count / 0.75f) + 1));
+				try
+				{
+					int position = HEADER_SIZE;
+					for (int i = 0; i < count; ++i)
+					{
+						final int keyLength = myMapping.getInt(position);
+						final K key = myCodec.readKey(inputAt(position + 4,keyLength));
+						position += 4 + keyLength;
+
+						final int valueLength = myMapping.getInt(position);
+						if (key != null)
+						{
+							index.put(key,new Location<K>(key,position + 4,valueLength));
+						}
+						position += 4 + valueLength;
+					}
+				}
+				catch (IOException e)
+				{
+				}
+				catch (IndexOutOfBoundsException e)
+				{
+				}
+				catch (BufferUnderflowException e)
+				{
+				}
+				catch (IllegalArgumentException e)
+				{
+				}
+				myIndex = index;
+			}
+			return myIndex;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	private DataInputStream	inputAt(int position_i, int length_i)
+	{
+		final ByteBuffer buffer = myMapping.duplicate();
+		buffer.position(position_i);
+		buffer.limit(position_i + length_i);
+		return new DataInputStream(new BufferInputStream(buffer));
+	}
+
+
+
+	/**
+	*	Where the value of a saved key is, and the key as it was read.
+	*/
+	private static final class Location<K>
+	{
+		Location(K key_i, int position_i, int length_i)
+		{
+			myKey      = key_i;
+			myPosition = position_i;
+			myLength   = length_i;
+		}
+
+		final K		myKey;
+		final int	myPosition;
+		final int	myLength;
+	}
+
+
+
+	/**
+	*	Reads a byte buffer as a stream.
+	*/
+	private static final class BufferInputStream extends InputStream
+	{
+		BufferInputStream(ByteBuffer buffer_i)
+		{
+			myBuffer = buffer_i;
+		}
+
+		public int	read()
+		{
+			return myBuffer.hasRemaining() ? (myBuffer.get() & 0xff) : -1;
+		}
+
+		public int	read(byte[] bytes_o, int offset_i, int length_i)
+		{
+			if (length_i == 0)
+			{
+				return 0;
+			}
+			if (!myBuffer.hasRemaining())
+			{
+				return -1;
+			}
+			final int count = Math.min(length_i,myBuffer.remaining());
+			myBuffer.get(bytes_o,offset_i,count);
+			return count;
+		}
+
+		public int	available()
+		{
+			return myBuffer.remaining();
+		}
+
+		private final ByteBuffer	myBuffer;
+	}
+
+}
@@ -0,0 +1,183 @@
+/***************************************************************************************************
+*
+*	@(#)CacheStats.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+/**
+*	An immutable snapshot of the statistics gathered by an {@link LRUCache}.  Two snapshots may be
+*	subtracted from each other to obtain the activity over an interval.
+*/
+public final class CacheStats
+{
+	/***************************************************************************************************
+	*
+	***************************************************************************************************/
+	public CacheStats(long hitCount_i, long missCount_i, long evictionCount_i, long loadCount_i, long totalLoadTime_i)
+	{
+		myHitCount      = hitCount_i;
+		myMissCount     = missCount_i;
+		myEvictionCount = evictionCount_i;
+		myLoadCount     = loadCount_i;
+		myTotalLoadTime = totalLoadTime_i;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	The number of lookups that found a value.
+	*
+	***************************************************************************************************/
+	public long	hitCount()
+	{
+		return myHitCount;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	The number of lookups that found nothing.
+	*
+	***************************************************************************************************/
+	public long	missCount()
+	{
+		return myMissCount;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	The number of entries dropped to make room for others.
+	*
+	***************************************************************************************************/
+	public long	evictionCount()
+	{
+		return myEvictionCount;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	The number of times a missing value was computed and stored.
+	*
+	***************************************************************************************************/
+	public long	loadCount()
+	{
+		return myLoadCount;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	The total time, in nanoseconds, spent computing missing values.
+	*
+	***************************************************************************************************/
+	public long	totalLoadTime()
+	{
+		return myTotalLoadTime;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	The average time, in nanoseconds, spent computing a missing value.
+	*
+	***************************************************************************************************/
+	public double	averageLoadPenalty()
+	{
+		return (myLoadCount == 0) ? 0.0 : ((double)myTotalLoadTime / myLoadCount);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	***************************************************************************************************/
+	public long	requestCount()
+	{
+		return myHitCount + myMissCount;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	The fraction of lookups that found a value, or <CODE>1.0</CODE> if there were none.
+	*
+	***************************************************************************************************/
+	public double	hitRatio()
+	{
+		final long requestCount = requestCount();
+		return (requestCount == 0) ? 1.0 : ((double)myHitCount / requestCount);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	The fraction of lookups that found nothing, or <CODE>0.0</CODE> if there were none.
+	*
+	***************************************************************************************************/
+	public double	missRatio()
+	{
+		final long requestCount = requestCount();
+		return (requestCount == 0) ? 0.0 : ((double)myMissCount / requestCount);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Return the activity between an earlier snapshot and this one.
+	*
+	***************************************************************************************************/
+	public CacheStats	minus(CacheStats earlier_i)
+	{
+		return new CacheStats(
+		                      Math.max(0,myHitCount - earlier_i.myHitCount),
+		                      Math.max(0,myMissCount - earlier_i.myMissCount),
+		                      Math.max(0,myEvictionCount - earlier_i.myEvictionCount),
+		                      Math.max(0,myLoadCount - earlier_i.myLoadCount),
+		                      Math.max(0,myTotalLoadTime - earlier_i.myTotalLoadTime)
+		                     );
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	***************************************************************************************************/
+	public String	toString()
+	{
+		return "CacheStats{hits=" + myHitCount
+		     + ", misses=" + myMissCount
+		     + ", hitRatio=" + hitRatio()
+		     + ", evictions=" + myEvictionCount
+		     + ", loads=" + myLoadCount
+		     + ", averageLoadPenalty=" + averageLoadPenalty()
+		     + "}";
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private final long	myHitCount;
+	private final long	myMissCount;
+	private final long	myEvictionCount;
+	private final long	myLoadCount;
+	private final long	myTotalLoadTime;
+
+}
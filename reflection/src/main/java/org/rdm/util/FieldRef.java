@@ -0,0 +1,363 @@
+/***************************************************************************************************
+*
+*	@(#)FieldRef.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.lang.reflect.Field;
+
+
+/**
+*	A field of a class known by name, resolved once and then read and written directly; the
+*	counterpart of {@link MethodRef} for fields.
+*
+*	The field is looked up on the first access as its {@link Lookup} says: by default among the
+*	public fields of the class, then among the fields declared by the class and its superclasses,
+*	which are made accessible.  The primitive accessors read and write the field without boxing
+*	its value.
+*
+*	An access never throws: reading a missing field returns <CODE>null</CODE> (<CODE>0</CODE> or
+*	<CODE>false</CODE> for the primitive variants), and writing one does nothing.
+*/
+public final class FieldRef
+{
+	/**
+	*	Where the field is looked up.
+	*/
+	public enum Lookup
+	{
+		/** Among the public fields of the class and its supertypes, as {@link Class#getField}. */
+		PUBLIC,
+		/** Among the fields declared by the class itself, as {@link Class#getDeclaredField}. */
+		DECLARED,
+		/** Among the public fields, then among the fields declared by the class and its superclasses. */
+		ANY
+	}
+
+
+
+	/***************************************************************************************************/
+	public FieldRef(String className_i, String fieldName_i)
+	{
+		myClassName = className_i;
+		myClass     = null;
+		myFieldName = fieldName_i;
+		myLookup    = Lookup.ANY;
+	}
+
+
+
+	/***************************************************************************************************/
+	public FieldRef(Class class_i, String fieldName_i)
+	{
+		this(class_i,fieldName_i,Lookup.ANY);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*		@param	lookup_i			Where to look the field up.  A public field of a class that is
+	*									not public is made accessible only by {@link Lookup#ANY}; a
+	*									declared field is always made accessible.
+	*
+	***************************************************************************************************/
+	public FieldRef(Class class_i, String fieldName_i, Lookup lookup_i)
+	{
+		myClassName = class_i.getName();
+		myClass     = class_i;
+		myFieldName = fieldName_i;
+		myLookup    = lookup_i;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*		@return		Whether the class and the field exist on this system.
+	*
+	***************************************************************************************************/
+	public boolean	isAvailable()
+	{
+		return field() != null;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*		@return		The field, or <CODE>null</CODE> if it does not exist on this system.
+	*
+	***************************************************************************************************/
+	public Field	getField()
+	{
+		return field();
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*		@param	__target_i			The object to read, or <CODE>null</CODE> for a static field.
+	*
+	***************************************************************************************************/
+	public Object	get(Object __target_i)
+	{
+		final Field field = field();
+		try
+		{
+			return (field != null) ? field.get(__target_i) : null;
+		}
+		catch (Exception exception_i)
+		{
+			return null;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public int	getInt(Object __target_i)
+	{
+		final Field field = field();
+		try
+		{
+			return (field != null) ? field.getInt(__target_i) : 0;
+		}
+		catch (Exception exception_i)
+		{
+			return 0;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public long	getLong(Object __target_i)
+	{
+		final Field field = field();
+		try
+		{
+			return (field != null) ? field.getLong(__target_i) : 0;
+		}
+		catch (Exception exception_i)
+		{
+			return 0;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public boolean	getBoolean(Object __target_i)
+	{
+		final Field field = field();
+		try
+		{
+			return (field != null) && field.getBoolean(__target_i);
+		}
+		catch (Exception exception_i)
+		{
+			return false;
+		}
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*		@return		Whether the value was written.
+	*
+	***************************************************************************************************/
+	public boolean	set(Object __target_i, Object value_i)
+	{
+		final Field field = field();
+		try
+		{
+			if (field != null)
+			{
+				field.set(__target_i,value_i);
+				return true;
+			}
+		}
+		catch (Exception exception_i)
+		{
+			// the value is not of the field's type, or the field is final
+		}
+		return false;
+	}
+
+
+
+	/***************************************************************************************************/
+	public boolean	setInt(Object __target_i, int value_i)
+	{
+		final Field field = field();
+		try
+		{
+			if (field != null)
+			{
+				field.setInt(__target_i,value_i);
+				return true;
+			}
+		}
+		catch (Exception exception_i)
+		{
+			// the field is not an int, or the field is final
+		}
+		return false;
+	}
+
+
+
+	/***************************************************************************************************/
+	public boolean	setLong(Object __target_i, long value_i)
+	{
+		final Field field = field();
+		try
+		{
+			if (field != null)
+			{
+				field.setLong(__target_i,value_i);
+				return true;
+			}
+		}
+		catch (Exception exception_i)
+		{
+			// the field is not a long, or the field is final
+		}
+		return false;
+	}
+
+
+
+	/***************************************************************************************************/
+	public boolean	setBoolean(Object __target_i, boolean value_i)
+	{
+		final Field field = field();
+		try
+		{
+			if (field != null)
+			{
+				field.setBoolean(__target_i,value_i);
+				return true;
+			}
+		}
+		catch (Exception exception_i)
+		{
+			// the field is not a boolean, or the field is final
+		}
+		return false;
+	}
+
+
+
+	/***************************************************************************************************/
+	public String	toString()
+	{
+		return myClassName + ">" + myFieldName;
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private final String		myClassName;
+	private final Class			myClass;			// null if created from a name
+	private final String		myFieldName;
+	private final Lookup		myLookup;
+
+	private volatile boolean	myResolved;
+	private Field				myField;			// written before myResolved; null if missing
+
+
+
+	/***************************************************************************************************/
+	private Field	field()
+	{
+		if (!myResolved)
+		{
+			myField    = resolve();
+			myResolved = true;
+		}
+		return myField;
+	}
+
+
+
+	/***************************************************************************************************/
+	private Field	resolve()
+	{
+		try
+		{
+			final Class declaringClass = (myClass != null) ? myClass : Class.forName(myClassName);
+			if (myLookup == Lookup.DECLARED)
+			{
+				return accessible(declaringClass.getDeclaredField(myFieldName));
+			}
+			try
+			{
+				final Field field = declaringClass.getField(myFieldName);
+				if ((myLookup == Lookup.ANY) && !ReflectionUtils.classIsAccessible(field.getDeclaringClass()))
+				{
+					// a public field of a class that is not
+					field.setAccessible(true);
+				}
+				return field;
+			}
+			catch (NoSuchFieldException exception_i)
+			{
+				if (myLookup == Lookup.PUBLIC)
+				{
+					return null;
+				}
+				// look among the non-public fields
+			}
+
+			for (Class c = declaringClass; c != null; c = c.getSuperclass())
+			{
+				try
+				{
+					return accessible(c.getDeclaredField(myFieldName));
+				}
+				catch (NoSuchFieldException exception_i)
+				{
+					// look in the superclass
+				}
+			}
+		}
+		catch (NoSuchFieldException exception_i)
+		{
+			// the class does not declare the field
+		}
+		catch (ClassNotFoundException exception_i)
+		{
+			// the class does not exist on this system
+		}
+		catch (LinkageError exception_i)
+		{
+			// neither does something it refers to
+		}
+		catch (SecurityException exception_i)
+		{
+			// the field may not be made accessible
+		}
+		return null;
+	}
+
+
+
+	/***************************************************************************************************/
+	private static Field	accessible(Field field_io)
+	{
+		field_io.setAccessible(true);
+		return field_io;
+	}
+
+}
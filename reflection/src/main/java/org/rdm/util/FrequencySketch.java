@@ -0,0 +1,181 @@
+/***************************************************************************************************
+*
+*	@(#)FrequencySketch.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+/**
+*	An approximate, aging count of how often keys were used, for the TinyLFU admission decision.
+*
+*	This is a count-min sketch of 4-bit counters, sixteen to a <CODE>long</CODE>.  A key is counted
+*	in four counters picked by four hash functions, and its frequency is the smallest of the four,
+*	so collisions can only overstate it.  Once the number of increments reaches ten times the
+*	table size, every counter is halved; this ages out keys that were popular long ago and keeps
+*	the counters from saturating at 15.
+*
+*	Not thread safe; every method is called under the owning segment's lock.
+*/
+final class FrequencySketch
+{
+	/***************************************************************************************************/
+	FrequencySketch(long expectedSize_i)
+	{
+		ensureCapacity(expectedSize_i);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Grow the table to suit the given number of entries.  Growing discards all counts.
+	*
+	***************************************************************************************************/
+	void	ensureCapacity(long expectedSize_i)
+	{
+		final int maximum = (int)Math.min(Math.max(expectedSize_i,1),Integer.MAX_VALUE >>> 1);
+		if ((myTable != null) && (myTable.length >= maximum))
+		{
+			return;
+		}
+
+		myTable      = new long[(maximum == 1) ? 1 : (Integer.highestOneBit(maximum - 1) << 1)];
+		myTableMask  = myTable.length - 1;
+		mySampleSize = 10 * maximum;
+		mySize       = 0;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	The number of counters available, which bounds the number of keys told apart well.
+	*
+	***************************************************************************************************/
+	int	capacity()
+	{
+		return myTable.length;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Return the estimated number of times a key was counted, from 0 to 15.
+	*
+	***************************************************************************************************/
+	int	frequency(Object key_i)
+	{
+		final int hash  = spread(key_i.hashCode());
+		final int start = (hash & 3) << 2;
+
+		int frequency = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; ++i)
+		{
+			final int count = (int)((myTable[indexOf(hash,i)] >>> ((start + i) << 2)) & 0xfL);
+			frequency = Math.min(frequency,count);
+		}
+		return frequency;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Count one more use of a key, aging all counts when the sample is complete.
+	*
+	***************************************************************************************************/
+	void	increment(Object key_i)
+	{
+		final int hash  = spread(key_i.hashCode());
+		final int start = (hash & 3) << 2;
+
+		boolean added = false;
+		for (int i = 0; i < 4; ++i)
+		{
+			added |= incrementAt(indexOf(hash,i),start + i);
+		}
+
+		if (added && (++mySize == mySampleSize))
+		{
+			reset();
+		}
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static final long[]	SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+	private static final long	RESET_MASK = 0x7777777777777777L;
+	private static final long	ONE_MASK   = 0x1111111111111111L;
+
+
+	private long[]	myTable;
+	private int		myTableMask;
+	private int		mySampleSize;
+	private int		mySize;
+
+
+
+	/***************************************************************************************************
+	*
+	*	Increment the <CODE>counter_i</CODE>th 4-bit counter of a table word unless it is saturated.
+	*
+	***************************************************************************************************/
+	private boolean	incrementAt(int index_i, int counter_i)
+	{
+		final int  offset = counter_i << 2;
+		final long mask   = 0xfL << offset;
+		if ((myTable[index_i] & mask) != mask)
+		{
+			myTable[index_i] += 1L << offset;
+			return true;
+		}
+		return false;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Halve every counter.  The odd counts lost to the shift are subtracted from the sample size.
+	*
+	***************************************************************************************************/
+	private void	reset()
+	{
+		int oddCounters = 0;
+		for (int i = 0; i < myTable.length; ++i)
+		{
+			oddCounters += Long.bitCount(myTable[i] & ONE_MASK);
+			myTable[i] = (myTable[i] >>> 1) & RESET_MASK;
+		}
+		mySize = (mySize >>> 1) - (oddCounters >>> 2);
+	}
+
+
+
+	/***************************************************************************************************/
+	private int	indexOf(int hash_i, int function_i)
+	{
+		long hash = (hash_i + SEEDS[function_i]) * SEEDS[function_i];
+		hash += hash >>> 32;
+		return ((int)hash) & myTableMask;
+	}
+
+
+
+	/***************************************************************************************************/
+	private static int	spread(int hash_i)
+	{
+		int hash = ((hash_i >>> 16) ^ hash_i) * 0x45d9f3b;
+		hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+		return (hash >>> 16) ^ hash;
+	}
+
+}
@@ -0,0 +1,293 @@
+/***************************************************************************************************
+*
+*	@(#)GeneratedInvoker.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+/**
+*	The base of the invoker classes that {@link InvokerGenerator} writes for hot methods.  Each
+*	generated class calls its method with plain bytecode, casting and unboxing the arguments
+*	itself; it overrides the variant for the arity of its method, and, for a method without
+*	parameters returning an <CODE>int</CODE>, <CODE>long</CODE> or <CODE>boolean</CODE>, the
+*	matching typed variant, which returns the value without boxing it.  A method of up to two
+*	parameters also gets the slot variants, which take integral and <CODE>boolean</CODE>
+*	arguments without boxing them either.
+*
+*	This class is public only because the generated classes are defined by their own class loader,
+*	and so are outside this package at run time; it is not meant to be used or extended otherwise.
+*/
+public abstract class GeneratedInvoker extends MemberInvoker
+{
+	/***************************************************************************************************/
+	protected GeneratedInvoker()
+	{
+	}
+
+
+
+	/***************************************************************************************************/
+	public abstract Object	call(Object __target_i, Object[] arguments_i) throws Throwable;
+
+
+
+	/***************************************************************************************************/
+	public Object	call0(Object __target_i) throws Throwable
+	{
+		return call(__target_i,NO_ARGUMENTS);
+	}
+
+
+
+	/***************************************************************************************************/
+	public Object	call1(Object __target_i, Object argument_i) throws Throwable
+	{
+		return call(__target_i,new Object[] { argument_i });
+	}
+
+
+
+	/***************************************************************************************************/
+	public Object	call2(Object __target_i, Object argument1_i, Object argument2_i) throws Throwable
+	{
+		return call(__target_i,new Object[] { argument1_i, argument2_i });
+	}
+
+
+
+	/***************************************************************************************************/
+	public int	callInt(Object __target_i) throws Throwable
+	{
+		return super.invokeInt0(__target_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	public long	callLong(Object __target_i) throws Throwable
+	{
+		return super.invokeLong0(__target_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	public boolean	callBoolean(Object __target_i) throws Throwable
+	{
+		return super.invokeBoolean0(__target_i);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Call a method of up to two parameters with each argument in the slot for its position and
+	*	parameter type: the argument of an integral or <CODE>boolean</CODE> parameter in the
+	*	primitive slot (a <CODE>boolean</CODE> as <CODE>0</CODE> or <CODE>1</CODE>), any other in
+	*	the object slot.  Overridden for every method of up to two parameters.
+	*
+	***************************************************************************************************/
+	public Object	callSlots(Object __target_i, Object argument1_i, Object argument2_i, long primitive1_i, long primitive2_i) throws Throwable
+	{
+		throw new UnsupportedOperationException();
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Call a method like {@link #callSlots}, and return its <CODE>int</CODE>, <CODE>long</CODE>
+	*	or <CODE>boolean</CODE> result as a <CODE>long</CODE> (a <CODE>boolean</CODE> as
+	*	<CODE>0</CODE> or <CODE>1</CODE>).  Overridden for the methods of up to two parameters that
+	*	return one of these types.
+	*
+	***************************************************************************************************/
+	public long	callSlotsPrimitive(Object __target_i, Object argument1_i, Object argument2_i, long primitive1_i, long primitive2_i) throws Throwable
+	{
+		throw new UnsupportedOperationException();
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Unbox an argument for a primitive parameter, accepting the same wrappers as
+	*	{@link java.lang.reflect.Method#invoke}: the parameter's own, and those of the primitive types
+	*	it widens (<CODE>Character</CODE> included).  Anything else, <CODE>null</CODE> as well, throws
+	*	an <CODE>IllegalArgumentException</CODE>, so that a method called through a generated invoker
+	*	accepts what it accepted before.
+	*
+	***************************************************************************************************/
+	protected static boolean	unboxBoolean(Object argument_i)
+	{
+		if (argument_i instanceof Boolean)
+		{
+			return ((Boolean)argument_i).booleanValue();
+		}
+		throw new IllegalArgumentException("argument type mismatch");
+	}
+
+
+
+	/***************************************************************************************************/
+	protected static char	unboxChar(Object argument_i)
+	{
+		if (argument_i instanceof Character)
+		{
+			return ((Character)argument_i).charValue();
+		}
+		throw new IllegalArgumentException("argument type mismatch");
+	}
+
+
+
+	/***************************************************************************************************/
+	protected static byte	unboxByte(Object argument_i)
+	{
+		if (argument_i instanceof Byte)
+		{
+			return ((Byte)argument_i).byteValue();
+		}
+		throw new IllegalArgumentException("argument type mismatch");
+	}
+
+
+
+	/***************************************************************************************************/
+	protected static short	unboxShort(Object argument_i)
+	{
+		if ((argument_i instanceof Short) || (argument_i instanceof Byte))
+		{
+			return ((Number)argument_i).shortValue();
+		}
+		throw new IllegalArgumentException("argument type mismatch");
+	}
+
+
+
+	/***************************************************************************************************/
+	protected static int	unboxInt(Object argument_i)
+	{
+		if ((argument_i instanceof Integer) || (argument_i instanceof Short) || (argument_i instanceof Byte))
+		{
+			return ((Number)argument_i).intValue();
+		}
+		if (argument_i instanceof Character)
+		{
+			return ((Character)argument_i).charValue();
+		}
+		throw new IllegalArgumentException("argument type mismatch");
+	}
+
+
+
+	/***************************************************************************************************/
+	protected static long	unboxLong(Object argument_i)
+	{
+		if ((argument_i instanceof Long) || (argument_i instanceof Integer) || (argument_i instanceof Short) || (argument_i instanceof Byte))
+		{
+			return ((Number)argument_i).longValue();
+		}
+		if (argument_i instanceof Character)
+		{
+			return ((Character)argument_i).charValue();
+		}
+		throw new IllegalArgumentException("argument type mismatch");
+	}
+
+
+
+	/***************************************************************************************************/
+	protected static float	unboxFloat(Object argument_i)
+	{
+		if ((argument_i instanceof Float) || (argument_i instanceof Long) || (argument_i instanceof Integer) || (argument_i instanceof Short) || (argument_i instanceof Byte))
+		{
+			return ((Number)argument_i).floatValue();
+		}
+		if (argument_i instanceof Character)
+		{
+			return ((Character)argument_i).charValue();
+		}
+		throw new IllegalArgumentException("argument type mismatch");
+	}
+
+
+
+	/***************************************************************************************************/
+	protected static double	unboxDouble(Object argument_i)
+	{
+		if ((argument_i instanceof Double) || (argument_i instanceof Float) || (argument_i instanceof Long) || (argument_i instanceof Integer) || (argument_i instanceof Short) || (argument_i instanceof Byte))
+		{
+			return ((Number)argument_i).doubleValue();
+		}
+		if (argument_i instanceof Character)
+		{
+			return ((Character)argument_i).charValue();
+		}
+		throw new IllegalArgumentException("argument type mismatch");
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/***************************************************************************************************/
+	final Object	invoke(Object __target_i, Object[] arguments_i) throws Throwable
+	{
+		return call(__target_i,arguments_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	final Object	invoke0(Object __target_i) throws Throwable
+	{
+		return call0(__target_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	final Object	invoke1(Object __target_i, Object argument_i) throws Throwable
+	{
+		return call1(__target_i,argument_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	final Object	invoke2(Object __target_i, Object argument1_i, Object argument2_i) throws Throwable
+	{
+		return call2(__target_i,argument1_i,argument2_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	final int	invokeInt0(Object __target_i) throws Throwable
+	{
+		return callInt(__target_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	final long	invokeLong0(Object __target_i) throws Throwable
+	{
+		return callLong(__target_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	final boolean	invokeBoolean0(Object __target_i) throws Throwable
+	{
+		return callBoolean(__target_i);
+	}
+
+}
@@ -0,0 +1,698 @@
+/***************************************************************************************************
+*
+*	@(#)InvokerGenerator.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+*	Writes and loads a {@link GeneratedInvoker} class for a method, the way the JVM inflates a hot
+*	<CODE>Method.invoke</CODE> into a generated accessor, but with entry points that take the
+*	arguments without an array and return primitive values without boxing them.  The slot entry
+*	points take integral and <CODE>boolean</CODE> arguments as <CODE>long</CODE> values, which the
+*	generated code narrows to the parameter types.
+*
+*	The class file is written directly, without a bytecode library: the code of each method is a
+*	straight sequence of loads, casts and a call, without branches, so it needs no stack map.
+*	Each class is defined by its own class loader, child of the loader of the method's class, so
+*	that it can be collected with the method's class.  It only has public access, so only public
+*	methods of public classes, whose types are public as well, get an invoker.
+*
+*	A system that cannot define classes from class files (Android, which runs dex files) makes the
+*	first generation fail, after which none is attempted.
+*/
+final class InvokerGenerator
+{
+	/***************************************************************************************************
+	*
+	*	Generate the invoker of a method.
+	*
+	*		@return		The invoker, or <CODE>null</CODE> if the method cannot be called from a
+	*					generated class, or this system cannot define classes.
+	*
+	***************************************************************************************************/
+	static GeneratedInvoker	generate(Method method_i)
+	{
+		if (ourUnsupported || !isGeneratable(method_i))
+		{
+			return null;
+		}
+
+		final String className = INVOKER_PACKAGE + "GeneratedInvoker_" + ourClassCount.incrementAndGet();
+		try
+		{
+			final byte[] classFile = new InvokerGenerator(className.replace('.','/'),method_i).writeClass();
+			final InvokerLoader loader = new InvokerLoader(method_i.getDeclaringClass().getClassLoader());
+			return (GeneratedInvoker)loader.define(className,classFile).newInstance();
+		}
+		catch (UnsupportedOperationException e)
+		{
+			ourUnsupported = true;
+		}
+		catch (Exception e)
+		{
+			// could not be generated; the method keeps its current invoker
+		}
+		catch (LinkageError e)
+		{
+			ourUnsupported = true;
+		}
+		return null;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Whether the slot entry points of {@link GeneratedInvoker} take the argument of a parameter
+	*	type in a primitive slot.
+	*
+	***************************************************************************************************/
+	static boolean	takesPrimitiveSlot(Class type_i)
+	{
+		return (type_i == Integer.TYPE) || (type_i == Long.TYPE) || (type_i == Boolean.TYPE)
+		    || (type_i == Short.TYPE) || (type_i == Byte.TYPE) || (type_i == Character.TYPE);
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static final String		INVOKER_PACKAGE = "org.rdm.util.";
+	private static final String		BASE_CLASS      = "org/rdm/util/GeneratedInvoker";
+	private static final String		OBJECT          = "java/lang/Object";
+	private static final String		SLOTS           = "(L" + OBJECT + ";L" + OBJECT + ";L" + OBJECT + ";JJ)";
+
+	/** The arity given to {@link #writeCall} for the slot entry points. */
+	private static final int		SLOT_ARGUMENTS = -2;
+
+	// opcodes
+	private static final int	ACONST_NULL     = 0x01;
+	private static final int	SIPUSH          = 0x11;
+	private static final int	LLOAD           = 0x16;
+	private static final int	ALOAD           = 0x19;
+	private static final int	AALOAD          = 0x32;
+	private static final int	I2L             = 0x85;
+	private static final int	L2I             = 0x88;
+	private static final int	I2B             = 0x91;
+	private static final int	I2C             = 0x92;
+	private static final int	I2S             = 0x93;
+	private static final int	IRETURN         = 0xAC;
+	private static final int	LRETURN         = 0xAD;
+	private static final int	ARETURN         = 0xB0;
+	private static final int	RETURN          = 0xB1;
+	private static final int	INVOKEVIRTUAL   = 0xB6;
+	private static final int	INVOKESPECIAL   = 0xB7;
+	private static final int	INVOKESTATIC    = 0xB8;
+	private static final int	INVOKEINTERFACE = 0xB9;
+	private static final int	CHECKCAST       = 0xC0;
+
+	private static final int	ACC_PUBLIC = 0x0001;
+	private static final int	ACC_FINAL  = 0x0010;
+	private static final int	ACC_SUPER  = 0x0020;
+
+
+	private static final AtomicInteger	ourClassCount = new AtomicInteger();
+	private static volatile boolean		ourUnsupported;
+
+
+	private final String					myClassName;
+	private final Method					myMethod;
+	private final Class[]					myParameterTypes;
+	private final ByteArrayOutputStream		myConstantBytes = new ByteArrayOutputStream();
+	private final DataOutputStream			myConstants     = new DataOutputStream(myConstantBytes);
+	private final Map<String,Integer>		myConstantIndexes = new HashMap<String,Integer>();
+	private int								myConstantCount = 1;
+
+
+
+	/**
+	*	Defines one generated class; finds the generated classes' base class in this package,
+	*	whatever the parent.
+	*/
+	private static final class InvokerLoader extends ClassLoader
+	{
+		InvokerLoader(ClassLoader __parent_i)
+		{
+			super(__parent_i);
+		}
+
+		Class	define(String className_i, byte[] classFile_i)
+		{
+			return defineClass(className_i,classFile_i,0,classFile_i.length);
+		}
+
+		protected Class<?>	loadClass(String className_i, boolean resolve_i) throws ClassNotFoundException
+		{
+			if (className_i.equals(GeneratedInvoker.class.getName()))
+			{
+				return GeneratedInvoker.class;
+			}
+			return super.loadClass(className_i,resolve_i);
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	private InvokerGenerator(String className_i, Method method_i)
+	{
+		myClassName      = className_i;
+		myMethod         = method_i;
+		myParameterTypes = method_i.getParameterTypes();
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Whether a class generated outside the method's package may call it: the method, its class
+	*	and the classes of its parameters must be public, and exported by their modules.  Static
+	*	methods of interfaces are left out, as they need a newer class file version.
+	*
+	***************************************************************************************************/
+	private static boolean	isGeneratable(Method method_i)
+	{
+		final Class declaringClass = method_i.getDeclaringClass();
+		if (!Modifier.isPublic(method_i.getModifiers()) || !isAccessible(declaringClass))
+		{
+			return false;
+		}
+		if (declaringClass.isInterface() && Modifier.isStatic(method_i.getModifiers()))
+		{
+			return false;
+		}
+
+		final Class[] parameterTypes = method_i.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; ++i)
+		{
+			Class type = parameterTypes[i];
+			while (type.isArray())
+			{
+				type = type.getComponentType();
+			}
+			if (!type.isPrimitive() && !isAccessible(type))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+
+	/***************************************************************************************************/
+	private static boolean	isAccessible(Class class_i)
+	{
+		for (Class c = class_i; c != null; c = c.getEnclosingClass())
+		{
+			if (!Modifier.isPublic(c.getModifiers()))
+			{
+				return false;
+			}
+		}
+		return isExported(class_i);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Whether the module of a class exports its package to every module.  The module methods are
+	*	called reflectively, since this code also runs on systems without modules, where every
+	*	public class is accessible.
+	*
+	***************************************************************************************************/
+	private static boolean	isExported(Class class_i)
+	{
+		final Method getModule;
+		try
+		{
+			getModule = Class.class.getMethod("getModule");
+		}
+		catch (NoSuchMethodException e)
+		{
+			return true;
+		}
+
+		try
+		{
+			final Object module = getModule.invoke(class_i);
+			final Method isExported = module.getClass().getMethod("isExported",String.class);
+			final String className = class_i.getName();
+			final int lastDot = className.lastIndexOf('.');
+			final String packageName = (lastDot >= 0) ? className.substring(0,lastDot) : "";
+			return Boolean.TRUE.equals(isExported.invoke(module,packageName));
+		}
+		catch (Exception e)
+		{
+			return false;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	private byte[]	writeClass() throws IOException
+	{
+		final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+		final DataOutputStream methods = new DataOutputStream(methodBytes);
+		int methodCount = 0;
+
+		writeConstructor(methods);
+		++methodCount;
+
+		writeCall(methods,"call","(L" + OBJECT + ";[L" + OBJECT + ";)L" + OBJECT + ";",-1,ARETURN);
+		++methodCount;
+
+		final int arity = myParameterTypes.length;
+		if (arity <= 2)
+		{
+			final StringBuilder descriptor = new StringBuilder("(L" + OBJECT + ";");
+			for (int i = 0; i < arity; ++i)
+			{
+				descriptor.append("L" + OBJECT + ";");
+			}
+			descriptor.append(")L" + OBJECT + ";");
+			writeCall(methods,"call" + arity,descriptor.toString(),arity,ARETURN);
+			++methodCount;
+		}
+
+		final Class returnType = myMethod.getReturnType();
+		if (arity <= 2)
+		{
+			writeCall(methods,"callSlots",SLOTS + "L" + OBJECT + ";",SLOT_ARGUMENTS,ARETURN);
+			++methodCount;
+			if ((returnType == Integer.TYPE) || (returnType == Long.TYPE) || (returnType == Boolean.TYPE))
+			{
+				writeCall(methods,"callSlotsPrimitive",SLOTS + "J",SLOT_ARGUMENTS,LRETURN);
+				++methodCount;
+			}
+		}
+		if (arity == 0)
+		{
+			if (returnType == Integer.TYPE)
+			{
+				writeCall(methods,"callInt","(L" + OBJECT + ";)I",0,IRETURN);
+				++methodCount;
+			}
+			else if (returnType == Long.TYPE)
+			{
+				writeCall(methods,"callLong","(L" + OBJECT + ";)J",0,LRETURN);
+				++methodCount;
+			}
+			else if (returnType == Boolean.TYPE)
+			{
+				writeCall(methods,"callBoolean","(L" + OBJECT + ";)Z",0,IRETURN);
+				++methodCount;
+			}
+		}
+
+		// the constants are all known once the methods are written
+		final int thisClass  = classConstant(myClassName);
+		final int superClass = classConstant(BASE_CLASS);
+
+		final ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(classBytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0);
+		out.writeShort(49);								// Java 5: no stack maps
+		out.writeShort(myConstantCount);
+		myConstants.flush();
+		myConstantBytes.writeTo(out);
+		out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(0);								// interfaces
+		out.writeShort(0);								// fields
+		out.writeShort(methodCount);
+		methods.flush();
+		methodBytes.writeTo(out);
+		out.writeShort(0);								// attributes
+		out.flush();
+		return classBytes.toByteArray();
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	writeConstructor(DataOutputStream methods_io) throws IOException
+	{
+		final ByteArrayOutputStream code = new ByteArrayOutputStream();
+		code.write(0x2A);								// aload_0
+		code.write(INVOKESPECIAL);
+		writeShort(code,methodConstant(BASE_CLASS,"<init>","()V",false));
+		code.write(RETURN);
+		writeMethod(methods_io,"<init>","()V",1,1,code);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Write a method that calls the target method and returns its result.
+	*
+	*		@param	arity_i			The number of arguments that the method takes one by one after
+	*								the target, <CODE>-1</CODE> if it takes them as an array, or
+	*								{@link #SLOT_ARGUMENTS} if it takes them in slots.
+	*		@param	returnOpcode_i	{@link #ARETURN} to return the result as an object (boxed, or
+	*								<CODE>null</CODE> for a <CODE>void</CODE> method), another return
+	*								instruction to return it as it is (an <CODE>int</CODE> or a
+	*								<CODE>boolean</CODE> widened for {@link #LRETURN}).
+	*
+	***************************************************************************************************/
+	private void	writeCall(DataOutputStream methods_io, String name_i, String descriptor_i, int arity_i, int returnOpcode_i) throws IOException
+	{
+		final ByteArrayOutputStream code = new ByteArrayOutputStream();
+		final Class declaringClass = myMethod.getDeclaringClass();
+		final boolean isStatic = Modifier.isStatic(myMethod.getModifiers());
+
+		int argumentSlots = 0;
+		if (!isStatic)
+		{
+			writeLoad(code,1);
+			code.write(CHECKCAST);
+			writeShort(code,classConstant(internalName(declaringClass)));
+		}
+		for (int i = 0; i < myParameterTypes.length; ++i)
+		{
+			if ((arity_i == SLOT_ARGUMENTS) && takesPrimitiveSlot(myParameterTypes[i]))
+			{
+				code.write(LLOAD);
+				code.write(4 + 2 * i);
+				writeNarrow(code,myParameterTypes[i]);
+			}
+			else if (arity_i == -1)
+			{
+				writeLoad(code,2);
+				code.write(SIPUSH);
+				writeShort(code,i);
+				code.write(AALOAD);
+				writeUnbox(code,myParameterTypes[i]);
+			}
+			else
+			{
+				writeLoad(code,2 + i);
+				writeUnbox(code,myParameterTypes[i]);
+			}
+			argumentSlots += slotSize(myParameterTypes[i]);
+		}
+
+		final String methodDescriptor = methodDescriptor(myMethod);
+		final boolean isInterface = declaringClass.isInterface();
+		if (isStatic)
+		{
+			code.write(INVOKESTATIC);
+			writeShort(code,methodConstant(internalName(declaringClass),myMethod.getName(),methodDescriptor,false));
+		}
+		else if (isInterface)
+		{
+			code.write(INVOKEINTERFACE);
+			writeShort(code,methodConstant(internalName(declaringClass),myMethod.getName(),methodDescriptor,true));
+			code.write(1 + argumentSlots);
+			code.write(0);
+		}
+		else
+		{
+			code.write(INVOKEVIRTUAL);
+			writeShort(code,methodConstant(internalName(declaringClass),myMethod.getName(),methodDescriptor,false));
+		}
+
+		final Class returnType = myMethod.getReturnType();
+		if (returnOpcode_i == ARETURN)
+		{
+			if (returnType == Void.TYPE)
+			{
+				code.write(ACONST_NULL);
+			}
+			else if (returnType.isPrimitive())
+			{
+				final String wrapper = wrapperName(returnType);
+				code.write(INVOKESTATIC);
+				writeShort(code,methodConstant(wrapper,"valueOf","(" + descriptor(returnType) + ")L" + wrapper + ";",false));
+			}
+		}
+		else if ((returnOpcode_i == LRETURN) && (returnType != Long.TYPE))
+		{
+			code.write(I2L);
+		}
+		code.write(returnOpcode_i);
+
+		final int locals = (arity_i == SLOT_ARGUMENTS) ? 8 : (arity_i < 0) ? 3 : 2 + arity_i;
+		writeMethod(methods_io,name_i,descriptor_i,4 + argumentSlots,locals,code);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Convert the object on the stack to a parameter type.  A primitive is unboxed by the helper of
+	*	{@link GeneratedInvoker} for its type, which accepts the same wrappers as
+	*	{@link Method#invoke}, so that a call gives the same result before and after inflation.
+	*
+	***************************************************************************************************/
+	private void	writeUnbox(ByteArrayOutputStream code_io, Class type_i) throws IOException
+	{
+		if (type_i == Object.class)
+		{
+			return;
+		}
+		if (!type_i.isPrimitive())
+		{
+			code_io.write(CHECKCAST);
+			writeShort(code_io,classConstant(internalName(type_i)));
+			return;
+		}
+
+		final String typeName = type_i.getName();
+		final String helper = "unbox" + Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1);
+		code_io.write(INVOKESTATIC);
+		writeShort(code_io,methodConstant(BASE_CLASS,helper,"(L" + OBJECT + ";)" + descriptor(type_i),false));
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Narrow the <CODE>long</CODE> on the stack to a parameter type; a <CODE>boolean</CODE> is
+	*	taken as <CODE>0</CODE> or <CODE>1</CODE>.
+	*
+	***************************************************************************************************/
+	private static void	writeNarrow(ByteArrayOutputStream code_io, Class type_i)
+	{
+		if (type_i == Long.TYPE)
+		{
+			return;
+		}
+		code_io.write(L2I);
+		if (type_i == Byte.TYPE)
+		{
+			code_io.write(I2B);
+		}
+		else if (type_i == Short.TYPE)
+		{
+			code_io.write(I2S);
+		}
+		else if (type_i == Character.TYPE)
+		{
+			code_io.write(I2C);
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	writeMethod(DataOutputStream methods_io, String name_i, String descriptor_i, int maxStack_i, int maxLocals_i, ByteArrayOutputStream code_i) throws IOException
+	{
+		methods_io.writeShort(ACC_PUBLIC);
+		methods_io.writeShort(utf8Constant(name_i));
+		methods_io.writeShort(utf8Constant(descriptor_i));
+		methods_io.writeShort(1);
+		methods_io.writeShort(utf8Constant("Code"));
+		methods_io.writeInt(12 + code_i.size());
+		methods_io.writeShort(maxStack_i);
+		methods_io.writeShort(maxLocals_i);
+		methods_io.writeInt(code_i.size());
+		code_i.writeTo(methods_io);
+		methods_io.writeShort(0);						// exception table
+		methods_io.writeShort(0);						// attributes
+	}
+
+
+
+	/***************************************************************************************************/
+	private static void	writeLoad(ByteArrayOutputStream code_io, int local_i)
+	{
+		if (local_i <= 3)
+		{
+			code_io.write(0x2A + local_i);				// aload_<n>
+		}
+		else
+		{
+			code_io.write(ALOAD);
+			code_io.write(local_i);
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	private static void	writeShort(ByteArrayOutputStream code_io, int value_i)
+	{
+		code_io.write(value_i >>> 8);
+		code_io.write(value_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	private int	utf8Constant(String value_i) throws IOException
+	{
+		final String key = "U" + value_i;
+		Integer index = myConstantIndexes.get(key);
+		if (index == null)
+		{
+			myConstants.writeByte(1);
+			myConstants.writeUTF(value_i);
+			index = addConstant(key,1);
+		}
+		return index;
+	}
+
+
+
+	/***************************************************************************************************/
+	private int	classConstant(String internalName_i) throws IOException
+	{
+		final String key = "C" + internalName_i;
+		Integer index = myConstantIndexes.get(key);
+		if (index == null)
+		{
+			final int name = utf8Constant(internalName_i);
+			myConstants.writeByte(7);
+			myConstants.writeShort(name);
+			index = addConstant(key,1);
+		}
+		return index;
+	}
+
+
+
+	/***************************************************************************************************/
+	private int	methodConstant(String owner_i, String name_i, String descriptor_i, boolean isInterface_i) throws IOException
+	{
+		final String key = "M" + owner_i + "." + name_i + descriptor_i;
+		Integer index = myConstantIndexes.get(key);
+		if (index == null)
+		{
+			final int owner = classConstant(owner_i);
+			final int name = utf8Constant(name_i);
+			final int descriptor = utf8Constant(descriptor_i);
+			myConstants.writeByte(12);					// name and type
+			myConstants.writeShort(name);
+			myConstants.writeShort(descriptor);
+			final int nameAndType = myConstantCount++;
+			myConstants.writeByte(isInterface_i ? 11 : 10);
+			myConstants.writeShort(owner);
+			myConstants.writeShort(nameAndType);
+			index = addConstant(key,1);
+		}
+		return index;
+	}
+
+
+
+	/***************************************************************************************************/
+	private Integer	addConstant(String key_i, int size_i)
+	{
+		final Integer index = myConstantCount;
+		myConstantCount += size_i;
+		myConstantIndexes.put(key_i,index);
+		return index;
+	}
+
+
+
+	/***************************************************************************************************/
+	private static String	methodDescriptor(Method method_i)
+	{
+		final StringBuilder descriptor = new StringBuilder("(");
+		final Class[] parameterTypes = method_i.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; ++i)
+		{
+			descriptor.append(descriptor(parameterTypes[i]));
+		}
+		return descriptor.append(')').append(descriptor(method_i.getReturnType())).toString();
+	}
+
+
+
+	/***************************************************************************************************/
+	private static String	descriptor(Class type_i)
+	{
+		if (type_i.isPrimitive())
+		{
+			return (type_i == Integer.TYPE)   ? "I"
+			     : (type_i == Long.TYPE)      ? "J"
+			     : (type_i == Boolean.TYPE)   ? "Z"
+			     : (type_i == Byte.TYPE)      ? "B"
+			     : (type_i == Short.TYPE)     ? "S"
+			     : (type_i == Character.TYPE) ? "C"
+			     : (type_i == Float.TYPE)     ? "F"
+			     : (type_i == Double.TYPE)    ? "D"
+			     :                              "V";
+		}
+		return type_i.isArray() ? type_i.getName().replace('.','/') : "L" + type_i.getName().replace('.','/') + ";";
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	The name of a class in a class constant, which is the descriptor for an array class.
+	*
+	***************************************************************************************************/
+	private static String	internalName(Class class_i)
+	{
+		return class_i.getName().replace('.','/');
+	}
+
+
+
+	/***************************************************************************************************/
+	private static String	wrapperName(Class primitiveType_i)
+	{
+		return (primitiveType_i == Integer.TYPE)   ? "java/lang/Integer"
+		     : (primitiveType_i == Long.TYPE)      ? "java/lang/Long"
+		     : (primitiveType_i == Boolean.TYPE)   ? "java/lang/Boolean"
+		     : (primitiveType_i == Byte.TYPE)      ? "java/lang/Byte"
+		     : (primitiveType_i == Short.TYPE)     ? "java/lang/Short"
+		     : (primitiveType_i == Character.TYPE) ? "java/lang/Character"
+		     : (primitiveType_i == Float.TYPE)     ? "java/lang/Float"
+		     :                                       "java/lang/Double";
+	}
+
+
+
+	/***************************************************************************************************/
+	private static int	slotSize(Class type_i)
+	{
+		return ((type_i == Long.TYPE) || (type_i == Double.TYPE)) ? 2 : 1;
+	}
+
+}
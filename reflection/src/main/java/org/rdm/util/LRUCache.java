@@ -6,16 +6,90 @@
 package org.rdm.util;
 
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
 *	A simple least-recently-used (LRU) cache with a fixed number of elements.  When the maximum
 *	element count is reached, the oldest entry is dropped from the object.
+*
+*	The cache is safe for use by multiple threads.  Its entries are spread over one or more
+*	segments, each with its own lock and its own recency list.  Lookups go straight to the
+*	segment's concurrent hash table and never block; the entry is only moved to the most-recent
+*	position if the segment lock happens to be free.  With a single segment (the default) and no
+*	contention this is an exact LRU; with several segments eviction is an approximate LRU,
+*	decided per segment.
+*
+*	Instead of a fixed number of entries the cache may be bounded by a maximum total weight, where
+*	a {@link Weigher} assigns each entry its weight; the weight of the cache is kept up to date as
+*	entries are added, replaced and removed, so costly entries take the room of many cheap ones.
+*
+*	Entries may also expire: a fixed time after they were written, a fixed time after they were
+*	last read, or after a time to live given when the entry is stored.  An expired entry is never
+*	returned.  It is removed when it is next looked up, or when a {@link TimerWheel} finds it
+*	while the cache is being written to, without the cache ever scanning its entries.
+*
+*	Hits, misses, evictions and load times may optionally be counted (see {@link #stats()}), so
+*	that the capacity of a cache can be chosen from observed behaviour instead of guessed.
+*
+*	Least-recently-used is the default eviction policy.  A cache may instead use the W-TinyLFU
+*	policy (see {@link Policy}), which keeps frequently used entries when a burst of one-off keys
+*	passes through, or a sampled approximation of LRU whose reads never lock.
+*
+*	Keys may be held weakly, and values weakly or softly, so that the cache never keeps alive
+*	what nothing else uses (for instance, classes of a class loader that has been discarded).  The
+*	garbage collector then removes entries as well; their references are queued, and the queues
+*	are drained by the segment as part of its reads and writes.
+*
+*	A value that is missing may be computed by a {@link Loader} (see {@link #get(Object,Loader)}).
+*	The cache runs at most one computation per key at a time; other threads asking for the same
+*	key wait for its result rather than repeating the work.  With refresh-after-write, a value that
+*	has grown old is reloaded in the background while the old value keeps being served.
+*
+*	Several entries may be read or stored at once with {@link #getAll} and {@link #putAll}, which
+*	lock each segment once for the whole batch.  A {@link RemovalListener} may be told about every
+*	entry that leaves the cache, and why; it is called after the segment lock has been released.
+*
+*	The entries may be saved to a file and restored by a later process (see {@link #saveSnapshot}
+*	and {@link #restoreSnapshot}), so that it does not start with a cold cache.
+*
+*	Large values may be given a second, off-heap tier (see {@link Builder#offHeapTier}): values
+*	evicted from the cache are encoded into direct buffers with their own memory limit, and a
+*	lookup that misses on the heap takes its value back from there.
+*
+*	Caches that need more than a size limit are configured with a {@link Builder}.
+*
+*	@param	<K>		the type of the keys.
+*	@param	<V>		the type of the cached values.
 */
-public class LRUCache
+public class LRUCache<K,V>
 {
 	/***************************************************************************************************
 	*
@@ -24,29 +98,217 @@ public class LRUCache
 	***************************************************************************************************/
 	public LRUCache(int cacheSize_i)
 	{
-		myCacheSize = cacheSize_i;
+		this(cacheSize_i,1);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Create an empty LRU cache with a given maximum capacity, striped over enough segments to
+	*	serve the given number of concurrently writing threads without them queuing on one lock.
+	*
+	*		@param	cacheSize_i				The maximum number of entries held by the cache.
+	*
+	*		@param	concurrencyLevel_i		The estimated number of concurrently updating threads.
+	*										The segment count is the next power of two, limited
+	*										so that every segment holds at least one entry.
+	*
+	***************************************************************************************************/
+	public LRUCache(int cacheSize_i, int concurrencyLevel_i)
+	{
+		this(cacheSize_i,concurrencyLevel_i,false);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Create an empty LRU cache that optionally keeps statistics about its use.
+	*
+	*		@param	cacheSize_i				The maximum number of entries held by the cache.
+	*
+	*		@param	concurrencyLevel_i		The estimated number of concurrently updating threads.
+	*
+	*		@param	recordStats_i			<CODE>true</CODE> to count hits, misses, evictions and
+	*										loads.  The counters are striped, so keeping them
+	*										costs little even when many threads use the cache.
+	*
+	***************************************************************************************************/
+	public LRUCache(int cacheSize_i, int concurrencyLevel_i, boolean recordStats_i)
+	{
+		this(cacheSize_i,null,concurrencyLevel_i,recordStats_i);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Create an empty cache bounded by the total weight of its entries rather than their number.
+	*
+	*		@param	maximumWeight_i			The maximum total weight of the entries in the cache.
+	*
+	*		@param	weigher_i				Determines the weight of each entry as it is stored.
+	*
+	***************************************************************************************************/
+	public LRUCache(long maximumWeight_i, Weigher<? super K,? super V> weigher_i)
+	{
+		this(maximumWeight_i,weigher_i,1,false);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Create an empty cache bounded by the total weight of its entries rather than their number.
+	*
+	*		@param	maximumWeight_i			The maximum total weight of the entries in the cache.  It
+	*										is divided evenly between the segments, so an entry
+	*										heavier than its segment's share is never retained.
+	*
+	*		@param	__weigher_i				Determines the weight of each entry as it is stored, or
+	*										<CODE>null</CODE> to give every entry a weight of one.
+	*
+	*		@param	concurrencyLevel_i		The estimated number of concurrently updating threads.
+	*
+	*		@param	recordStats_i			<CODE>true</CODE> to count hits, misses, evictions and
+	*										loads.
+	*
+	***************************************************************************************************/
+	public LRUCache(long maximumWeight_i, Weigher<? super K,? super V> __weigher_i, int concurrencyLevel_i, boolean recordStats_i)
+	{
+		this(new Builder<K,V>().maximumWeight(maximumWeight_i,__weigher_i).concurrencyLevel(concurrencyLevel_i).recordStats(recordStats_i));
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Create an empty cache configured by a builder.
+	*
+	***************************************************************************************************/
+	protected LRUCache(Builder<K,V> builder_i)
+	{
+		myMaximumWeight     = builder_i.myMaximumWeight;
+		myWeigher           = builder_i.myWeigher;
+		myStats             = builder_i.myRecordStats ? new Statistics() : null;
+		myExpireAfterWrite  = builder_i.myExpireAfterWrite;
+		myExpireAfterAccess = builder_i.myExpireAfterAccess;
+		myTicker            = builder_i.myTicker;
+		myStartTime         = myTicker.read();
+		myPolicy            = builder_i.myPolicy;
+		myFailureRetention  = builder_i.myFailureRetention;
+		myWeakKeys          = builder_i.myWeakKeys;
+		myRefreshAfterWrite = builder_i.myRefreshAfterWrite;
+		myRefreshExecutor   = builder_i.myRefreshExecutor;
+		myRemovalListener   = builder_i.myRemovalListener;
+		myValueStrength     = builder_i.myValueStrength;
+		myOffHeapTier       = (builder_i.myOffHeapCodec != null) ? new OffHeapTier<K,V>(builder_i.myOffHeapBytes,builder_i.myOffHeapCodec) : null;
+
+		int segmentCount = 1;
+		int segmentShift = 0;
+		while ((segmentCount < builder_i.myConcurrencyLevel) && (segmentCount < MAXIMUM_SEGMENTS) && ((segmentCount << 1) <= myMaximumWeight))
+		{
+			segmentCount <<= 1;
+			++segmentShift;
+		}
+		mySegmentShift = 32 - segmentShift;
+		mySegmentMask  = segmentCount - 1;
+
+		@SuppressWarnings("unchecked")
+		final Segment<K,V>[] segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; ++i)
+		{
+			final long segmentMaximumWeight = (myMaximumWeight / segmentCount) + ((i < (myMaximumWeight % segmentCount)) ? 1 : 0);
+			// size the table for the expected entry count when that is known
+			final int expectedEntries = (myWeigher == null) ? (int)Math.min(segmentMaximumWeight,MAXIMUM_INITIAL_SEGMENT_CAPACITY) : INITIAL_SEGMENT_CAPACITY;
+			segments[i] = new Segment<K,V>(this,segmentMaximumWeight,(int)Math.ceil(expectedEntries / HASH_TABLE_LOAD_FACTOR) + 1);
+		}
+		mySegments = segments;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	***************************************************************************************************/
+	public void	put(K key_i, V value_i)
+	{
+		final Object key = lookupKey(key_i);
+		segmentFor(key).put(key,value_i,weigh(key_i,value_i),0);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Store every entry of a map.  The entries are grouped by segment, and each segment is locked
+	*	once for all of its entries.
+	*
+	***************************************************************************************************/
+	public void	putAll(Map<? extends K,? extends V> map_i)
+	{
+		final int count = map_i.size();
+		final Object[] keys    = new Object[count];
+		final Object[] values  = new Object[count];
+		final int[]    weights = new int[count];
+		final long[]   order   = new long[count];	// segment index in the high half, entry index in the low
 
-		final int hashTableCapacity = (int)Math.ceil(myCacheSize / HASH_TABLE_LOAD_FACTOR) + 1;
-		myMap = new LinkedHashMap(hashTableCapacity,HASH_TABLE_LOAD_FACTOR,true)
+		int i = 0;
+		for (Map.Entry<? extends K,? extends V> entry : map_i.entrySet())
 		{
-			// (an anonymous inner class)
-			private static final long serialVersionUID = 1;
+			keys[i]    = lookupKey(entry.getKey());
+			values[i]  = entry.getValue();
+			weights[i] = weigh(entry.getKey(),entry.getValue());
+			order[i]   = ((long)segmentIndexFor(keys[i]) << 32) | i;
+			++i;
+		}
+		Arrays.sort(order);
 
-			protected boolean removeEldestEntry(Map.Entry eldestEntry_i)
+		for (int start = 0; start < count;)
+		{
+			final int segmentIndex = (int)(order[start] >>> 32);
+			final Segment<K,V> segment = mySegments[segmentIndex];
+			int end = start;
+			segment.lock();
+			try
 			{
-				return (size() > myCacheSize);
+				for (; (end < count) && ((int)(order[end] >>> 32) == segmentIndex); ++end)
+				{
+					final int entry = (int)order[end];
+					@SuppressWarnings("unchecked")
+					final V value = (V)values[entry];
+					segment.put(keys[entry],value,weights[entry],0);
+				}
 			}
-		};
+			finally
+			{
+				segment.unlock();
+			}
+			start = end;
+		}
 	}
 
 
 
 	/***************************************************************************************************
 	*
+	*	Store a value that expires after a given time, whatever the expiration settings of the
+	*	cache.  Reading the entry does not extend its life.
+	*
+	*		@param	timeToLive_i			How long the value may be returned, which must be
+	*										positive.
+	*
 	***************************************************************************************************/
-	public void	put(Object key_i, Object value_i)
+	public void	put(K key_i, V value_i, long timeToLive_i, TimeUnit unit_i)
 	{
-		myMap.put(key_i,value_i);
+		if (timeToLive_i <= 0)
+		{
+			throw new IllegalArgumentException("timeToLive_i must be positive: " + timeToLive_i);
+		}
+
+		final Object key = lookupKey(key_i);
+		segmentFor(key).put(key,value_i,weigh(key_i,value_i),unit_i.toNanos(timeToLive_i));
 	}
 
 
@@ -54,12 +316,185 @@ public class LRUCache
 	/***************************************************************************************************
 	*
 	*	Attempt to retrieve the the value associated with a given key.  This will cause the entry
-	*	to become the most recent one used.
+	*	to become the most recent one used, unless another thread holds its segment at the time.
+	*
+	***************************************************************************************************/
+	public V	get(Object key_i)
+	{
+		final Object key = lookupKey(key_i);
+		final CacheNode<K,V> node = segmentFor(key).get(key);
+		final V value = (node != null) ? node.getValue() : null;
+		recordRead(value != null);
+		return (value == null) ? findElsewhere(key_i) : value;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Retrieve the value associated with a given key, computing and storing it if it is missing.
+	*
+	*	Only one computation runs for a key at a time: a thread that misses while another thread
+	*	is computing the same key waits for that computation and shares its result or failure.
+	*	A failure is not remembered, so the next request tries again, unless the cache was built
+	*	with {@link Builder#cacheLoadFailures}.
+	*
+	*	If the cache refreshes after write (see {@link Builder#refreshAfterWrite}) and the value
+	*	found is due for a refresh, the loader is also run on the refresh executor, and the value
+	*	found is returned at once.  The reloaded value replaces it when ready, unless the entry was
+	*	changed or removed in the meantime; if the reload fails, the old value stays.
+	*
+	*		@param	loader_i				Computes the value.  A <CODE>null</CODE> result is
+	*										returned but not stored.  The loader must not ask this
+	*										cache for the key it is computing.
+	*
+	*		@exception	ExecutionException	The loader threw; the exception is the cause.
+	*
+	***************************************************************************************************/
+	public V	get(K key_i, Loader<? super K,? extends V> loader_i) throws ExecutionException
+	{
+		if (loader_i == null)
+		{
+			throw new NullPointerException("loader_i");
+		}
+
+		final Object       key     = lookupKey(key_i);
+		final Segment<K,V> segment = segmentFor(key);
+		final CacheNode<K,V> node  = segment.get(key);
+		final V value = (node != null) ? node.getValue() : null;
+		recordRead(value != null);
+		if (value == null)
+		{
+			return load(segment,key_i,key,loader_i);
+		}
+
+		if ((myRefreshAfterWrite != 0) && (now() - node.myWriteTime >= myRefreshAfterWrite))
+		{
+			refresh(segment,key_i,key,node,loader_i);
+		}
+		return value;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Retrieve the values of several keys, computing all of the missing ones in one call to a
+	*	{@link BulkLoader} and storing them with {@link #putAll}.  Unlike {@link #get(Object,Loader)}
+	*	the computation is not shared with other threads missing on the same keys.
+	*
+	*	As with {@link #putAll}, the keys are grouped by segment, and each segment is locked once for
+	*	all of its keys, rather than tried once per key; a segment that reads without its lock is
+	*	not locked at all.
+	*
+	*		@return		The values found or loaded, in the order of the keys; keys without a value
+	*					are left out.
+	*
+	*		@exception	ExecutionException	The loader threw; the exception is the cause.
 	*
 	***************************************************************************************************/
-	public Object	get(Object key_i)
+	public Map<K,V>	getAll(Iterable<? extends K> keys_i, BulkLoader<K,V> loader_i) throws ExecutionException
 	{
-		return myMap.get(key_i);
+		final Set<K> distinct = new LinkedHashSet<K>();
+		for (K key : keys_i)
+		{
+			distinct.add(key);
+		}
+		final List<K> requested = new ArrayList<K>(distinct);
+		final int count = requested.size();
+		final Object[] keys  = new Object[count];
+		final Object[] stored = new Object[count];
+		final long[]   order = new long[count];		// segment index in the high half, key index in the low
+
+		for (int i = 0; i < count; ++i)
+		{
+			keys[i]  = lookupKey(requested.get(i));
+			order[i] = ((long)segmentIndexFor(keys[i]) << 32) | i;
+		}
+		Arrays.sort(order);
+
+		for (int start = 0; start < count;)
+		{
+			final int segmentIndex = (int)(order[start] >>> 32);
+			final Segment<K,V> segment = mySegments[segmentIndex];
+			int end = start;
+			segment.lock();
+			try
+			{
+				for (; (end < count) && ((int)(order[end] >>> 32) == segmentIndex); ++end)
+				{
+					final int entry = (int)order[end];
+					final CacheNode<K,V> node = segment.get(keys[entry]);
+					stored[entry] = (node != null) ? node.getValue() : null;
+				}
+			}
+			finally
+			{
+				segment.unlock();
+			}
+			start = end;
+		}
+
+		// the other tiers store what they find, so they are searched once the segments are released
+		final Map<K,V> values  = new LinkedHashMap<K,V>();
+		final Set<K>   missing = new LinkedHashSet<K>();
+		for (int i = 0; i < count; ++i)
+		{
+			final K key = requested.get(i);
+			recordRead(stored[i] != null);
+			@SuppressWarnings("unchecked")
+			final V value = (stored[i] != null) ? (V)stored[i] : findElsewhere(key);
+			if (value != null)
+			{
+				values.put(key,value);
+			}
+			else
+			{
+				missing.add(key);
+			}
+		}
+		if (missing.isEmpty())
+		{
+			return values;
+		}
+
+		final long loadStartTime = System.nanoTime();
+		final Map<K,V> loaded;
+		try
+		{
+			loaded = loader_i.loadAll(Collections.unmodifiableSet(missing));
+		}
+		catch (Exception e)
+		{
+			throw new ExecutionException(e);
+		}
+		if (loaded == null)
+		{
+			return values;
+		}
+
+		final Map<K,V> found = new LinkedHashMap<K,V>();
+		for (Map.Entry<K,V> entry : loaded.entrySet())
+		{
+			if (entry.getValue() != null)
+			{
+				found.put(entry.getKey(),entry.getValue());
+			}
+		}
+		putAll(found);
+		recordLoad(System.nanoTime() - loadStartTime);
+
+		// merge the loaded values with the others, keeping the order of the keys
+		final Map<K,V> ordered = new LinkedHashMap<K,V>();
+		for (K key : requested)
+		{
+			final V value = missing.contains(key) ? found.get(key) : values.get(key);
+			if (value != null)
+			{
+				ordered.put(key,value);
+			}
+		}
+		return ordered;
 	}
 
 
@@ -71,7 +506,9 @@ public class LRUCache
 	***************************************************************************************************/
 	public boolean	containsKey(Object key_i)
 	{
-		return myMap.containsKey(key_i);
+		final Object key = lookupKey(key_i);
+		final CacheNode<K,V> node = segmentFor(key).myMap.get(key);
+		return (node != null) && !isExpired(node) && !node.isCollected();
 	}
 
 
@@ -83,7 +520,40 @@ public class LRUCache
 	***************************************************************************************************/
 	public void	clear()
 	{
-		myMap.clear();
+		for (int i = 0; i < mySegments.length; ++i)
+		{
+			mySegments[i].clear();
+		}
+		if (myOffHeapTier != null)
+		{
+			myOffHeapTier.clear();
+		}
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Remove the entries that have expired or been collected, rather than waiting for them to be
+	*	found by later reads and writes.
+	*
+	***************************************************************************************************/
+	public void	cleanUp()
+	{
+		for (int i = 0; i < mySegments.length; ++i)
+		{
+			final Segment<K,V> segment = mySegments[i];
+			segment.lock();
+			try
+			{
+				segment.drainReferenceQueues();
+				segment.expireEntries(now());
+			}
+			finally
+			{
+				segment.unlock();
+			}
+		}
 	}
 
 
@@ -97,7 +567,14 @@ public class LRUCache
 	***************************************************************************************************/
 	public boolean	isEmpty()
 	{
-		return myMap.isEmpty();
+		for (int i = 0; i < mySegments.length; ++i)
+		{
+			if (!mySegments[i].myMap.isEmpty())
+			{
+				return false;
+			}
+		}
+		return true;
 	}
 
 
@@ -106,9 +583,10 @@ public class LRUCache
 	*
 	*
 	***************************************************************************************************/
-	public Object	remove(Object key_i)
+	public V	remove(Object key_i)
 	{
-		return myMap.remove(key_i);
+		final Object key = lookupKey(key_i);
+		return segmentFor(key).remove(key);
 	}
 
 
@@ -119,24 +597,63 @@ public class LRUCache
 	***************************************************************************************************/
 	public int	capacity()
 	{
-		return myCacheSize;
+		return (int)Math.min(myMaximumWeight,Integer.MAX_VALUE);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	The maximum total weight of the cache.  Without a {@link Weigher} every entry weighs one and
+	*	this is the maximum number of entries.
+	*
+	***************************************************************************************************/
+	public long	maximumWeight()
+	{
+		return myMaximumWeight;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	The current total weight of the entries in the cache.
+	*
+	***************************************************************************************************/
+	public long	weightedSize()
+	{
+		long weightedSize = 0;
+		for (int i = 0; i < mySegments.length; ++i)
+		{
+			weightedSize += mySegments[i].myWeight;
+		}
+		return weightedSize;
 	}
 
 
 
 	/***************************************************************************************************
 	*
+	*	The number of entries in the cache.  This may include expired entries that have not been
+	*	removed yet.
 	*
 	***************************************************************************************************/
 	public int	usedEntries()
 	{
-		return myMap.size();
+		int usedEntries = 0;
+		for (int i = 0; i < mySegments.length; ++i)
+		{
+			usedEntries += mySegments[i].myMap.size();
+		}
+		return usedEntries;
 	}
 
 
 
 	/***************************************************************************************************
 	*
+	*	The number of further entries that fit in the cache.  Only meaningful without a
+	*	{@link Weigher}.
 	*
 	***************************************************************************************************/
 	public int	unusedEntries()
@@ -148,48 +665,1709 @@ public class LRUCache
 
 	/***************************************************************************************************
 	*
-	*	Return a {@link Map} that is the current snapshot of the current LRU cache contents.
+	*	Return a snapshot of the statistics gathered so far.  All counts are zero unless the cache
+	*	was created to record statistics.
 	*
 	***************************************************************************************************/
-	public Map	toMap()
+	public CacheStats	stats()
 	{
-		return new LinkedHashMap(myMap);
+		if (myStats == null)
+		{
+			return new CacheStats(0,0,0,0,0);
+		}
+
+		return new CacheStats(
+		                      myStats.myHitCounter.sum(),
+		                      myStats.myMissCounter.sum(),
+		                      myStats.myEvictionCounter.sum(),
+		                      myStats.myLoadCounter.sum(),
+		                      myStats.myLoadTimeCounter.sum()
+		                     );
 	}
 
 
 
 	/***************************************************************************************************
 	*
+	*	Return a {@link Map} holding the entries found by {@link #forEach}.  Building it neither
+	*	locks the cache nor changes the recency of any entry.
 	*
 	***************************************************************************************************/
-	public Iterator<Map.Entry>	iterator()
+	public Map<K,V>	toMap()
 	{
-		return myMap.entrySet().iterator();
+		final Map<K,V> map = new HashMap<K,V>((int)(usedEntries() / HASH_TABLE_LOAD_FACTOR) + 1);
+		forEach(new EntryVisitor<K,V>()
+		{
+			public void	visit(K key_i, V value_i)
+			{
+				map.put(key_i,value_i);
+			}
+		});
+		return map;
 	}
 
 
+
 	/***************************************************************************************************
 	*
+	*	Pass every entry to a visitor, in no particular order.  Nothing is allocated per entry and
+	*	no lock is taken, so concurrent reads and writes go on unhindered and the recency of the
+	*	entries is left alone.  Like the iterators of {@link ConcurrentHashMap} the walk is weakly
+	*	consistent: each entry present throughout is visited exactly once, while entries added or
+	*	removed meanwhile may or may not be.  Expired and collected entries are skipped.
 	*
 	***************************************************************************************************/
-	public String	toString()
+	public void	forEach(EntryVisitor<? super K,? super V> visitor_i)
 	{
-		return myMap.toString();
+		final long now = now();
+		for (int i = 0; i < mySegments.length; ++i)
+		{
+			for (CacheNode<K,V> node : mySegments[i].myMap.values())
+			{
+				if (!node.isExpired(now) && !node.isCollected())
+				{
+					visitor_i.visit(node.getKey(),node.getValue());
+				}
+			}
+		}
 	}
 
 
 
+	/***************************************************************************************************
+	*
+	*	Iterate over the cache entries without copying them, with the same weakly consistent view
+	*	as {@link #forEach}: iterating never throws {@link java.util.ConcurrentModificationException}
+	*	and does not change the recency of the entries.  {@link Iterator#remove()} removes the
+	*	current entry from the cache.
+	*
+	***************************************************************************************************/
+	public Iterator<Map.Entry<K,V>>	iterator()
+	{
+		return new Iterator<Map.Entry<K,V>>()
+		{
+			public boolean	hasNext()
+			{
+				while (myNextNode == null)
+				{
+					if ((myNodeIterator != null) && myNodeIterator.hasNext())
+					{
+						final CacheNode<K,V> node = myNodeIterator.next();
+						if (!node.isExpired(myNow) && !node.isCollected())
+						{
+							myNextNode = node;
+						}
+					}
+					else if (mySegmentIndex < mySegments.length)
+					{
+						myNodeIterator = mySegments[mySegmentIndex++].myMap.values().iterator();
+					}
+					else
+					{
+						return false;
+					}
+				}
+				return true;
+			}
+
+			public Map.Entry<K,V>	next()
+			{
+				if (!hasNext())
+				{
+					throw new NoSuchElementException();
+				}
+				myCurrentNode = myNextNode;
+				myNextNode    = null;
+				return myCurrentNode;
+			}
+
+			public void	remove()
+			{
+				if (myCurrentNode == null)
+				{
+					throw new IllegalStateException();
+				}
+				segmentFor(myCurrentNode.myKey).remove(myCurrentNode.myKey,myCurrentNode);
+				myCurrentNode = null;
+			}
+
+			private final long					myNow = now();
+			private int							mySegmentIndex;
+			private Iterator<CacheNode<K,V>>	myNodeIterator;
+			private CacheNode<K,V>				myNextNode;
+			private CacheNode<K,V>				myCurrentNode;
+		};
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Save the entries of the cache to a file, replacing the file if it exists.
+	*
+	*		@param	codec_i					Writes the keys and values.
+	*
+	*		@param	version_i				Stamped on the file; {@link #restoreSnapshot} ignores a
+	*										file with another stamp.  Use a value that changes
+	*										whenever the saved entries could become wrong, such as
+	*										the application's version code.
+	*
+	***************************************************************************************************/
+	public void	saveSnapshot(File file_i, Codec<K,V> codec_i, long version_i) throws IOException
+	{
+		CacheSnapshot.write(file_i,codec_i,version_i,iterator());
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Make the entries of a file written by {@link #saveSnapshot} available to this cache.  Only
+	*	the header is read now: an entry is decoded when its key is first missed by
+	*	{@link #get(Object)} or {@link #get(Object,Loader)}, and then stored as if it had been
+	*	loaded.
+	*
+	*		@return		<CODE>false</CODE> if the file does not exist or has another version stamp.
+	*
+	***************************************************************************************************/
+	public boolean	restoreSnapshot(File file_i, Codec<K,V> codec_i, long version_i) throws IOException
+	{
+		final CacheSnapshot<K,V> snapshot = CacheSnapshot.open(file_i,codec_i,version_i);
+		mySnapshot = snapshot;
+		return snapshot != null;
+	}
+
 
-	////////////////////////////////////////////////////////////////////////////////////////////////////
-	//
-	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
-	//
-	////////////////////////////////////////////////////////////////////////////////////////////////////
 
-	private static final float   HASH_TABLE_LOAD_FACTOR = 0.75f;
+	/***************************************************************************************************
+	*
+	*	Count the computation of a value that was missing from the cache.  Used by callers in
+	*	this package that compute and {@link #put} values themselves.
+	*
+	*		@param	loadTime_i				The time the computation took, in nanoseconds.
+	*
+	***************************************************************************************************/
+	void	recordLoad(long loadTime_i)
+	{
+		if (myStats != null)
+		{
+			myStats.myLoadCounter.increment();
+			myStats.myLoadTimeCounter.add(loadTime_i);
+		}
+	}
 
 
-	private final int			myCacheSize;
-	private final LinkedHashMap	myMap;
+
+	/***************************************************************************************************
+	*
+	*	Look up a key like {@link #get(Object)}, for callers in this package that follow a miss
+	*	with {@link #get(Object,Loader)}: only a hit is counted, the miss being left to the loading
+	*	call, and the key is never stored, so it may be a reusable object.
+	*
+	***************************************************************************************************/
+	V	probe(Object key_i)
+	{
+		final Object key = lookupKey(key_i);
+		final CacheNode<K,V> node = segmentFor(key).get(key);
+		final V value = (node != null) ? node.getValue() : null;
+		if (value != null)
+		{
+			recordRead(true);
+		}
+		return value;
+	}
+
+
+	/***************************************************************************************************
+	*
+	*
+	***************************************************************************************************/
+	public String	toString()
+	{
+		return toMap().toString();
+	}
+
+
+
+	/**
+	*	Determines the weight of a cache entry.
+	*/
+	public interface Weigher<K,V>
+	{
+		/**
+		*	Return the weight of an entry, in units relative to the other entries.  It must not
+		*	be negative, and is computed only once, when the entry is stored.
+		*/
+		int	weigh(K key_i, V value_i);
+	}
+
+
+
+	/**
+	*	Receives the entries of a cache from {@link LRUCache#forEach}.
+	*/
+	public interface EntryVisitor<K,V>
+	{
+		void	visit(K key_i, V value_i);
+	}
+
+
+
+	/**
+	*	Computes the values of several keys missing from the cache at once.
+	*/
+	public interface BulkLoader<K,V>
+	{
+		/**
+		*	Return the values found for some or all of the given keys.  Keys that have no value may
+		*	be left out, and values for other keys are stored as well.
+		*/
+		Map<K,V>	loadAll(Set<K> keys_i) throws Exception;
+	}
+
+
+
+	/**
+	*	The reasons an entry may leave a cache.
+	*/
+	public enum RemovalCause
+	{
+		/** The entry was removed by {@link LRUCache#remove}, {@link LRUCache#clear} or an iterator. */
+		EXPLICIT,
+
+		/** The entry's value was replaced by a new one. */
+		REPLACED,
+
+		/** The entry was evicted to keep the cache within its maximum size or weight. */
+		SIZE,
+
+		/** The entry's time ran out. */
+		EXPIRED,
+
+		/** The garbage collector took the entry's weakly or softly held key or value. */
+		COLLECTED;
+
+
+		/***************************************************************************************************
+		*
+		*	Determine if the cache dropped the entry on its own, rather than being asked to.
+		*
+		***************************************************************************************************/
+		public boolean	wasEvicted()
+		{
+			return (this == SIZE) || (this == EXPIRED) || (this == COLLECTED);
+		}
+	}
+
+
+
+	/**
+	*	Told about the entries that leave a cache.
+	*/
+	public interface RemovalListener<K,V>
+	{
+		/**
+		*	Called after the entry has left, without any lock of the cache held.  The key or value
+		*	is <CODE>null</CODE> if it has been collected.  Exceptions thrown here are ignored.
+		*/
+		void	onRemoval(K key_i, V value_i, RemovalCause cause_i);
+	}
+
+
+
+	/**
+	*	Turns keys and values into bytes for a snapshot file, and back.
+	*/
+	public interface Codec<K,V>
+	{
+		void	writeKey(K key_i, DataOutput output_o) throws IOException;
+
+		void	writeValue(V value_i, DataOutput output_o) throws IOException;
+
+		/**
+		*	Return the key read, or <CODE>null</CODE> if it can no longer be restored; its entry
+		*	is then skipped.
+		*/
+		K		readKey(DataInput input_i) throws IOException;
+
+		/**
+		*	Return the value read, or <CODE>null</CODE> if it can no longer be restored (for
+		*	instance, a class it names is gone); the key is then loaded as usual.
+		*/
+		V		readValue(DataInput input_i) throws IOException;
+	}
+
+
+
+	/**
+	*	Computes the value of a key that is missing from the cache.
+	*/
+	public interface Loader<K,V>
+	{
+		/**
+		*	Return the value for a key, or <CODE>null</CODE> if there is none.
+		*/
+		V	load(K key_i) throws Exception;
+	}
+
+
+
+	/**
+	*	A source of nanosecond time, replaceable so that expiration can be driven by hand.
+	*/
+	public interface Ticker
+	{
+		/** The ticker that reads {@link System#nanoTime()}. */
+		Ticker	SYSTEM = new Ticker()
+		{
+			public long	read()
+			{
+				return System.nanoTime();
+			}
+		};
+
+		/**
+		*	Return the number of nanoseconds elapsed since some fixed but arbitrary point in time.
+		*/
+		long	read();
+	}
+
+
+
+	/**
+	*	The ways a cache may choose which entry to evict.
+	*/
+	public enum Policy
+	{
+		/** Evict the least recently used entry. */
+		LRU,
+
+		/**
+		*	Window TinyLFU: evict by recency within a small admission window and by an aging
+		*	frequency estimate beyond it, so that scans of one-off keys do not flush out the
+		*	entries that are used over and over.
+		*/
+		WINDOW_TINY_LFU,
+
+		/**
+		*	Sampled approximate LRU: evict the least recently read of a few entries picked at
+		*	random.  Reads never lock and rarely write, and entries carry no list links, which
+		*	suits very large caches read by many threads.
+		*/
+		SAMPLED;
+
+
+		/***************************************************************************************************/
+		<K,V> CachePolicy<K,V>	newPolicy(long maximumWeight_i)
+		{
+			switch (this)
+			{
+				case WINDOW_TINY_LFU:	return new WindowTinyLfuPolicy<K,V>(maximumWeight_i);
+				case SAMPLED:			return new SampledPolicy<K,V>(maximumWeight_i);
+				default:				return new LruPolicy<K,V>();
+			}
+		}
+	}
+
+
+
+	/**
+	*	Collects the settings of a new {@link LRUCache}.  Every setting is optional except for the
+	*	maximum size or weight.
+	*/
+	public static class Builder<K,V>
+	{
+		/***************************************************************************************************
+		*
+		*	Bound the cache by its number of entries.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	maximumSize(int cacheSize_i)
+		{
+			return maximumWeight(cacheSize_i,null);
+		}
+
+
+		/***************************************************************************************************
+		*
+		*	Bound the cache by the total weight of its entries, as given by a {@link Weigher}.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	maximumWeight(long maximumWeight_i, Weigher<? super K,? super V> __weigher_i)
+		{
+			if (maximumWeight_i < 0)
+			{
+				throw new IllegalArgumentException("maximumWeight_i must not be negative: " + maximumWeight_i);
+			}
+
+			myMaximumWeight = maximumWeight_i;
+			myWeigher       = __weigher_i;
+			return this;
+		}
+
+
+		/***************************************************************************************************
+		*
+		*	Set the estimated number of threads updating the cache at the same time.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	concurrencyLevel(int concurrencyLevel_i)
+		{
+			if (concurrencyLevel_i <= 0)
+			{
+				throw new IllegalArgumentException("concurrencyLevel_i must be positive: " + concurrencyLevel_i);
+			}
+
+			myConcurrencyLevel = concurrencyLevel_i;
+			return this;
+		}
+
+
+		/***************************************************************************************************
+		*
+		*	Count hits, misses, evictions and loads; see {@link LRUCache#stats()}.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	recordStats(boolean recordStats_i)
+		{
+			myRecordStats = recordStats_i;
+			return this;
+		}
+
+
+		/***************************************************************************************************
+		*
+		*	Expire every entry a fixed time after its value was stored.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	expireAfterWrite(long duration_i, TimeUnit unit_i)
+		{
+			myExpireAfterWrite = toPositiveNanos(duration_i,unit_i);
+			return this;
+		}
+
+
+		/***************************************************************************************************
+		*
+		*	Expire every entry a fixed time after it was last stored or read.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	expireAfterAccess(long duration_i, TimeUnit unit_i)
+		{
+			myExpireAfterAccess = toPositiveNanos(duration_i,unit_i);
+			return this;
+		}
+
+
+		/***************************************************************************************************
+		*
+		*	Hold keys weakly, so that an entry is removed once nothing else refers to its key.  Keys
+		*	are then compared by identity (<CODE>==</CODE>) rather than by {@link Object#equals}.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	weakKeys()
+		{
+			myWeakKeys = true;
+			return this;
+		}
+
+
+		/***************************************************************************************************
+		*
+		*	Hold values weakly, so that an entry is removed once nothing else refers to its value.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	weakValues()
+		{
+			myValueStrength = Strength.WEAK;
+			return this;
+		}
+
+
+		/***************************************************************************************************
+		*
+		*	Hold values softly, so that the garbage collector may remove entries when memory runs low.
+		*	Entries still compete for the cache's size as usual.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	softValues()
+		{
+			myValueStrength = Strength.SOFT;
+			return this;
+		}
+
+
+		/***************************************************************************************************
+		*
+		*	Reload a value in the background once it is older than the given time, the next time it is
+		*	asked for through {@link LRUCache#get(Object,Loader)}.  Until the reload is done the old
+		*	value is returned.  The time should be shorter than any expiration time, since an expired
+		*	value is loaded again in the foreground instead.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	refreshAfterWrite(long duration_i, TimeUnit unit_i)
+		{
+			myRefreshAfterWrite = toPositiveNanos(duration_i,unit_i);
+			return this;
+		}
+
+
+		/***************************************************************************************************
+		*
+		*	Run refreshes on the given executor instead of on a shared pool of daemon threads.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	refreshExecutor(Executor executor_i)
+		{
+			if (executor_i == null)
+			{
+				throw new NullPointerException("executor_i");
+			}
+
+			myRefreshExecutor = executor_i;
+			return this;
+		}
+
+
+		/***************************************************************************************************
+		*
+		*	Tell a listener about every entry that leaves the cache.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	removalListener(RemovalListener<? super K,? super V> listener_i)
+		{
+			if (listener_i == null)
+			{
+				throw new NullPointerException("listener_i");
+			}
+
+			myRemovalListener = listener_i;
+			return this;
+		}
+
+
+		/***************************************************************************************************
+		*
+		*	Remember that a {@link Loader} failed for a key, so that for the given time requests for
+		*	that key fail at once with the same exception instead of running the loader again.
+		*	Removing the key or clearing the cache forgets the failure.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	cacheLoadFailures(long duration_i, TimeUnit unit_i)
+		{
+			myFailureRetention = toPositiveNanos(duration_i,unit_i);
+			return this;
+		}
+
+
+		/***************************************************************************************************
+		*
+		*	Choose how entries are picked for eviction.  The default is {@link Policy#LRU}.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	policy(Policy policy_i)
+		{
+			if (policy_i == null)
+			{
+				throw new NullPointerException("policy_i");
+			}
+
+			myPolicy = policy_i;
+			return this;
+		}
+
+
+		/***************************************************************************************************
+		*
+		*	Use a different source of time for expiration.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	ticker(Ticker ticker_i)
+		{
+			if (ticker_i == null)
+			{
+				throw new NullPointerException("ticker_i");
+			}
+
+			myTicker = ticker_i;
+			return this;
+		}
+
+
+		/***************************************************************************************************
+		*
+		*	Keep the values evicted from the cache in a second tier outside the Java heap, instead
+		*	of dropping them.  A lookup that misses on the heap takes the value from that tier and
+		*	stores it on the heap again.  The tier has its own limit and evicts its own
+		*	least-recently stored values; the removal listener hears of an entry when it leaves the
+		*	heap, not when the tier drops it.
+		*
+		*	The tier suits large values that are costly to keep on the heap; it cannot be combined
+		*	with weak keys or with expiration.
+		*
+		*		@param	maximumBytes_i			The most memory the tier may take, in bytes.
+		*
+		*		@param	codec_i					Turns the values into bytes and back; its key
+		*										methods are not used.
+		*
+		***************************************************************************************************/
+		public Builder<K,V>	offHeapTier(long maximumBytes_i, Codec<K,V> codec_i)
+		{
+			if (codec_i == null)
+			{
+				throw new NullPointerException("codec_i");
+			}
+			if (maximumBytes_i <= 0)
+			{
+				throw new IllegalArgumentException("maximumBytes_i must be positive: " + maximumBytes_i);
+			}
+
+			myOffHeapBytes = maximumBytes_i;
+			myOffHeapCodec = codec_i;
+			return this;
+		}
+
+
+		/***************************************************************************************************/
+		public LRUCache<K,V>	build()
+		{
+			if (myMaximumWeight < 0)
+			{
+				throw new IllegalStateException("a maximum size or weight is required");
+			}
+			if ((myOffHeapCodec != null) && myWeakKeys)
+			{
+				throw new IllegalStateException("an off-heap tier cannot be used with weak keys");
+			}
+			if ((myOffHeapCodec != null) && ((myExpireAfterWrite != 0) || (myExpireAfterAccess != 0)))
+			{
+				throw new IllegalStateException("an off-heap tier cannot be used with expiration");
+			}
+
+			return new LRUCache<K,V>(this);
+		}
+
+
+		private long							myMaximumWeight = -1;
+		private Weigher<? super K,? super V>	myWeigher;
+		private int								myConcurrencyLevel = 1;
+		private boolean							myRecordStats;
+		private long							myExpireAfterWrite;		// 0 if entries do not expire after write
+		private long							myExpireAfterAccess;	// 0 if entries do not expire after access
+		private Ticker							myTicker = Ticker.SYSTEM;
+		private Policy							myPolicy = Policy.LRU;
+		private long							myFailureRetention;		// 0 if load failures are not cached
+		private boolean							myWeakKeys;
+		private long							myRefreshAfterWrite;	// 0 if values are not refreshed
+		private Executor						myRefreshExecutor;		// null for the shared pool
+		private RemovalListener<? super K,? super V>	myRemovalListener;
+		private Strength						myValueStrength = Strength.STRONG;
+		private long							myOffHeapBytes;
+		private Codec<K,V>						myOffHeapCodec;		// null unless there is an off-heap tier
+
+
+		/***************************************************************************************************/
+		private static long	toPositiveNanos(long duration_i, TimeUnit unit_i)
+		{
+			if (duration_i <= 0)
+			{
+				throw new IllegalArgumentException("duration_i must be positive: " + duration_i);
+			}
+			return unit_i.toNanos(duration_i);
+		}
+	}
+
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static final float	HASH_TABLE_LOAD_FACTOR = 0.75f;
+	private static final int	MAXIMUM_SEGMENTS = 1 << 16;
+	private static final int	INITIAL_SEGMENT_CAPACITY = 16;
+	private static final int	MAXIMUM_INITIAL_SEGMENT_CAPACITY = 1 << 12;
+
+
+	private final long								myMaximumWeight;
+	private final Weigher<? super K,? super V>		myWeigher;		// null if every entry weighs one
+	private final Statistics						myStats;		// null unless statistics are recorded
+	private final long								myExpireAfterWrite;
+	private final long								myExpireAfterAccess;
+	private final Ticker							myTicker;
+	private final long								myStartTime;
+	private final Policy							myPolicy;
+	private final long								myFailureRetention;
+	private final boolean							myWeakKeys;
+	private final long								myRefreshAfterWrite;
+	private final Executor							myRefreshExecutor;		// null for the shared pool
+	private final RemovalListener<? super K,? super V>	myRemovalListener;	// null if nobody listens
+	private final Strength							myValueStrength;
+	private final OffHeapTier<K,V>					myOffHeapTier;	// null unless evicted values are demoted
+	private final Segment<K,V>[]					mySegments;
+	private volatile CacheSnapshot<K,V>				mySnapshot;		// null unless entries remain to be restored
+	private final int								mySegmentShift;
+	private final int								mySegmentMask;
+
+
+
+	/**
+	*	How a value is referred to by its node.
+	*/
+	private enum Strength
+	{
+		STRONG,
+		WEAK,
+		SOFT
+	}
+
+
+
+	/**
+	*	The counters behind {@link #stats()}.
+	*/
+	private static final class Statistics
+	{
+		final StripedCounter	myHitCounter      = new StripedCounter();
+		final StripedCounter	myMissCounter     = new StripedCounter();
+		final StripedCounter	myEvictionCounter = new StripedCounter();
+		final StripedCounter	myLoadCounter     = new StripedCounter();
+		final StripedCounter	myLoadTimeCounter = new StripedCounter();
+	}
+
+
+
+	/**
+	*	A removal waiting for the segment lock to be released, to be passed to the listener or, for
+	*	an eviction, to the off-heap tier.
+	*/
+	private static final class RemovalNotification
+	{
+		RemovalNotification(Object key_i, Object value_i, RemovalCause cause_i)
+		{
+			myKey   = key_i;
+			myValue = value_i;
+			myCause = cause_i;
+		}
+
+		final Object		myKey;		// as stored or looked up by the segment
+		final Object		myValue;	// as stored by the segment
+		final RemovalCause	myCause;
+	}
+
+
+
+	/**
+	*	The pool that runs refreshes of caches without an executor of their own, created on first use.
+	*	Its threads are daemons, so that pending refreshes never keep the process alive.
+	*/
+	private static final class SharedRefreshExecutor
+	{
+		static final Executor	ourExecutor = Executors.newCachedThreadPool(new ThreadFactory()
+		{
+			public Thread	newThread(Runnable runnable_i)
+			{
+				final Thread thread = new Thread(runnable_i,"LRUCache refresh");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+
+
+	/**
+	*	A computation of one key's value that other threads may wait on.
+	*/
+	private static final class Loading<K,V> extends FutureTask<V>
+	{
+		Loading(final K key_i, final Loader<? super K,? extends V> loader_i)
+		{
+			super(new Callable<V>()
+			{
+				public V	call() throws Exception
+				{
+					return loader_i.load(key_i);
+				}
+			});
+			myThread = Thread.currentThread();
+		}
+
+
+		/**
+		*	Wait for the result without giving up on an interrupt, which is restored afterwards.
+		*/
+		V	await() throws ExecutionException
+		{
+			boolean interrupted = false;
+			try
+			{
+				for (;;)
+				{
+					try
+					{
+						return get();
+					}
+					catch (InterruptedException e)
+					{
+						interrupted = true;
+					}
+				}
+			}
+			finally
+			{
+				if (interrupted)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+
+		void	complete(V value_i)
+		{
+			set(value_i);
+		}
+
+
+		final Thread	myThread;			// the thread that runs the loader
+		volatile long	myRetryTime = -1;	// when a cached failure may be retried; -1 while not failed
+	}
+
+
+
+	/**
+	*	An independently locked part of the cache.  The hash table may be read without the lock;
+	*	the eviction policy, the timer wheel and all structural changes are guarded by it.
+	*/
+	private static final class Segment<K,V> extends ReentrantLock implements TimerWheel.Expirer<K,V>
+	{
+		private static final long serialVersionUID = 1;
+
+
+		Segment(LRUCache<K,V> cache_i, long maximumWeight_i, int initialCapacity_i)
+		{
+			myCache         = cache_i;
+			myMaximumWeight = maximumWeight_i;
+			myMap           = new ConcurrentHashMap<Object,CacheNode<K,V>>(initialCapacity_i,HASH_TABLE_LOAD_FACTOR,1);
+			myTimerWheel    = new TimerWheel<K,V>(this);
+			myPolicy        = cache_i.myPolicy.newPolicy(maximumWeight_i);
+			myLoads         = new ConcurrentHashMap<Object,Loading<K,V>>(INITIAL_SEGMENT_CAPACITY,HASH_TABLE_LOAD_FACTOR,1);
+			myKeyQueue      = cache_i.myWeakKeys ? new ReferenceQueue<Object>() : null;
+			myValueQueue    = (cache_i.myValueStrength != Strength.STRONG) ? new ReferenceQueue<Object>() : null;
+			myNotifications = (cache_i.myRemovalListener != null) ? new ConcurrentLinkedQueue<RemovalNotification>() : null;
+			myDemotions     = (cache_i.myOffHeapTier != null) ? new ConcurrentLinkedQueue<RemovalNotification>() : null;
+		}
+
+
+		/**
+		*	Release the lock, and once it is no longer held move the values evicted under it to the
+		*	off-heap tier and pass the removals to the listener.
+		*/
+		public void	unlock()
+		{
+			super.unlock();
+			if (!isHeldByCurrentThread())
+			{
+				if (myDemotions != null)
+				{
+					demote();
+				}
+				if (myNotifications != null)
+				{
+					notifyListener();
+				}
+			}
+		}
+
+
+		CacheNode<K,V>	get(Object key_i)
+		{
+			final CacheNode<K,V> node = myMap.get(key_i);
+			if (node == null)
+			{
+				return null;
+			}
+
+			if (node.isCollected())
+			{
+				if (tryLock())
+				{
+					try
+					{
+						drainReferenceQueues();
+					}
+					finally
+					{
+						unlock();
+					}
+				}
+				return null;
+			}
+
+			final boolean mayExpire = (node.myExpirationTime != CacheNode.NEVER);
+			final long now = mayExpire ? myCache.now() : 0;
+			if (mayExpire && node.isExpired(now))
+			{
+				if (tryLock())
+				{
+					try
+					{
+						expireEntries(now);
+						if (myMap.get(key_i) == node)
+						{
+							expire(node);
+						}
+					}
+					finally
+					{
+						unlock();
+					}
+				}
+				return null;
+			}
+
+			final boolean extendsExpiration = (myCache.myExpireAfterAccess != 0) && !node.myHasFixedExpiration;
+			if (extendsExpiration)
+			{
+				// safe without the lock: if the node is filed too early the wheel re-files it
+				node.myExpirationTime = myCache.expirationTimeAfterAccess(node,now);
+			}
+
+			myPolicy.onRead(node);
+
+			// never wait for the lock on a read; a skipped access only makes the policy approximate.
+			// A policy that does not order by access leaves the lock to expiration and collection.
+			final boolean ordersByAccess = myPolicy.ordersByAccess();
+			if ((ordersByAccess || mayExpire || (myKeyQueue != null) || (myValueQueue != null)) && tryLock())
+			{
+				try
+				{
+					if (myPolicy.holds(node))
+					{
+						if (ordersByAccess)
+						{
+							myPolicy.onAccess(node);
+						}
+						if (extendsExpiration)
+						{
+							myTimerWheel.reschedule(node);
+						}
+					}
+					drainReferenceQueues();
+					if (mayExpire)
+					{
+						expireEntries(now);
+					}
+				}
+				finally
+				{
+					unlock();
+				}
+			}
+			return node;
+		}
+
+
+		void	put(Object key_i, V value_i, int weight_i, long timeToLive_i)
+		{
+			lock();
+			try
+			{
+				final long now = myCache.now();
+				drainReferenceQueues();
+				expireEntries(now);
+
+				if (myCache.myOffHeapTier != null)
+				{
+					// the new value makes any demoted one stale
+					myCache.myOffHeapTier.remove(key_i);
+				}
+
+				CacheNode<K,V> node = myMap.get(key_i);
+				if (weight_i > myMaximumWeight)
+				{
+					// it could never fit; drop any previous value rather than keep a stale one
+					if (node != null)
+					{
+						removeNode(node,RemovalCause.REPLACED);
+					}
+					recordEviction();
+					enqueueDemotion(key_i,value_i);
+					enqueueNotification(key_i,value_i,RemovalCause.SIZE);
+					return;
+				}
+
+				if ((node != null) && (timeToLive_i != 0) && !node.isTimed())
+				{
+					// the node cannot be scheduled in the timer wheel; a new one takes its place
+					removeNode(node,RemovalCause.REPLACED);
+					node = null;
+				}
+
+				if (node != null)
+				{
+					enqueueNotification(node.myKey,node.myValue,RemovalCause.REPLACED);
+					final int previousWeight = node.myWeight;
+					node.myValue  = referTo(value_i,node);
+					node.myWeight = weight_i;
+					myWeight += weight_i - previousWeight;
+					myPolicy.onUpdate(node,previousWeight);
+				}
+				else
+				{
+					// a weak key is looked up by a LookupKey but stored as a WeakKey
+					final Object key = (key_i instanceof CacheNode.LookupKey) ? new CacheNode.WeakKey(((CacheNode.LookupKey)key_i).myKey,myKeyQueue) : key_i;
+					node = myPolicy.newNode(key,(timeToLive_i != 0) || (myCache.myExpireAfterWrite != 0) || (myCache.myExpireAfterAccess != 0));
+					node.myValue  = referTo(value_i,node);
+					node.myWeight = weight_i;
+					myWeight += weight_i;
+					myMap.put(key,node);
+					myPolicy.onInsert(node);
+				}
+				myCache.setExpirationTimeOnWrite(node,now,timeToLive_i);
+				myTimerWheel.reschedule(node);
+
+				while (myWeight > myMaximumWeight)
+				{
+					removeNode(myPolicy.selectVictim(),RemovalCause.SIZE);
+				}
+			}
+			finally
+			{
+				unlock();
+			}
+		}
+
+
+		V	remove(Object key_i)
+		{
+			lock();
+			try
+			{
+				forgetFailedLoad(key_i);
+				drainReferenceQueues();
+
+				final CacheNode<K,V> node = myMap.get(key_i);
+				if (node == null)
+				{
+					final Map.Entry<K,V> demoted = (myCache.myOffHeapTier != null) ? myCache.myOffHeapTier.take(key_i) : null;
+					return (demoted != null) ? demoted.getValue() : null;
+				}
+				final boolean expired = node.isExpired(myCache.now());
+				removeNode(node,expired ? RemovalCause.EXPIRED : RemovalCause.EXPLICIT);
+				return expired ? null : node.getValue();
+			}
+			finally
+			{
+				unlock();
+			}
+		}
+
+
+		void	remove(Object key_i, CacheNode<K,V> node_i)
+		{
+			lock();
+			try
+			{
+				if (myMap.get(key_i) == node_i)
+				{
+					removeNode(node_i,RemovalCause.EXPLICIT);
+				}
+			}
+			finally
+			{
+				unlock();
+			}
+		}
+
+
+		void	clear()
+		{
+			lock();
+			try
+			{
+				if (myNotifications != null)
+				{
+					for (CacheNode<K,V> node : myMap.values())
+					{
+						enqueueNotification(node.myKey,node.myValue,RemovalCause.EXPLICIT);
+					}
+				}
+
+				myPolicy.clear();
+				myTimerWheel.clear();
+				myMap.clear();
+				myWeight = 0;
+
+				// whatever was queued belongs to nodes that are gone now
+				while ((myKeyQueue != null) && (myKeyQueue.poll() != null))
+				{
+				}
+				while ((myValueQueue != null) && (myValueQueue.poll() != null))
+				{
+				}
+
+				for (Object key : myLoads.keySet())
+				{
+					forgetFailedLoad(key);
+				}
+			}
+			finally
+			{
+				unlock();
+			}
+		}
+
+
+		/**
+		*	Remove every entry whose time has passed.  Must be called with the lock held.
+		*/
+		void	expireEntries(long now_i)
+		{
+			if (!myTimerWheel.isEmpty())
+			{
+				myTimerWheel.advance(now_i);
+			}
+		}
+
+
+		/**
+		*	Remove every entry whose key or value the garbage collector has taken.  Must be called
+		*	with the lock held.
+		*/
+		void	drainReferenceQueues()
+		{
+			if (myKeyQueue != null)
+			{
+				for (Reference<?> reference; (reference = myKeyQueue.poll()) != null;)
+				{
+					// a cleared WeakKey still equals itself, so it finds its node
+					final CacheNode<K,V> node = myMap.get(reference);
+					if ((node != null) && (node.myKey == reference))
+					{
+						removeNode(node,RemovalCause.COLLECTED);
+					}
+				}
+			}
+			if (myValueQueue != null)
+			{
+				for (Reference<?> reference; (reference = myValueQueue.poll()) != null;)
+				{
+					@SuppressWarnings("unchecked")
+					final CacheNode<K,V> node = (CacheNode<K,V>)((CacheNode.ValueReference)reference).getNode();
+					// the value may have been replaced since, or the node removed
+					if ((node.myValue == reference) && (myMap.get(node.myKey) == node))
+					{
+						removeNode(node,RemovalCause.COLLECTED);
+					}
+				}
+			}
+		}
+
+
+		public void	expire(CacheNode<K,V> node_i)
+		{
+			removeNode(node_i,RemovalCause.EXPIRED);
+		}
+
+
+		private void	removeNode(CacheNode<K,V> node_i, RemovalCause cause_i)
+		{
+			myMap.remove(node_i.myKey);
+			myPolicy.onRemove(node_i);
+			myTimerWheel.deschedule(node_i);
+			myWeight -= node_i.myWeight;
+
+			if (cause_i.wasEvicted())
+			{
+				recordEviction();
+			}
+			if (cause_i == RemovalCause.SIZE)
+			{
+				enqueueDemotion(node_i.myKey,node_i.myValue);
+			}
+			enqueueNotification(node_i.myKey,node_i.myValue,cause_i);
+		}
+
+
+		private void	enqueueDemotion(Object key_i, Object value_i)
+		{
+			if (myDemotions != null)
+			{
+				myDemotions.add(new RemovalNotification(key_i,value_i,RemovalCause.SIZE));
+			}
+		}
+
+
+		/**
+		*	Encode the values evicted from the segment, outside the lock, then store them in the
+		*	off-heap tier unless their keys have been stored again in the meantime.
+		*/
+		@SuppressWarnings("unchecked")
+		private void	demote()
+		{
+			for (RemovalNotification demotion; (demotion = myDemotions.poll()) != null;)
+			{
+				final V value = (V)CacheNode.unwrapValue(demotion.myValue);
+				final byte[] bytes = (value != null) ? myCache.myOffHeapTier.encode(value) : null;
+				if (bytes == null)
+				{
+					continue;
+				}
+
+				lock();
+				try
+				{
+					if (!myMap.containsKey(demotion.myKey))
+					{
+						myCache.myOffHeapTier.put(demotion.myKey,bytes);
+					}
+				}
+				finally
+				{
+					// not unlock(), which would demote again from inside this loop
+					super.unlock();
+				}
+			}
+		}
+
+
+		private void	enqueueNotification(Object key_i, Object value_i, RemovalCause cause_i)
+		{
+			if (myNotifications != null)
+			{
+				myNotifications.add(new RemovalNotification(key_i,value_i,cause_i));
+			}
+		}
+
+
+		@SuppressWarnings("unchecked")
+		private void	notifyListener()
+		{
+			for (RemovalNotification notification; (notification = myNotifications.poll()) != null;)
+			{
+				try
+				{
+					((RemovalListener<Object,Object>)myCache.myRemovalListener).onRemoval(CacheNode.unmaskKey(notification.myKey),
+					                                                                    CacheNode.unwrapValue(notification.myValue),
+					                                                                    notification.myCause);
+				}
+				catch (RuntimeException e)
+				{
+					// a failing listener must not break the cache operation that caused the removal
+				}
+			}
+		}
+
+
+		/**
+		*	Store a refreshed value, provided the entry still holds the value it was refreshed from.
+		*	An entry stored with its own time to live keeps its expiration time.
+		*/
+		void	replace(Object key_i, CacheNode<K,V> node_i, Object previousValue_i, V value_i, int weight_i)
+		{
+			lock();
+			try
+			{
+				if ((myMap.get(key_i) == node_i) && (node_i.myValue == previousValue_i))
+				{
+					final long timeToLive = node_i.myHasFixedExpiration ? node_i.myExpirationTime - myCache.now() : 0;
+					// an entry that expired during the refresh is left to be removed
+					if (!node_i.myHasFixedExpiration || (timeToLive > 0))
+					{
+						put(key_i,value_i,weight_i,timeToLive);
+					}
+				}
+			}
+			finally
+			{
+				unlock();
+			}
+		}
+
+
+		private Object	referTo(V value_i, CacheNode<K,V> node_i)
+		{
+			if (value_i == null)
+			{
+				return null;
+			}
+			switch (myCache.myValueStrength)
+			{
+				case WEAK:	return new CacheNode.WeakValue(value_i,node_i,myValueQueue);
+				case SOFT:	return new CacheNode.SoftValue(value_i,node_i,myValueQueue);
+				default:	return value_i;
+			}
+		}
+
+
+		private void	forgetFailedLoad(Object key_i)
+		{
+			// a load still running is left alone; only its failure, once cached, is dropped
+			final Loading<K,V> loading = myLoads.get(key_i);
+			if ((loading != null) && loading.isDone())
+			{
+				myLoads.remove(key_i,loading);
+			}
+		}
+
+
+		private void	recordEviction()
+		{
+			if (myCache.myStats != null)
+			{
+				myCache.myStats.myEvictionCounter.increment();
+			}
+		}
+
+
+		private final LRUCache<K,V>								myCache;
+		private final long										myMaximumWeight;
+		volatile long											myWeight;	// written only under the lock
+		private final ConcurrentHashMap<Object,CacheNode<K,V>>	myMap;		// masked key ==> CacheNode
+		private final CachePolicy<K,V>							myPolicy;
+		private final TimerWheel<K,V>							myTimerWheel;
+		final ConcurrentHashMap<Object,Loading<K,V>>			myLoads;	// masked key ==> running or failed load
+		private final ReferenceQueue<Object>					myKeyQueue;		// null unless keys are weak
+		private final ReferenceQueue<Object>					myValueQueue;	// null unless values are weak or soft
+		private final ConcurrentLinkedQueue<RemovalNotification>	myNotifications;	// null unless there is a listener
+		private final ConcurrentLinkedQueue<RemovalNotification>	myDemotions;		// null unless there is an off-heap tier
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Compute a missing value, or wait for the thread already computing it.
+	*
+	***************************************************************************************************/
+	private V	load(Segment<K,V> segment_i, K key_i, Object maskedKey_i, Loader<? super K,? extends V> loader_i) throws ExecutionException
+	{
+		final Loading<K,V> loading = new Loading<K,V>(key_i,loader_i);
+		for (;;)
+		{
+			final Loading<K,V> running = segment_i.myLoads.putIfAbsent(maskedKey_i,loading);
+			if (running == null)
+			{
+				break;
+			}
+
+			final long retryTime = running.myRetryTime;
+			if ((retryTime != -1) && (retryTime - now() <= 0))
+			{
+				// the remembered failure is over; take its place and try again
+				if (segment_i.myLoads.replace(maskedKey_i,running,loading))
+				{
+					break;
+				}
+				continue;
+			}
+
+			if ((running.myThread == Thread.currentThread()) && !running.isDone())
+			{
+				throw new IllegalStateException("recursive load of key " + key_i);
+			}
+			return running.await();
+		}
+
+		// a load that finished after the caller missed has already stored its value
+		final CacheNode<K,V> node = segment_i.get(maskedKey_i);
+		V stored = (node != null) ? node.getValue() : null;
+		if (stored == null)
+		{
+			stored = findElsewhere(key_i);
+		}
+		if (stored != null)
+		{
+			loading.complete(stored);
+			segment_i.myLoads.remove(maskedKey_i,loading);
+			return stored;
+		}
+
+		final long loadStartTime = System.nanoTime();
+		loading.run();
+		try
+		{
+			final V value = loading.get();
+
+			// store the value before the load is forgotten, so that no request finds neither
+			if (value != null)
+			{
+				put(key_i,value);
+			}
+			recordLoad(System.nanoTime() - loadStartTime);
+			segment_i.myLoads.remove(maskedKey_i,loading);
+			return value;
+		}
+		catch (InterruptedException e)
+		{
+			// cannot happen, the task has already run in this thread
+			throw new IllegalStateException(e);
+		}
+		catch (ExecutionException e)
+		{
+			if (myFailureRetention != 0)
+			{
+				loading.myRetryTime = saturatedAdd(now(),myFailureRetention);
+			}
+			else
+			{
+				segment_i.myLoads.remove(maskedKey_i,loading);
+			}
+			throw e;
+		}
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Reload a value on the refresh executor, unless a refresh of it is already running.
+	*
+	***************************************************************************************************/
+	private void	refresh(final Segment<K,V> segment_i, final K key_i, final Object maskedKey_i, final CacheNode<K,V> node_i, final Loader<? super K,? extends V> loader_i)
+	{
+		if (!node_i.startRefresh())
+		{
+			return;
+		}
+
+		final Object previousValue = node_i.myValue;
+		final Runnable refresh = new Runnable()
+		{
+			public void	run()
+			{
+				try
+				{
+					final long loadStartTime = System.nanoTime();
+					final V value = loader_i.load(key_i);
+					if (value != null)
+					{
+						segment_i.replace(maskedKey_i,node_i,previousValue,value,weigh(key_i,value));
+						recordLoad(System.nanoTime() - loadStartTime);
+					}
+				}
+				catch (Exception e)
+				{
+					// keep serving the last good value; the next request after this one tries again
+				}
+				finally
+				{
+					node_i.endRefresh();
+				}
+			}
+		};
+
+		try
+		{
+			((myRefreshExecutor != null) ? myRefreshExecutor : SharedRefreshExecutor.ourExecutor).execute(refresh);
+		}
+		catch (RejectedExecutionException e)
+		{
+			node_i.endRefresh();
+		}
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Bring back the value of a key missing from the heap, from the off-heap tier or else from the
+	*	snapshot being restored.  The entry is stored again under the key held by the tier or the
+	*	snapshot, never under the one looked up, which the caller may reuse.
+	*
+	***************************************************************************************************/
+	private V	findElsewhere(Object key_i)
+	{
+		Map.Entry<K,V> entry = (myOffHeapTier != null) ? myOffHeapTier.take(CacheNode.maskNullKey(key_i)) : null;
+		if ((entry == null) && (mySnapshot != null))
+		{
+			entry = restore(key_i);
+		}
+		if (entry == null)
+		{
+			return null;
+		}
+
+		put(entry.getKey(),entry.getValue());
+		return entry.getValue();
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Take the entry saved in the snapshot for a key, if there is one, counting it as a load.
+	*
+	***************************************************************************************************/
+	private Map.Entry<K,V>	restore(Object key_i)
+	{
+		final CacheSnapshot<K,V> snapshot = mySnapshot;
+		if (snapshot == null)
+		{
+			return null;
+		}
+
+		final long loadStartTime = System.nanoTime();
+		final Map.Entry<K,V> entry = snapshot.take(key_i);
+		if (snapshot.isExhausted())
+		{
+			mySnapshot = null;
+		}
+		if (entry != null)
+		{
+			recordLoad(System.nanoTime() - loadStartTime);
+		}
+		return entry;
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	recordRead(boolean hit_i)
+	{
+		if (myStats != null)
+		{
+			if (hit_i)
+			{
+				myStats.myHitCounter.increment();
+			}
+			else
+			{
+				myStats.myMissCounter.increment();
+			}
+		}
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Return the key under which a caller's key is looked up in the segments.
+	*
+	***************************************************************************************************/
+	private Object	lookupKey(Object key_i)
+	{
+		final Object key = CacheNode.maskNullKey(key_i);
+		return myWeakKeys ? new CacheNode.LookupKey(key) : key;
+	}
+
+
+
+	/***************************************************************************************************/
+	private long	now()
+	{
+		return myTicker.read() - myStartTime;
+	}
+
+
+
+	/***************************************************************************************************/
+	private boolean	isExpired(CacheNode<K,V> node_i)
+	{
+		return (node_i.myExpirationTime != CacheNode.NEVER) && node_i.isExpired(now());
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Set the time a node expires when its value has just been stored.
+	*
+	*		@param	timeToLive_i			The time to live given for this entry, or zero to apply
+	*										the cache's own settings.
+	*
+	***************************************************************************************************/
+	private void	setExpirationTimeOnWrite(CacheNode<K,V> node_i, long now_i, long timeToLive_i)
+	{
+		node_i.myWriteTime          = now_i;
+		node_i.myHasFixedExpiration = (timeToLive_i != 0);
+
+		if (timeToLive_i != 0)
+		{
+			node_i.myExpirationTime = saturatedAdd(now_i,timeToLive_i);
+		}
+		else if (myExpireAfterAccess != 0)
+		{
+			node_i.myExpirationTime = expirationTimeAfterAccess(node_i,now_i);
+		}
+		else if (myExpireAfterWrite != 0)
+		{
+			node_i.myExpirationTime = saturatedAdd(now_i,myExpireAfterWrite);
+		}
+		else
+		{
+			node_i.myExpirationTime = CacheNode.NEVER;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	private long	expirationTimeAfterAccess(CacheNode<K,V> node_i, long now_i)
+	{
+		final long expirationTime = saturatedAdd(now_i,myExpireAfterAccess);
+		if (myExpireAfterWrite == 0)
+		{
+			return expirationTime;
+		}
+		return Math.min(expirationTime,saturatedAdd(node_i.myWriteTime,myExpireAfterWrite));
+	}
+
+
+
+	/***************************************************************************************************/
+	private static long	saturatedAdd(long time_i, long duration_i)
+	{
+		final long sum = time_i + duration_i;
+		return (sum < time_i) ? (CacheNode.NEVER - 1) : Math.min(sum,CacheNode.NEVER - 1);
+	}
+
+
+
+	/***************************************************************************************************/
+	private int	weigh(K key_i, V value_i)
+	{
+		if (myWeigher == null)
+		{
+			return 1;
+		}
+
+		final int weight = myWeigher.weigh(key_i,value_i);
+		if (weight < 0)
+		{
+			throw new IllegalArgumentException("negative weight " + weight + " for key " + key_i);
+		}
+		return weight;
+	}
+
+
+
+	/***************************************************************************************************/
+	private Segment<K,V>	segmentFor(Object key_i)
+	{
+		return mySegments[segmentIndexFor(key_i)];
+	}
+
+
+
+	/***************************************************************************************************/
+	private int	segmentIndexFor(Object key_i)
+	{
+		// spread the bits (as java.util.concurrent.ConcurrentHashMap does) so the top bits pick the segment
+		int hash = key_i.hashCode();
+		hash += (hash << 15) ^ 0xffffcd7d;
+		hash ^= (hash >>> 10);
+		hash += (hash << 3);
+		hash ^= (hash >>> 6);
+		hash += (hash << 2) + (hash << 14);
+		hash ^= (hash >>> 16);
+
+		return (mySegmentMask == 0) ? 0 : ((hash >>> mySegmentShift) & mySegmentMask);
+	}
 
 }
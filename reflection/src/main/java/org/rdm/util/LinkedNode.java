@@ -0,0 +1,72 @@
+/***************************************************************************************************
+*
+*	@(#)LinkedNode.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+/**
+*	The node of the policies that keep their nodes in lists (see {@link CachePolicy#linkLast}).
+*	It also carries the links of the timer wheel, so that any of its entries may expire.
+*/
+class LinkedNode<K,V> extends CacheNode<K,V>
+{
+	/***************************************************************************************************/
+	LinkedNode(Object key_i)
+	{
+		super(key_i,null);
+	}
+
+
+
+	/***************************************************************************************************/
+	boolean	isTimed()
+	{
+		return true;
+	}
+
+
+
+	/***************************************************************************************************/
+	CacheNode<K,V>	getPrevInWheel()
+	{
+		return myPrevInWheel;
+	}
+
+
+
+	/***************************************************************************************************/
+	CacheNode<K,V>	getNextInWheel()
+	{
+		return myNextInWheel;
+	}
+
+
+
+	/***************************************************************************************************/
+	void	setPrevInWheel(CacheNode<K,V> node_i)
+	{
+		myPrevInWheel = node_i;
+	}
+
+
+
+	/***************************************************************************************************/
+	void	setNextInWheel(CacheNode<K,V> node_i)
+	{
+		myNextInWheel = node_i;
+	}
+
+
+
+	// the links of the list the eviction policy keeps the node in; both null once it is removed
+	LinkedNode<K,V>		myPrev;
+	LinkedNode<K,V>		myNext;
+	byte				myQueue;	// which of the policy's lists, for policies with several
+
+	// both null unless the node is scheduled in the timer wheel
+	private CacheNode<K,V>	myPrevInWheel;
+	private CacheNode<K,V>	myNextInWheel;
+
+}
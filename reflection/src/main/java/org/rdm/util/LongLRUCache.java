@@ -0,0 +1,367 @@
+/***************************************************************************************************
+*
+*	@(#)LongLRUCache.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.util.Arrays;
+
+
+/**
+*	A least-recently-used (LRU) cache with a fixed number of elements and <CODE>long</CODE> keys.
+*	When the maximum element count is reached, the oldest entry is dropped from the object.
+*
+*	Unlike an {@link LRUCache}, keys are never boxed and no object is created per entry: the keys,
+*	values and recency links live in parallel arrays allocated once, and an open-addressing table
+*	(linear probing, with backward-shift deletion so that no tombstones build up) maps a key to
+*	its array index.  Lookups and stores, hits or not, allocate nothing; an entry costs about six
+*	words in place of a map entry, a list entry and a boxed key.
+*
+*	The cache is safe for use by multiple threads; every method is synchronized on the cache.
+*
+*	@param	<V>		the type of the cached values.
+*/
+public class LongLRUCache<V>
+{
+	/***************************************************************************************************
+	*
+	*	Create an empty LRU cache with a given maximum capacity.
+	*
+	***************************************************************************************************/
+	public LongLRUCache(int cacheSize_i)
+	{
+		if (cacheSize_i <= 0)
+		{
+			throw new IllegalArgumentException("cacheSize_i must be positive: " + cacheSize_i);
+		}
+
+		// keep the table at most half full, so that probe sequences stay short
+		int tableSize = 2;
+		int tableBits = 1;
+		while (tableSize < 2L * cacheSize_i)
+		{
+			tableSize <<= 1;
+			++tableBits;
+		}
+		myTable      = new int[tableSize];
+		myTableShift = 32 - tableBits;
+
+		myKeys   = new long[cacheSize_i];
+		myValues = new Object[cacheSize_i];
+		myPrev   = new int[cacheSize_i];
+		myNext   = new int[cacheSize_i];
+		clear();
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	***************************************************************************************************/
+	public synchronized void	put(long key_i, V value_i)
+	{
+		int entry = findEntry(key_i);
+		if (entry != NONE)
+		{
+			myValues[entry] = value_i;
+			moveToNewest(entry);
+			return;
+		}
+
+		if (mySize == myKeys.length)
+		{
+			removeEntry(myEldest);
+		}
+
+		entry = myFree;
+		myFree = myNext[entry];
+		++mySize;
+
+		myKeys[entry]   = key_i;
+		myValues[entry] = value_i;
+		linkNewest(entry);
+
+		int slot = slotFor(key_i);
+		while (myTable[slot] != 0)
+		{
+			slot = (slot + 1) & (myTable.length - 1);
+		}
+		myTable[slot] = entry + 1;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Attempt to retrieve the the value associated with a given key.  This will cause the entry
+	*	to become the most recent one used.
+	*
+	***************************************************************************************************/
+	@SuppressWarnings("unchecked")
+	public synchronized V	get(long key_i)
+	{
+		final int entry = findEntry(key_i);
+		if (entry == NONE)
+		{
+			return null;
+		}
+		moveToNewest(entry);
+		return (V)myValues[entry];
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Determines if the cache contains a specific element.
+	*
+	***************************************************************************************************/
+	public synchronized boolean	containsKey(long key_i)
+	{
+		return findEntry(key_i) != NONE;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	***************************************************************************************************/
+	@SuppressWarnings("unchecked")
+	public synchronized V	remove(long key_i)
+	{
+		final int entry = findEntry(key_i);
+		if (entry == NONE)
+		{
+			return null;
+		}
+		final V value = (V)myValues[entry];
+		removeEntry(entry);
+		return value;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Remove all elements from the cache.
+	*
+	***************************************************************************************************/
+	public synchronized void	clear()
+	{
+		Arrays.fill(myTable,0);
+		Arrays.fill(myValues,null);
+		for (int i = 0; i < myNext.length; ++i)
+		{
+			myNext[i] = i + 1;
+		}
+		myNext[myNext.length - 1] = NONE;
+		myFree   = 0;
+		myEldest = NONE;
+		myNewest = NONE;
+		mySize   = 0;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Determine if the cache contains no elements.
+	*
+	***************************************************************************************************/
+	public synchronized boolean	isEmpty()
+	{
+		return mySize == 0;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	***************************************************************************************************/
+	public int	capacity()
+	{
+		return myKeys.length;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	***************************************************************************************************/
+	public synchronized int	usedEntries()
+	{
+		return mySize;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	***************************************************************************************************/
+	public synchronized int	unusedEntries()
+	{
+		return myKeys.length - mySize;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	List the entries from least to most recently used.
+	*
+	***************************************************************************************************/
+	public synchronized String	toString()
+	{
+		final StringBuilder builder = new StringBuilder("{");
+		for (int entry = myEldest; entry != NONE; entry = myNext[entry])
+		{
+			if (entry != myEldest)
+			{
+				builder.append(", ");
+			}
+			builder.append(myKeys[entry]).append('=').append(myValues[entry]);
+		}
+		return builder.append('}').toString();
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/** The link of the first and last entries of a list. */
+	private static final int	NONE = -1;
+
+
+	private final int[]		myTable;		// slot ==> entry index + 1, or 0 if the slot is empty
+	private final int		myTableShift;
+	private final long[]	myKeys;
+	private final Object[]	myValues;
+	private final int[]		myPrev;			// towards the eldest entry
+	private final int[]		myNext;			// towards the newest entry, or the next free entry
+	private int				myEldest;
+	private int				myNewest;
+	private int				myFree;			// the first unused entry
+	private int				mySize;
+
+
+
+	/***************************************************************************************************/
+	private int	slotFor(long key_i)
+	{
+		// Fibonacci hashing: the multiply mixes every key bit into the top bits kept by the shift
+		return (int)((key_i * 0x9E3779B97F4A7C15L) >>> (32 + myTableShift));
+	}
+
+
+
+	/***************************************************************************************************/
+	private int	findEntry(long key_i)
+	{
+		final int mask = myTable.length - 1;
+		for (int slot = slotFor(key_i);; slot = (slot + 1) & mask)
+		{
+			final int entry = myTable[slot] - 1;
+			if ((entry == NONE) || (myKeys[entry] == key_i))
+			{
+				return entry;
+			}
+		}
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Take an entry out of the table and the recency list, and put it on the free list.
+	*
+	***************************************************************************************************/
+	private void	removeEntry(int entry_i)
+	{
+		final int mask = myTable.length - 1;
+		int hole = slotFor(myKeys[entry_i]);
+		while (myTable[hole] != entry_i + 1)
+		{
+			hole = (hole + 1) & mask;
+		}
+
+		// shift back the entries after the hole that would otherwise no longer be found
+		for (int slot = (hole + 1) & mask; myTable[slot] != 0; slot = (slot + 1) & mask)
+		{
+			final int home = slotFor(myKeys[myTable[slot] - 1]);
+			if (((slot - home) & mask) >= ((slot - hole) & mask))
+			{
+				myTable[hole] = myTable[slot];
+				hole = slot;
+			}
+		}
+		myTable[hole] = 0;
+
+		unlink(entry_i);
+		myValues[entry_i] = null;
+		myNext[entry_i] = myFree;
+		myFree = entry_i;
+		--mySize;
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	moveToNewest(int entry_i)
+	{
+		if (entry_i != myNewest)
+		{
+			unlink(entry_i);
+			linkNewest(entry_i);
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	linkNewest(int entry_i)
+	{
+		myPrev[entry_i] = myNewest;
+		myNext[entry_i] = NONE;
+		if (myNewest == NONE)
+		{
+			myEldest = entry_i;
+		}
+		else
+		{
+			myNext[myNewest] = entry_i;
+		}
+		myNewest = entry_i;
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	unlink(int entry_i)
+	{
+		final int prev = myPrev[entry_i];
+		final int next = myNext[entry_i];
+		if (prev == NONE)
+		{
+			myEldest = next;
+		}
+		else
+		{
+			myNext[prev] = next;
+		}
+		if (next == NONE)
+		{
+			myNewest = prev;
+		}
+		else
+		{
+			myPrev[next] = prev;
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+/***************************************************************************************************
+*
+*	@(#)LruPolicy.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+/**
+*	Evicts the least recently used node: every insertion and hit moves a node to the end of a
+*	single list, and the victim is taken from its front.
+*/
+final class LruPolicy<K,V> extends CachePolicy<K,V>
+{
+	/***************************************************************************************************/
+	void	onInsert(CacheNode<K,V> node_i)
+	{
+		linkLast(myHead,(LinkedNode<K,V>)node_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	void	onAccess(CacheNode<K,V> node_i)
+	{
+		moveToLast(myHead,(LinkedNode<K,V>)node_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	void	onUpdate(CacheNode<K,V> node_i, int previousWeight_i)
+	{
+		moveToLast(myHead,(LinkedNode<K,V>)node_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	void	onRemove(CacheNode<K,V> node_i)
+	{
+		unlink((LinkedNode<K,V>)node_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	CacheNode<K,V>	selectVictim()
+	{
+		return myHead.myNext;
+	}
+
+
+
+	/***************************************************************************************************/
+	void	clear()
+	{
+		clearList(myHead);
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	// the list is circular around a sentinel: myHead.myNext is the eldest entry
+	private final LinkedNode<K,V>	myHead = newListHead();
+
+}
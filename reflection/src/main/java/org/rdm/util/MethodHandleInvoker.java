@@ -0,0 +1,100 @@
+/***************************************************************************************************
+*
+*	@(#)MethodHandleInvoker.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+
+/**
+*	Calls one resolved method through method handles, which the JIT compiles to little more than
+*	a direct call, without the argument checks and boxing of {@link Method#invoke}.
+*
+*	The handles are adapted to take the target and the arguments as plain objects, so that they
+*	can be invoked exactly: one for the array form, and one without an array when the method takes
+*	no more than two parameters.  A static method's handle ignores the target.
+*
+*	This is the only class of the package that refers to <CODE>java.lang.invoke</CODE>, which
+*	Android lacks before API level 26; it must only be loaded where that package exists (see
+*	{@link MemberInvoker#forMethod}).
+*/
+final class MethodHandleInvoker extends MemberInvoker
+{
+	/***************************************************************************************************/
+	static MemberInvoker	create(Method method_i) throws IllegalAccessException
+	{
+		MethodHandle handle = MethodHandles.lookup().unreflect(method_i);
+		if (Modifier.isStatic(method_i.getModifiers()))
+		{
+			handle = MethodHandles.dropArguments(handle,0,Object.class);
+		}
+
+		final int parameterCount = method_i.getParameterTypes().length;
+		final MethodHandle generic = handle.asType(MethodType.genericMethodType(1 + parameterCount));
+		return new MethodHandleInvoker(generic.asSpreader(Object[].class,parameterCount),
+		                               (parameterCount <= 2) ? generic : null,
+		                               parameterCount);
+	}
+
+
+
+	/***************************************************************************************************/
+	Object	invoke(Object __target_i, Object[] arguments_i) throws Throwable
+	{
+		return (Object)mySpreader.invokeExact(__target_i,arguments_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	Object	invoke0(Object __target_i) throws Throwable
+	{
+		return (myParameterCount == 0) ? (Object)myHandle.invokeExact(__target_i) : super.invoke0(__target_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	Object	invoke1(Object __target_i, Object argument_i) throws Throwable
+	{
+		return (myParameterCount == 1) ? (Object)myHandle.invokeExact(__target_i,argument_i) : super.invoke1(__target_i,argument_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	Object	invoke2(Object __target_i, Object argument1_i, Object argument2_i) throws Throwable
+	{
+		return (myParameterCount == 2) ? (Object)myHandle.invokeExact(__target_i,argument1_i,argument2_i) : super.invoke2(__target_i,argument1_i,argument2_i);
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private final MethodHandle	mySpreader;		// (Object target, Object[] arguments)Object
+	private final MethodHandle	myHandle;		// (Object target, Object... each argument)Object; null above two parameters
+	private final int			myParameterCount;
+
+
+
+	/***************************************************************************************************/
+	private MethodHandleInvoker(MethodHandle spreader_i, MethodHandle __handle_i, int parameterCount_i)
+	{
+		mySpreader       = spreader_i;
+		myHandle         = __handle_i;
+		myParameterCount = parameterCount_i;
+	}
+
+}
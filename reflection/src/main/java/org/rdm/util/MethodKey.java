@@ -0,0 +1,277 @@
+/***************************************************************************************************
+*
+*	@(#)MethodKey.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+
+/**
+*	The key of a method lookup: a class, a method name and the types of the values passed.
+*
+*	The hash is computed once, from the identity of the classes and the (cached) hash of the name,
+*	and equality compares the classes by identity and the name by identity before contents, so no
+*	string is ever built.  A lookup uses the calling thread's probe (see {@link #probe}), which is
+*	filled in place; only a key that is stored is created as a new object, so a lookup that hits
+*	allocates nothing.
+*
+*	A stored key holds its classes weakly, so that a cache keyed by it does not keep them, nor
+*	their class loaders, from being collected; classes of the boot class loader, which are never
+*	unloaded, are held directly.  A key whose class has been collected equals no other key, and is
+*	returned by {@link #pollCollected} so that it can be removed from its cache.
+*/
+final class MethodKey
+{
+	/***************************************************************************************************
+	*
+	*	Return the calling thread's reusable key, set to the given method.  It must not be stored,
+	*	and the parameter types must not change while it is used.  Call {@link #release} once done
+	*	with it, so that it does not keep the classes from being collected.
+	*
+	***************************************************************************************************/
+	static MethodKey	probe(Class class_i, String methodName_i, Class[] __parameterTypes_i)
+	{
+		final MethodKey probe = ourProbe.get();
+		probe.set(class_i,methodName_i,(__parameterTypes_i != null) ? __parameterTypes_i : NO_TYPES);
+		return probe;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Create a key that may be stored, with its own, weak, references to the classes.
+	*
+	***************************************************************************************************/
+	MethodKey(Class class_i, String methodName_i, Class[] __parameterTypes_i)
+	{
+		final Class[] parameterTypes = (__parameterTypes_i != null) ? __parameterTypes_i : NO_TYPES;
+		set(class_i,methodName_i,parameterTypes);
+
+		myClass = refer(class_i);
+		final Object[] types = new Object[parameterTypes.length];
+		for (int i = 0; i < types.length; ++i)
+		{
+			types[i] = refer(parameterTypes[i]);
+		}
+		myParameterTypes = types;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Return a stored key one of whose classes has been collected since the last call, or
+	*	<CODE>null</CODE> if there is none.  A key may be returned more than once.
+	*
+	***************************************************************************************************/
+	static MethodKey	pollCollected()
+	{
+		final ClassReference reference = (ClassReference)ourCollectedClasses.poll();
+		return (reference != null) ? reference.myKey : null;
+	}
+
+
+
+	/***************************************************************************************************/
+	void	release()
+	{
+		myClass          = null;
+		myMethodName     = null;
+		myParameterTypes = NO_TYPES;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*		@return		The class, or <CODE>null</CODE> if it has been collected.
+	*
+	***************************************************************************************************/
+	Class	getDeclaringClass()
+	{
+		return classOf(myClass);
+	}
+
+
+
+	/***************************************************************************************************/
+	String	getMethodName()
+	{
+		return myMethodName;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*		@return		A copy of the parameter types, with <CODE>null</CODE> for any that has been
+	*					collected.
+	*
+	***************************************************************************************************/
+	Class[]	getParameterTypes()
+	{
+		final Class[] parameterTypes = new Class[myParameterTypes.length];
+		for (int i = 0; i < parameterTypes.length; ++i)
+		{
+			parameterTypes[i] = classOf(myParameterTypes[i]);
+		}
+		return parameterTypes;
+	}
+
+
+
+	/***************************************************************************************************/
+	public int	hashCode()
+	{
+		return myHash;
+	}
+
+
+
+	/***************************************************************************************************/
+	public boolean	equals(Object object_i)
+	{
+		if (object_i == this)
+		{
+			return true;
+		}
+		if (!(object_i instanceof MethodKey))
+		{
+			return false;
+		}
+
+		final MethodKey key = (MethodKey)object_i;
+		if ((myHash != key.myHash) || !isSameClass(myClass,key.myClass) || (myParameterTypes.length != key.myParameterTypes.length))
+		{
+			return false;
+		}
+		if ((myMethodName != key.myMethodName) && !myMethodName.equals(key.myMethodName))
+		{
+			return false;
+		}
+		for (int i = 0; i < myParameterTypes.length; ++i)
+		{
+			if (!isSameClass(myParameterTypes[i],key.myParameterTypes[i]))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+
+	/***************************************************************************************************/
+	public String	toString()
+	{
+		return getDeclaringClass() + ">" + myMethodName + ":" + Arrays.toString(getParameterTypes());
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static final Class[]	NO_TYPES = new Class[0];
+
+	private static final ThreadLocal<MethodKey>	ourProbe = new ThreadLocal<MethodKey>()
+	{
+		protected MethodKey	initialValue()
+		{
+			return new MethodKey(null,null,null);
+		}
+	};
+
+
+	private static final ReferenceQueue<Class>	ourCollectedClasses = new ReferenceQueue<Class>();
+
+
+	// each class is a Class, or a ClassReference in a stored key; the types of a probe are the caller's array
+	private Object		myClass;
+	private String		myMethodName;
+	private Object[]	myParameterTypes;
+	private int			myHash;
+
+
+
+	/**
+	*	The weak reference of a stored key to one of its classes, which leads back to the key once
+	*	the class has been collected.
+	*/
+	private static final class ClassReference extends WeakReference<Class>
+	{
+		ClassReference(Class class_i, MethodKey key_i)
+		{
+			super(class_i,ourCollectedClasses);
+			myKey = key_i;
+		}
+
+		final MethodKey		myKey;
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	set(Class class_i, String methodName_i, Class[] parameterTypes_i)
+	{
+		myClass          = class_i;
+		myMethodName     = methodName_i;
+		myParameterTypes = parameterTypes_i;
+
+		// the classes are compared by identity, so they are hashed by identity
+		int hash = System.identityHashCode(class_i) * 31 + ((methodName_i != null) ? methodName_i.hashCode() : 0);
+		for (int i = 0; i < parameterTypes_i.length; ++i)
+		{
+			hash = hash * 31 + System.identityHashCode(parameterTypes_i[i]);
+		}
+		myHash = hash;
+	}
+
+
+
+	/***************************************************************************************************/
+	private Object	refer(Class __class_i)
+	{
+		if ((__class_i == null) || (__class_i.getClassLoader() == null))
+		{
+			return __class_i;
+		}
+		return new ClassReference(__class_i,this);
+	}
+
+
+
+	/***************************************************************************************************/
+	private static Class	classOf(Object __class_i)
+	{
+		return (__class_i instanceof ClassReference) ? ((ClassReference)__class_i).get() : (Class)__class_i;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Compare two classes of keys by identity.  A collected class is the same as no other, not
+	*	even a missing (<CODE>null</CODE>) parameter type.
+	*
+	***************************************************************************************************/
+	private static boolean	isSameClass(Object __class1_i, Object __class2_i)
+	{
+		if (__class1_i == __class2_i)
+		{
+			return true;
+		}
+		final Class class1 = classOf(__class1_i);
+		return (class1 != null) && (class1 == classOf(__class2_i));
+	}
+
+}
@@ -0,0 +1,791 @@
+/***************************************************************************************************
+*
+*	@(#)MethodRef.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+*	A method of a class known by name, resolved once and then called directly, without the class
+*	and method lookups that {@link ReflectionUtils#invokeMethod} makes on every call.  It is meant
+*	to be declared once per wrapped class, next to the {@link ReflectionObject} subclass that uses
+*	it:
+*
+*	<PRE>
+*	private static final MethodRef GET_PORT = new MethodRef(CLASS_NAME,"getPort");
+*	...
+*	public int getPort() { return GET_PORT.invokeInt(mObject); }
+*	</PRE>
+*
+*	The class and the method are resolved on the first call, with the same matching as
+*	{@link ReflectionUtils#findMethodThatBestMatches}, so the parameter types may be the types of
+*	the values passed (<CODE>Integer</CODE> for an <CODE>int</CODE> parameter).  The calls then go
+*	through method handles where the system has them, and through {@link Method#invoke} elsewhere.
+*
+*	Optionally (see {@link #setInflationThreshold}), a method called often enough gets a generated
+*	invoker: a small class that calls it directly, without an argument array, and whose typed
+*	variants return the primitive value without boxing it.  This is only possible on a JVM; on
+*	Android the method keeps being called through reflection.
+*
+*	The <CODE>Slots</CODE> variants take the arguments of the parameters of an integral or
+*	<CODE>boolean</CODE> type in <CODE>long</CODE> slots (a <CODE>boolean</CODE> passed as
+*	<CODE>0</CODE> or <CODE>1</CODE>): with a generated invoker, a call with up to two arguments,
+*	passed this way for exactly these parameters, allocates nothing.  Otherwise the arguments are
+*	boxed to the parameter types, and the value of a slot whose parameter is not primitive to an
+*	<CODE>Integer</CODE> if it fits, as it would have been boxed by the caller.
+*
+*	Like {@link ReflectionUtils#invokeMethodWithoutThrowing}, a call never throws: a missing class
+*	or method, or an exception thrown by the method, returns <CODE>null</CODE> (<CODE>0</CODE> or
+*	<CODE>false</CODE> for the primitive variants).  Use {@link #isAvailable} to tell a missing
+*	method from a method that returned nothing.
+*/
+public final class MethodRef
+{
+	/***************************************************************************************************
+	*
+	*		@param	className_i			The name of the class declaring or inheriting the method,
+	*									as given to {@link Class#forName(String)}.
+	*		@param	parameterTypes_i	The types of the values that will be passed.  A
+	*									<CODE>null</CODE> type (a class missing on this system)
+	*									makes the method missing.
+	*
+	***************************************************************************************************/
+	public MethodRef(String className_i, String methodName_i, Class... parameterTypes_i)
+	{
+		myClassName      = className_i;
+		myClass          = null;
+		myMethodName     = methodName_i;
+		myParameterTypes = parameterTypes_i.clone();
+	}
+
+
+
+	/***************************************************************************************************/
+	public MethodRef(Class class_i, String methodName_i, Class... parameterTypes_i)
+	{
+		myClassName      = class_i.getName();
+		myClass          = class_i;
+		myMethodName     = methodName_i;
+		myParameterTypes = parameterTypes_i.clone();
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Set the number of calls after which a method gets a generated invoker.  It applies to the
+	*	methods resolved afterwards.
+	*
+	*		@param	calls_i				The number of calls, or <CODE>0</CODE> (the default) never to
+	*									generate an invoker.
+	*
+	***************************************************************************************************/
+	public static void	setInflationThreshold(int calls_i)
+	{
+		if (calls_i < 0)
+		{
+			throw new IllegalArgumentException("negative inflation threshold: " + calls_i);
+		}
+		ourInflationThreshold = calls_i;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Resolve methods, all at once, so that a wrapper can tell which of its methods the running
+	*	system lacks before it is used.
+	*
+	*		@return		The descriptions of the missing methods, empty if none is.
+	*
+	***************************************************************************************************/
+	public static List<String>	findMissing(MethodRef... methods_i)
+	{
+		final List<String> missing = new ArrayList<String>(0);
+		for (int i = 0; i < methods_i.length; ++i)
+		{
+			if (!methods_i[i].isAvailable())
+			{
+				missing.add(methods_i[i].toString());
+			}
+		}
+		return Collections.unmodifiableList(missing);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*		@return		Whether the class and the method exist on this system.
+	*
+	***************************************************************************************************/
+	public boolean	isAvailable()
+	{
+		return resolved() != MISSING;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*		@return		The method, or <CODE>null</CODE> if it does not exist on this system.
+	*
+	***************************************************************************************************/
+	public Method	getMethod()
+	{
+		resolved();
+		return myMethod;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*		@param	__target_i			The object to call, or <CODE>null</CODE> for a static method.
+	*
+	***************************************************************************************************/
+	public Object	invoke(Object __target_i)
+	{
+		try
+		{
+			return invoker().invoke0(__target_i);
+		}
+		catch (Throwable exception_i)
+		{
+			return null;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public Object	invoke(Object __target_i, Object argument_i)
+	{
+		try
+		{
+			return invoker().invoke1(__target_i,argument_i);
+		}
+		catch (Throwable exception_i)
+		{
+			return null;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public Object	invoke(Object __target_i, Object argument1_i, Object argument2_i)
+	{
+		try
+		{
+			return invoker().invoke2(__target_i,argument1_i,argument2_i);
+		}
+		catch (Throwable exception_i)
+		{
+			return null;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public Object	invokeSlots(Object __target_i, long argument_i)
+	{
+		try
+		{
+			return callSlots(__target_i,1,FIRST,null,null,argument_i,0);
+		}
+		catch (Throwable exception_i)
+		{
+			return null;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public Object	invokeSlots(Object __target_i, Object argument1_i, long argument2_i)
+	{
+		try
+		{
+			return callSlots(__target_i,2,SECOND,argument1_i,null,0,argument2_i);
+		}
+		catch (Throwable exception_i)
+		{
+			return null;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public Object	invokeSlots(Object __target_i, long argument1_i, long argument2_i)
+	{
+		try
+		{
+			return callSlots(__target_i,2,FIRST | SECOND,null,null,argument1_i,argument2_i);
+		}
+		catch (Throwable exception_i)
+		{
+			return null;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public Object	invokeWithArguments(Object __target_i, Object[] arguments_i)
+	{
+		try
+		{
+			return invoker().invoke(__target_i,arguments_i);
+		}
+		catch (Throwable exception_i)
+		{
+			return null;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public int	invokeInt(Object __target_i)
+	{
+		try
+		{
+			return invoker().invokeInt0(__target_i);
+		}
+		catch (Throwable exception_i)
+		{
+			return 0;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public int	invokeInt(Object __target_i, Object argument_i)
+	{
+		try
+		{
+			return (int)callSlotsPrimitive(Integer.TYPE,__target_i,1,0,argument_i,null,0,0);
+		}
+		catch (Throwable exception_i)
+		{
+			return 0;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public int	invokeIntSlots(Object __target_i, long argument_i)
+	{
+		try
+		{
+			return (int)callSlotsPrimitive(Integer.TYPE,__target_i,1,FIRST,null,null,argument_i,0);
+		}
+		catch (Throwable exception_i)
+		{
+			return 0;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public int	invokeInt(Object __target_i, Object argument1_i, Object argument2_i)
+	{
+		try
+		{
+			return (int)callSlotsPrimitive(Integer.TYPE,__target_i,2,0,argument1_i,argument2_i,0,0);
+		}
+		catch (Throwable exception_i)
+		{
+			return 0;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public int	invokeIntSlots(Object __target_i, Object argument1_i, long argument2_i)
+	{
+		try
+		{
+			return (int)callSlotsPrimitive(Integer.TYPE,__target_i,2,SECOND,argument1_i,null,0,argument2_i);
+		}
+		catch (Throwable exception_i)
+		{
+			return 0;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public int	invokeIntSlots(Object __target_i, long argument1_i, long argument2_i)
+	{
+		try
+		{
+			return (int)callSlotsPrimitive(Integer.TYPE,__target_i,2,FIRST | SECOND,null,null,argument1_i,argument2_i);
+		}
+		catch (Throwable exception_i)
+		{
+			return 0;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public long	invokeLong(Object __target_i)
+	{
+		try
+		{
+			return invoker().invokeLong0(__target_i);
+		}
+		catch (Throwable exception_i)
+		{
+			return 0;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public long	invokeLong(Object __target_i, Object argument_i)
+	{
+		try
+		{
+			return callSlotsPrimitive(Long.TYPE,__target_i,1,0,argument_i,null,0,0);
+		}
+		catch (Throwable exception_i)
+		{
+			return 0;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public long	invokeLongSlots(Object __target_i, long argument_i)
+	{
+		try
+		{
+			return callSlotsPrimitive(Long.TYPE,__target_i,1,FIRST,null,null,argument_i,0);
+		}
+		catch (Throwable exception_i)
+		{
+			return 0;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public long	invokeLong(Object __target_i, Object argument1_i, Object argument2_i)
+	{
+		try
+		{
+			return callSlotsPrimitive(Long.TYPE,__target_i,2,0,argument1_i,argument2_i,0,0);
+		}
+		catch (Throwable exception_i)
+		{
+			return 0;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public long	invokeLongSlots(Object __target_i, Object argument1_i, long argument2_i)
+	{
+		try
+		{
+			return callSlotsPrimitive(Long.TYPE,__target_i,2,SECOND,argument1_i,null,0,argument2_i);
+		}
+		catch (Throwable exception_i)
+		{
+			return 0;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public long	invokeLongSlots(Object __target_i, long argument1_i, long argument2_i)
+	{
+		try
+		{
+			return callSlotsPrimitive(Long.TYPE,__target_i,2,FIRST | SECOND,null,null,argument1_i,argument2_i);
+		}
+		catch (Throwable exception_i)
+		{
+			return 0;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public boolean	invokeBoolean(Object __target_i)
+	{
+		try
+		{
+			return invoker().invokeBoolean0(__target_i);
+		}
+		catch (Throwable exception_i)
+		{
+			return false;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public boolean	invokeBoolean(Object __target_i, Object argument_i)
+	{
+		try
+		{
+			return callSlotsPrimitive(Boolean.TYPE,__target_i,1,0,argument_i,null,0,0) != 0;
+		}
+		catch (Throwable exception_i)
+		{
+			return false;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public boolean	invokeBooleanSlots(Object __target_i, long argument_i)
+	{
+		try
+		{
+			return callSlotsPrimitive(Boolean.TYPE,__target_i,1,FIRST,null,null,argument_i,0) != 0;
+		}
+		catch (Throwable exception_i)
+		{
+			return false;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public boolean	invokeBoolean(Object __target_i, Object argument1_i, Object argument2_i)
+	{
+		try
+		{
+			return callSlotsPrimitive(Boolean.TYPE,__target_i,2,0,argument1_i,argument2_i,0,0) != 0;
+		}
+		catch (Throwable exception_i)
+		{
+			return false;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public boolean	invokeBooleanSlots(Object __target_i, Object argument1_i, long argument2_i)
+	{
+		try
+		{
+			return callSlotsPrimitive(Boolean.TYPE,__target_i,2,SECOND,argument1_i,null,0,argument2_i) != 0;
+		}
+		catch (Throwable exception_i)
+		{
+			return false;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public boolean	invokeBooleanSlots(Object __target_i, long argument1_i, long argument2_i)
+	{
+		try
+		{
+			return callSlotsPrimitive(Boolean.TYPE,__target_i,2,FIRST | SECOND,null,null,argument1_i,argument2_i) != 0;
+		}
+		catch (Throwable exception_i)
+		{
+			return false;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	public String	toString()
+	{
+		return myClassName + ">" + myMethodName;
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/** The invoker of a method that could not be resolved. */
+	private static final MemberInvoker	MISSING = new MemberInvoker()
+	{
+		Object	invoke(Object __target_i, Object[] arguments_i)
+		{
+			return null;
+		}
+	};
+
+
+	private final String		myClassName;
+	private final Class			myClass;			// null until resolved if created from a name
+	private final String		myMethodName;
+	private final Class[]		myParameterTypes;
+
+	/** The bits of the arguments passed in primitive slots. */
+	private static final int	FIRST  = 1;
+	private static final int	SECOND = 2;
+
+	private static volatile int		ourInflationThreshold;
+
+
+	private volatile MemberInvoker	myInvoker;		// null until resolved
+	private Method					myMethod;		// written before myInvoker, as the three below
+	private Class[]					myMethodParameterTypes;
+	private Class					myReturnType;
+	private int						myPrimitiveSlots;			// the arguments it takes in primitive slots
+	private int						myCallsBeforeInflation;		// 0 once inflated, or never to inflate
+
+
+
+	/***************************************************************************************************
+	*
+	*	Return the invoker of a call, resolving the method on the first call and generating its
+	*	invoker once it has been called often enough.  The count is not synchronized: threads
+	*	racing on it may lose a decrement, which delays the generation, or take the count below
+	*	zero, so any count that reaches zero or less generates the invoker and stops the count.  A
+	*	decrement lost across that stop may restart it, and generate the invoker once more.
+	*
+	***************************************************************************************************/
+	private MemberInvoker	invoker()
+	{
+		final MemberInvoker invoker = resolved();
+		if ((myCallsBeforeInflation > 0) && (--myCallsBeforeInflation <= 0))
+		{
+			myCallsBeforeInflation = 0;
+			return inflate(invoker);
+		}
+		return invoker;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Return the invoker, resolving the method on the first call.  Threads that race on the first
+	*	call each resolve it, to the same method; the lookups behind are cached.
+	*
+	***************************************************************************************************/
+	private MemberInvoker	resolved()
+	{
+		final MemberInvoker invoker = myInvoker;
+		return (invoker != null) ? invoker : resolve();
+	}
+
+
+
+	/***************************************************************************************************/
+	private MemberInvoker	inflate(MemberInvoker invoker_i)
+	{
+		final MemberInvoker generated = InvokerGenerator.generate(myMethod);
+		if (generated == null)
+		{
+			return invoker_i;
+		}
+		myInvoker = generated;
+		return generated;
+	}
+
+
+
+	/***************************************************************************************************/
+	private MemberInvoker	resolve()
+	{
+		Method method = null;
+		try
+		{
+			if (Arrays.asList(myParameterTypes).contains(null))
+			{
+				throw new ClassNotFoundException("parameter type of " + this);
+			}
+			final Class declaringClass = (myClass != null) ? myClass : Class.forName(myClassName);
+			method = ReflectionUtils.findMethodThatBestMatches(declaringClass,myMethodName,myParameterTypes);
+		}
+		catch (ClassNotFoundException exception_i)
+		{
+			// the class, or the class of a parameter, does not exist on this system
+		}
+		catch (LinkageError exception_i)
+		{
+			// neither does something it refers to
+		}
+
+		if (method != null)
+		{
+			myMethodParameterTypes = method.getParameterTypes();
+			myReturnType = method.getReturnType();
+			for (int i = 0; (i < myMethodParameterTypes.length) && (i < 2); ++i)
+			{
+				if (InvokerGenerator.takesPrimitiveSlot(myMethodParameterTypes[i]))
+				{
+					myPrimitiveSlots |= (i == 0) ? FIRST : SECOND;
+				}
+			}
+		}
+		myMethod = method;
+		myCallsBeforeInflation = (method != null) ? ourInflationThreshold : 0;
+		final MemberInvoker invoker = (method != null) ? MemberInvoker.forMethod(method) : MISSING;
+		myInvoker = invoker;
+		return invoker;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Call the method with up to two arguments in slots, directly if it has a generated invoker
+	*	and the arguments are in the slots of its parameters.
+	*
+	*		@param	primitiveArguments_i	The bits of the arguments passed in primitive slots.
+	*
+	***************************************************************************************************/
+	private Object	callSlots(Object __target_i, int arity_i, int primitiveArguments_i, Object argument1_i, Object argument2_i, long primitive1_i, long primitive2_i) throws Throwable
+	{
+		final MemberInvoker invoker = invoker();
+		if ((invoker instanceof GeneratedInvoker) && fitsSlots(arity_i,primitiveArguments_i))
+		{
+			return ((GeneratedInvoker)invoker).callSlots(__target_i,argument1_i,argument2_i,primitive1_i,primitive2_i);
+		}
+		return invokeBoxed(invoker,__target_i,arity_i,primitiveArguments_i,argument1_i,argument2_i,primitive1_i,primitive2_i);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Call the method like {@link #callSlots}, and return its result as a <CODE>long</CODE>: like
+	*	the typed calls without arguments, <CODE>0</CODE> unless the method returned the type asked
+	*	for, and a <CODE>boolean</CODE> as <CODE>0</CODE> or <CODE>1</CODE>.
+	*
+	***************************************************************************************************/
+	private long	callSlotsPrimitive(Class returnType_i, Object __target_i, int arity_i, int primitiveArguments_i, Object argument1_i, Object argument2_i, long primitive1_i, long primitive2_i) throws Throwable
+	{
+		final MemberInvoker invoker = invoker();
+		if ((invoker instanceof GeneratedInvoker) && (myReturnType == returnType_i) && fitsSlots(arity_i,primitiveArguments_i))
+		{
+			return ((GeneratedInvoker)invoker).callSlotsPrimitive(__target_i,argument1_i,argument2_i,primitive1_i,primitive2_i);
+		}
+
+		final Object result = invokeBoxed(invoker,__target_i,arity_i,primitiveArguments_i,argument1_i,argument2_i,primitive1_i,primitive2_i);
+		if (returnType_i == Integer.TYPE)
+		{
+			return (result instanceof Integer) ? ((Integer)result).intValue() : 0;
+		}
+		if (returnType_i == Long.TYPE)
+		{
+			return (result instanceof Long) ? ((Long)result).longValue() : 0;
+		}
+		return Boolean.TRUE.equals(result) ? 1 : 0;
+	}
+
+
+
+	/***************************************************************************************************/
+	private boolean	fitsSlots(int arity_i, int primitiveArguments_i)
+	{
+		return (arity_i == myMethodParameterTypes.length) && (primitiveArguments_i == myPrimitiveSlots);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Call the method through its invoker, with the arguments of the primitive slots boxed to the
+	*	types of their parameters.
+	*
+	***************************************************************************************************/
+	private Object	invokeBoxed(MemberInvoker invoker_i, Object __target_i, int arity_i, int primitiveArguments_i, Object argument1_i, Object argument2_i, long primitive1_i, long primitive2_i) throws Throwable
+	{
+		if (myMethod == null)
+		{
+			return null;
+		}
+		final Object argument1 = ((primitiveArguments_i & FIRST) != 0) ? box(primitive1_i,0) : argument1_i;
+		if (arity_i == 1)
+		{
+			return invoker_i.invoke1(__target_i,argument1);
+		}
+		final Object argument2 = ((primitiveArguments_i & SECOND) != 0) ? box(primitive2_i,1) : argument2_i;
+		return invoker_i.invoke2(__target_i,argument1,argument2);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Box the argument of a primitive slot to the type of its parameter.  If the parameter is not
+	*	primitive, or missing, the value is boxed as the caller would have boxed it: to an
+	*	<CODE>Integer</CODE> if it fits, otherwise to a <CODE>Long</CODE>.
+	*
+	***************************************************************************************************/
+	private Object	box(long value_i, int parameter_i)
+	{
+		final Class parameterType = (parameter_i < myMethodParameterTypes.length) ? myMethodParameterTypes[parameter_i] : null;
+		final Class primitiveType = (parameterType != null) ? ReflectionUtils.getPrimitiveEquivalentOf(parameterType) : null;
+		final Class type = (primitiveType != null) ? primitiveType : ((value_i == (int)value_i) ? Integer.TYPE : Long.TYPE);
+
+		if (type == Integer.TYPE)
+		{
+			return Integer.valueOf((int)value_i);
+		}
+		if (type == Boolean.TYPE)
+		{
+			return Boolean.valueOf(value_i != 0);
+		}
+		if (type == Short.TYPE)
+		{
+			return Short.valueOf((short)value_i);
+		}
+		if (type == Byte.TYPE)
+		{
+			return Byte.valueOf((byte)value_i);
+		}
+		if (type == Character.TYPE)
+		{
+			return Character.valueOf((char)value_i);
+		}
+		if (type == Float.TYPE)
+		{
+			return Float.valueOf(value_i);
+		}
+		if (type == Double.TYPE)
+		{
+			return Double.valueOf(value_i);
+		}
+		return Long.valueOf(value_i);
+	}
+
+}
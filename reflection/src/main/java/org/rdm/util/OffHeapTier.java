@@ -0,0 +1,366 @@
+/***************************************************************************************************
+*
+*	@(#)OffHeapTier.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+*	The second tier of an {@link LRUCache}: the values evicted from the cache, encoded as bytes and
+*	kept outside the Java heap, where they add nothing to the work of the garbage collector.
+*
+*	The memory is a set of slabs, direct byte buffers allocated on demand up to the tier's limit.
+*	A slab is a 64th of the limit, at most a megabyte, and a value larger than a slab is not kept.
+*	Like memcached, a slab is given to one size class when first needed and carved into chunks of
+*	that class's size; an encoded value takes the smallest chunk that holds it.  Each size class
+*	keeps its entries in least-recently-stored order, and when it has no free chunk and no slab is
+*	left, its eldest entries are dropped until one is free.  The slabs are never returned to the
+*	system nor moved to another size class.
+*
+*	The keys stay on the heap, in an index of the entries.  Every method is synchronized on the
+*	tier; the owning cache may call them while holding a segment lock, never the other way round.
+*	Encoding and decoding run outside the lock.
+*/
+final class OffHeapTier<K,V>
+{
+	/***************************************************************************************************
+	*
+	*	Create an empty tier.
+	*
+	*		@param	maximumBytes_i			The most memory the slabs may take.
+	*
+	***************************************************************************************************/
+	OffHeapTier(long maximumBytes_i, LRUCache.Codec<K,V> codec_i)
+	{
+		if (maximumBytes_i < MINIMUM_CHUNK_SIZE)
+		{
+			throw new IllegalArgumentException("maximumBytes_i must be at least " + MINIMUM_CHUNK_SIZE + ": " + maximumBytes_i);
+		}
+
+		// enough slabs that every size class in use can have some
+		mySlabSize     = (int)Math.max(MINIMUM_CHUNK_SIZE,Math.min(SLAB_SIZE,Long.highestOneBit(maximumBytes_i / MINIMUM_SLAB_COUNT)));
+		myMaximumSlabs = (int)Math.min(Integer.MAX_VALUE,maximumBytes_i / mySlabSize);
+		myCodec        = codec_i;
+
+		final List<Integer> chunkSizes = new ArrayList<Integer>();
+		for (int size = MINIMUM_CHUNK_SIZE; size < mySlabSize; size = ((int)(size * CHUNK_GROWTH_FACTOR) + 7) & ~7)
+		{
+			chunkSizes.add(size);
+		}
+		chunkSizes.add(mySlabSize);
+
+		myClasses = new SizeClass[chunkSizes.size()];
+		for (int i = 0; i < myClasses.length; ++i)
+		{
+			myClasses[i] = new SizeClass(chunkSizes.get(i));
+		}
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Encode a value for {@link #put}.  Called without any lock.
+	*
+	*		@return		The bytes, or <CODE>null</CODE> if the value cannot be encoded or would not
+	*					fit in a slab.
+	*
+	***************************************************************************************************/
+	byte[]	encode(V value_i)
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try
+		{
+			final DataOutputStream output = new DataOutputStream(bytes);
+			myCodec.writeValue(value_i,output);
+			output.flush();
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+		catch (RuntimeException e)
+		{
+			return null;
+		}
+		return (bytes.size() <= mySlabSize) ? bytes.toByteArray() : null;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Store the encoded value of a key, replacing any it had.  The value is dropped if its size
+	*	class can find no room.
+	*
+	***************************************************************************************************/
+	synchronized void	put(Object key_i, byte[] bytes_i)
+	{
+		remove(key_i);
+
+		final SizeClass sizeClass = classFor(bytes_i.length);
+		final long address = allocate(sizeClass);
+		if (address < 0)
+		{
+			return;
+		}
+
+		final ByteBuffer slab = mySlabs.get((int)(address / mySlabSize)).duplicate();
+		slab.position((int)(address % mySlabSize));
+		slab.put(bytes_i);
+
+		final Slot slot = new Slot(key_i,sizeClass,address,bytes_i.length);
+		myIndex.put(key_i,slot);
+		sizeClass.linkLast(slot);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Remove the value of a key and decode it, for its return to the heap.
+	*
+	*		@return		The key as it was stored and the value, or <CODE>null</CODE> if the tier does
+	*					not hold the key or the codec could not decode it.
+	*
+	***************************************************************************************************/
+	@SuppressWarnings("unchecked")
+	Map.Entry<K,V>	take(Object key_i)
+	{
+		final Slot slot;
+		final byte[] bytes;
+		synchronized (this)
+		{
+			slot = myIndex.remove(key_i);
+			if (slot == null)
+			{
+				return null;
+			}
+
+			bytes = new byte[slot.myLength];
+			final ByteBuffer slab = mySlabs.get((int)(slot.myAddress / mySlabSize)).duplicate();
+			slab.position((int)(slot.myAddress % mySlabSize));
+			slab.get(bytes);
+			release(slot);
+		}
+
+		try
+		{
+			final V value = myCodec.readValue(new DataInputStream(new ByteArrayInputStream(bytes)));
+			return (value != null) ? new AbstractMap.SimpleImmutableEntry<K,V>((K)CacheNode.unmaskKey(slot.myKey),value) : null;
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+		catch (RuntimeException e)
+		{
+			return null;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	synchronized void	remove(Object key_i)
+	{
+		final Slot slot = myIndex.remove(key_i);
+		if (slot != null)
+		{
+			release(slot);
+		}
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Drop every value.  The slabs are kept, still carved for their size classes.
+	*
+	***************************************************************************************************/
+	synchronized void	clear()
+	{
+		for (Slot slot : myIndex.values())
+		{
+			release(slot);
+		}
+		myIndex.clear();
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static final int	SLAB_SIZE = 1 << 20;
+	private static final int	MINIMUM_SLAB_COUNT = 64;
+	private static final int	MINIMUM_CHUNK_SIZE = 64;
+	private static final float	CHUNK_GROWTH_FACTOR = 1.25f;
+
+
+	private final int						mySlabSize;
+	private final int						myMaximumSlabs;
+	private final LRUCache.Codec<K,V>		myCodec;
+	private final SizeClass[]				myClasses;		// by increasing chunk size
+	private final List<ByteBuffer>			mySlabs = new ArrayList<ByteBuffer>();
+	private final Map<Object,Slot>			myIndex = new HashMap<Object,Slot>();	// masked key ==> Slot
+
+
+
+	/***************************************************************************************************/
+	private SizeClass	classFor(int length_i)
+	{
+		int low  = 0;
+		int high = myClasses.length - 1;
+		while (low < high)
+		{
+			final int middle = (low + high) >>> 1;
+			if (myClasses[middle].myChunkSize < length_i)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return myClasses[low];
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Find a free chunk of a size class, carving a new slab or dropping the class's eldest values
+	*	if needed.
+	*
+	*		@return		The chunk's address (its slab index times the slab size, plus its offset),
+	*					or -1 if the class has neither free chunks nor values to drop.
+	*
+	***************************************************************************************************/
+	private long	allocate(SizeClass sizeClass_i)
+	{
+		if (sizeClass_i.myFreeCount == 0)
+		{
+			if (mySlabs.size() < myMaximumSlabs)
+			{
+				final long base = (long)mySlabs.size() * mySlabSize;
+				mySlabs.add(ByteBuffer.allocateDirect(mySlabSize));
+				for (int offset = mySlabSize - (mySlabSize % sizeClass_i.myChunkSize) - sizeClass_i.myChunkSize; offset >= 0; offset -= sizeClass_i.myChunkSize)
+				{
+					sizeClass_i.free(base + offset);
+				}
+			}
+			else
+			{
+				final Slot eldest = sizeClass_i.myHead.myNext;
+				if (eldest == sizeClass_i.myHead)
+				{
+					return -1;
+				}
+				myIndex.remove(eldest.myKey);
+				release(eldest);
+			}
+		}
+		return sizeClass_i.myFreeChunks[--sizeClass_i.myFreeCount];
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	release(Slot slot_i)
+	{
+		slot_i.mySizeClass.unlink(slot_i);
+		slot_i.mySizeClass.free(slot_i.myAddress);
+	}
+
+
+
+	/**
+	*	A value held by the tier.
+	*/
+	private static final class Slot
+	{
+		Slot(Object key_i, SizeClass sizeClass_i, long address_i, int length_i)
+		{
+			myKey       = key_i;
+			mySizeClass = sizeClass_i;
+			myAddress   = address_i;
+			myLength    = length_i;
+		}
+
+		final Object	myKey;
+		final SizeClass	mySizeClass;
+		final long		myAddress;
+		final int		myLength;
+		Slot			myPrev;
+		Slot			myNext;
+	}
+
+
+
+	/**
+	*	The chunks of one size, with a stack of the free ones and a list of the used ones, eldest
+	*	first.
+	*/
+	private static final class SizeClass
+	{
+		SizeClass(int chunkSize_i)
+		{
+			myChunkSize = chunkSize_i;
+			myHead      = new Slot(null,this,-1,0);
+			myHead.myPrev = myHead;
+			myHead.myNext = myHead;
+		}
+
+		void	free(long address_i)
+		{
+			if (myFreeCount == myFreeChunks.length)
+			{
+				final long[] freeChunks = new long[Math.max(16,2 * myFreeChunks.length)];
+				System.arraycopy(myFreeChunks,0,freeChunks,0,myFreeCount);
+				myFreeChunks = freeChunks;
+			}
+			myFreeChunks[myFreeCount++] = address_i;
+		}
+
+		void	linkLast(Slot slot_i)
+		{
+			slot_i.myPrev = myHead.myPrev;
+			slot_i.myNext = myHead;
+			myHead.myPrev.myNext = slot_i;
+			myHead.myPrev = slot_i;
+		}
+
+		void	unlink(Slot slot_i)
+		{
+			slot_i.myPrev.myNext = slot_i.myNext;
+			slot_i.myNext.myPrev = slot_i.myPrev;
+			slot_i.myPrev = null;
+			slot_i.myNext = null;
+		}
+
+		final int	myChunkSize;
+		final Slot	myHead;		// the sentinel of the list of used chunks
+		long[]		myFreeChunks = new long[0];
+		int			myFreeCount;
+	}
+
+}
@@ -0,0 +1,37 @@
+/***************************************************************************************************
+*
+*	@(#)ReflectedClass.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+*	Names a class that is only reachable through reflection (a hidden system class).
+*
+*	On an interface, it asks the <CODE>reflection-processor</CODE> annotation processor to generate
+*	a {@link ReflectionObject} subclass that wraps the named class and implements the interface:
+*	each method of the interface calls the method of the same name and parameter types of the
+*	wrapped class (see {@link ReflectedMethod} to use another name).  The generated class is named
+*	after the interface with <CODE>Wrapped</CODE> appended, in the same package; it resolves every
+*	method once, when it is loaded, and lists the ones missing on the running system in
+*	<CODE>missingMembers()</CODE>.
+*
+*	On a parameter of such a method, it gives the wrapped type of the parameter, for a parameter
+*	declared as <CODE>Object</CODE>, or as a {@link ReflectionObject} whose wrapped object is passed.
+*/
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target({ ElementType.TYPE, ElementType.PARAMETER })
+public @interface ReflectedClass
+{
+	/** The name of the class, as given to {@link Class#forName(String)}. */
+	String	value();
+}
@@ -0,0 +1,28 @@
+/***************************************************************************************************
+*
+*	@(#)ReflectedMethod.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+*	Gives the name of the wrapped method that a method of a {@link ReflectedClass} interface calls,
+*	when it differs from the name of the interface method; for instance when the wrapper already
+*	has a method of that name with another return type.
+*/
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface ReflectedMethod
+{
+	/** The name of the wrapped method. */
+	String	value();
+}
@@ -2,6 +2,8 @@ package org.rdm.util;
 
 import java.lang.reflect.Field;
 import java.net.InetAddress;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 // inspired by http://stackoverflow.com/a/10309323/47078
 @SuppressWarnings("unused")
@@ -14,6 +16,13 @@ public abstract class ReflectionObject
 
     private static final String TAG = ReflectionObject.class.getSimpleName();
 
+    // ReflectionObject subclass ==> the class it wraps
+    private static final LRUCache<Class, Class> sWrappedClasses = new LRUCache.Builder<Class, Class>()
+            .maximumSize(64)
+            .policy(LRUCache.Policy.SAMPLED)
+            .cacheLoadFailures(Long.MAX_VALUE, TimeUnit.NANOSECONDS)
+            .build();
+
     protected final Object mObject;
     protected final Class mClass;
 
@@ -92,18 +101,47 @@ public abstract class ReflectionObject
         return mObject;
     }
 
+    // The class is resolved once per subclass, since className() is constant for it; a class that
+    // is missing is remembered too, so wrapping many objects never goes back to the class loader.
     private Class getClassType()
     {
+        Class class_ = sWrappedClasses.get(getClass());
+        if (class_ != null)
+        {
+            return class_;
+        }
         try
         {
-            return Class.forName(this.className());
+            return sWrappedClasses.get(getClass(), new WrappedClassLoader(className()));
         }
-        catch (ClassNotFoundException ignored)
+        catch (ExecutionException e)
         {
+            // a class that fails to link or initialize is not a missing one
+            if (e.getCause() instanceof Error)
+            {
+                throw (Error) e.getCause();
+            }
             throw new NullPointerException("Unable to find class for \"" + this.className() + "\"");
         }
     }
 
+    // Loads the class of a name. It holds the name, not the object asking, so that a missing class
+    // remembered for good does not keep that object alive with it.
+    private static final class WrappedClassLoader implements LRUCache.Loader<Class, Class>
+    {
+        private final String mClassName;
+
+        WrappedClassLoader(String className)
+        {
+            mClassName = className;
+        }
+
+        public Class load(Class subclass) throws ClassNotFoundException
+        {
+            return Class.forName(mClassName);
+        }
+    }
+
     public static Object newInstance(Class class_, Object... args)
     {
         Class[] types = ReflectionUtils.getParameterTypes(args);
@@ -159,6 +197,132 @@ public abstract class ReflectionObject
         return ReflectionUtils.invokeMethodWithoutThrowing(mObject, methodName, args);
     }
 
+    // The same, through a method resolved once for the class. Declare it in the
+    // subclass as: private static final MethodRef GET_X = new MethodRef(CLASS_NAME, "getX");
+
+    public String invokeStringMethod(MethodRef method)
+    {
+        return (String) method.invoke(mObject);
+    }
+
+    public boolean invokeBooleanMethod(MethodRef method)
+    {
+        return method.invokeBoolean(mObject);
+    }
+
+    public int invokeIntMethod(MethodRef method)
+    {
+        return method.invokeInt(mObject);
+    }
+
+    public long invokeLongMethod(MethodRef method)
+    {
+        return method.invokeLong(mObject);
+    }
+
+    public InetAddress invokeInetAddressMethod(MethodRef method)
+    {
+        return (InetAddress) method.invoke(mObject);
+    }
+
+    public void invokeVoidMethod(MethodRef method, Object arg)
+    {
+        method.invoke(mObject, arg);
+    }
+
+    public Object invokeObjectMethod(MethodRef method)
+    {
+        return method.invoke(mObject);
+    }
+
+    public Object invokeObjectMethod(MethodRef method, Object arg)
+    {
+        return method.invoke(mObject, arg);
+    }
+
+    // With arguments. The Slots variants take integral and boolean arguments (a
+    // boolean as 0 or 1) as long, not boxed once the method has a generated invoker.
+
+    public void invokeVoidMethodSlots(MethodRef method, long arg)
+    {
+        method.invokeSlots(mObject, arg);
+    }
+
+    public boolean invokeBooleanMethod(MethodRef method, Object arg)
+    {
+        return method.invokeBoolean(mObject, arg);
+    }
+
+    public boolean invokeBooleanMethodSlots(MethodRef method, long arg)
+    {
+        return method.invokeBooleanSlots(mObject, arg);
+    }
+
+    public boolean invokeBooleanMethod(MethodRef method, Object arg1, Object arg2)
+    {
+        return method.invokeBoolean(mObject, arg1, arg2);
+    }
+
+    public boolean invokeBooleanMethodSlots(MethodRef method, Object arg1, long arg2)
+    {
+        return method.invokeBooleanSlots(mObject, arg1, arg2);
+    }
+
+    public boolean invokeBooleanMethodSlots(MethodRef method, long arg1, long arg2)
+    {
+        return method.invokeBooleanSlots(mObject, arg1, arg2);
+    }
+
+    public int invokeIntMethod(MethodRef method, Object arg)
+    {
+        return method.invokeInt(mObject, arg);
+    }
+
+    public int invokeIntMethodSlots(MethodRef method, long arg)
+    {
+        return method.invokeIntSlots(mObject, arg);
+    }
+
+    public int invokeIntMethod(MethodRef method, Object arg1, Object arg2)
+    {
+        return method.invokeInt(mObject, arg1, arg2);
+    }
+
+    public int invokeIntMethodSlots(MethodRef method, Object arg1, long arg2)
+    {
+        return method.invokeIntSlots(mObject, arg1, arg2);
+    }
+
+    public int invokeIntMethodSlots(MethodRef method, long arg1, long arg2)
+    {
+        return method.invokeIntSlots(mObject, arg1, arg2);
+    }
+
+    public long invokeLongMethod(MethodRef method, Object arg)
+    {
+        return method.invokeLong(mObject, arg);
+    }
+
+    public long invokeLongMethodSlots(MethodRef method, long arg)
+    {
+        return method.invokeLongSlots(mObject, arg);
+    }
+
+    public long invokeLongMethod(MethodRef method, Object arg1, Object arg2)
+    {
+        return method.invokeLong(mObject, arg1, arg2);
+    }
+
+    public long invokeLongMethodSlots(MethodRef method, Object arg1, long arg2)
+    {
+        return method.invokeLongSlots(mObject, arg1, arg2);
+    }
+
+    public long invokeLongMethodSlots(MethodRef method, long arg1, long arg2)
+    {
+        return method.invokeLongSlots(mObject, arg1, arg2);
+    }
+
     public static Object getField(Object obj, String name)
             throws SecurityException, NoSuchFieldException, IllegalArgumentException, IllegalAccessException
     {
@@ -168,7 +332,7 @@ public abstract class ReflectionObject
     public static Object getField(Class klass, Object obj, String name)
             throws SecurityException, NoSuchFieldException, IllegalArgumentException, IllegalAccessException
     {
-        return klass.getField(name).get(obj);
+        return findField(klass, name).get(obj);
     }
 
     public static Object getStaticField(Class klass, String name)
@@ -204,15 +368,14 @@ public abstract class ReflectionObject
             throws SecurityException, NoSuchFieldException,
                    IllegalArgumentException, IllegalAccessException
     {
-        Field f = obj.getClass().getDeclaredField(name);
-        f.setAccessible(true);
-        return f.get(obj);
+        // cached fields are made accessible once, when first looked up
+        return findDeclaredField(obj.getClass(), name).get(obj);
     }
 
     public static String getEnumField(Object obj, String name)
             throws SecurityException, NoSuchFieldException, IllegalArgumentException, IllegalAccessException
     {
-        Field f = obj.getClass().getField(name);
+        Field f = findField(obj.getClass(), name);
         Enum e = (Enum) f.get(obj);
         return e.name();
     }
@@ -220,7 +383,7 @@ public abstract class ReflectionObject
     public static void setEnumField(Object obj, String value, String name)
             throws SecurityException, NoSuchFieldException, IllegalArgumentException, IllegalAccessException, ClassCastException
     {
-        Field f = obj.getClass().getField(name);
+        Field f = findField(obj.getClass(), name);
         //noinspection unchecked
         f.set(obj, Enum.valueOf((Class<Enum>) f.getType(), value));
     }
@@ -228,7 +391,63 @@ public abstract class ReflectionObject
     public static int getIntField(Object obj,
                                   String name) throws SecurityException, NoSuchFieldException, IllegalArgumentException, IllegalAccessException
     {
-        Field f = obj.getClass().getField(name);
-        return (Integer) f.get(obj);
+        Field f = findField(obj.getClass(), name);
+        // an Integer field is read as well, and any other type fails as it always has
+        return (f.getType() == int.class) ? f.getInt(obj) : (Integer) f.get(obj);
+    }
+
+    public static long getLongField(Object obj, String name)
+            throws SecurityException, NoSuchFieldException, IllegalArgumentException, IllegalAccessException
+    {
+        Field f = findField(obj.getClass(), name);
+        return (f.getType() == long.class) ? f.getLong(obj) : (Long) f.get(obj);
+    }
+
+    public static boolean getBooleanField(Object obj, String name)
+            throws SecurityException, NoSuchFieldException, IllegalArgumentException, IllegalAccessException
+    {
+        Field f = findField(obj.getClass(), name);
+        return (f.getType() == boolean.class) ? f.getBoolean(obj) : (Boolean) f.get(obj);
+    }
+
+    public static void setIntField(Object obj, int value, String name)
+            throws SecurityException, NoSuchFieldException, IllegalArgumentException, IllegalAccessException
+    {
+        findField(obj.getClass(), name).setInt(obj, value);
+    }
+
+    public static void setLongField(Object obj, long value, String name)
+            throws SecurityException, NoSuchFieldException, IllegalArgumentException, IllegalAccessException
+    {
+        findField(obj.getClass(), name).setLong(obj, value);
+    }
+
+    public static void setBooleanField(Object obj, boolean value, String name)
+            throws SecurityException, NoSuchFieldException, IllegalArgumentException, IllegalAccessException
+    {
+        findField(obj.getClass(), name).setBoolean(obj, value);
+    }
+
+    // The field is looked up once per class and name (see ReflectionUtils.getFieldRefFor),
+    // among the public fields as Class.getField does
+    private static Field findField(Class klass, String name) throws NoSuchFieldException
+    {
+        return fieldOrThrow(ReflectionUtils.getFieldRefFor(klass, name, FieldRef.Lookup.PUBLIC), name);
+    }
+
+    // ... or among the fields the class itself declares, as Class.getDeclaredField does
+    private static Field findDeclaredField(Class klass, String name) throws NoSuchFieldException
+    {
+        return fieldOrThrow(ReflectionUtils.getFieldRefFor(klass, name, FieldRef.Lookup.DECLARED), name);
+    }
+
+    private static Field fieldOrThrow(FieldRef ref, String name) throws NoSuchFieldException
+    {
+        Field f = ref.getField();
+        if (f == null)
+        {
+            throw new NoSuchFieldException(name);
+        }
+        return f;
     }
 }
@@ -5,6 +5,10 @@
 ***************************************************************************************************/
 package org.rdm.util;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Member;
@@ -19,6 +23,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -26,15 +34,148 @@ import java.util.Set;
 */
 public class ReflectionUtils
 {
+	/**
+	*	Picks, among members of a class that take parameters, the one that best matches the types of
+	*	the values passed: an exact match if there is one, or else the most specific of the members
+	*	the values can be passed to, boxed, unboxed or widened.
+	*/
+	public abstract static class MemberMatcher
+	{
+		/**************************************************************************************************/
+		protected MemberMatcher(Class class_i)
+		{
+			myClass = class_i;
+		}
+
+
+		/**
+		*	What the members are, for the message of a failed match ("method", "constructor").
+		*/
+		abstract String	getMemberKind();
+
+
+		final Class		myClass;
+		final Map		myMemberToParameterTypesMap = new HashMap();	// Member ==> Class[]
+
+
+
+		/**************************************************************************************************/
+		final Member	findMemberInList(String memberName_i, List memberList_i, Class[] memberValueTypes_i) throws NoSuchMethodException
+		{
+			List matchingMembers = new ArrayList();
+
+			Iterator iterator = memberList_i.iterator();
+			while (iterator.hasNext())
+			{
+				Member member = (Member)iterator.next();
+
+				Class[] memberParameterTypes = (Class[])myMemberToParameterTypesMap.get(member);
+				if (Arrays.equals(memberParameterTypes,memberValueTypes_i))
+				{
+					return member;
+				}
+
+				if (ReflectionUtils.valuesAreCompatibleWithTypes(memberValueTypes_i,memberParameterTypes))
+				{
+					matchingMembers.add(member);
+				}
+			}
+
+			switch (matchingMembers.size())
+			{
+				case 0:
+						throw new NoSuchMethodException(myClass.getName() + " has no " + getMemberKind() + " " + MethodMatcher.getMethodInvocationKey(memberName_i, memberValueTypes_i));
+
+				case 1:
+						return (Member)matchingMembers.get(0);
+
+				default:
+						return findMostSpecificMemberIn(matchingMembers);
+			}
+
+		}
+
+
+
+		/**************************************************************************************************/
+		private Member findMostSpecificMemberIn(List memberList) throws NoSuchMethodException
+		{
+			List mostSpecificMembers = new ArrayList();
+
+			for (Iterator memberIt = memberList.iterator(); memberIt.hasNext();)
+			{
+				Member member = (Member) memberIt.next();
+
+				if (mostSpecificMembers.isEmpty())
+				{
+					// First guy in is the most specific so far.
+					mostSpecificMembers.add(member);
+				}
+				else
+				{
+					boolean moreSpecific = true;
+					boolean lessSpecific = false;
+
+					// Is member more specific than everyone in the most-specific set?
+					for (Iterator specificIt = mostSpecificMembers.iterator(); specificIt.hasNext();)
+					{
+						Member moreSpecificMember = (Member) specificIt.next();
+
+						if (! memberIsMoreSpecific(member, moreSpecificMember))
+						{
+							moreSpecific = false;
+							lessSpecific = memberIsMoreSpecific(moreSpecificMember, member);
+							break;
+						}
+					}
+
+					if (moreSpecific)
+					{
+						// Member is the most specific now.
+						mostSpecificMembers.clear();
+						mostSpecificMembers.add(member);
+					}
+					else if (!lessSpecific)
+					{
+						// Add to ambiguity set if mutually unspecific.
+						mostSpecificMembers.add(member);
+					}
+				}
+			}
+
+			if (mostSpecificMembers.size() > 1)
+			{
+				throw new AmbiguousMatchException("Ambiguous request for member in " + myClass.getName() + " matching given args" ); 
+			}
+
+			return (Member)mostSpecificMembers.get(0);
+		}
+
+
+
+		/**************************************************************************************************/
+		private boolean memberIsMoreSpecific(Member first, Member second)
+		{
+			Class[] firstParamTypes  = (Class[])myMemberToParameterTypesMap.get(first);
+			Class[] secondParamTypes = (Class[])myMemberToParameterTypesMap.get(second);
+
+			return ReflectionUtils.valuesAreCompatibleWithTypes(firstParamTypes,secondParamTypes);
+		}
+	}
+
+
+
+
+
 	/**
 	*
 	*/
-	public static class MethodMatcher
+	public static class MethodMatcher extends MemberMatcher
 	{
 		/**************************************************************************************************/
 		public MethodMatcher(Class class_i)
 		{
-			myClass = class_i;
+			super(class_i);
 
 			obtainAvailableMethods();
 		}
@@ -54,9 +195,15 @@ public class ReflectionUtils
 		}
 
 
-		private final Class		myClass;
 		private final Map		myMethodToParameterListsMap = new HashMap();	// method name (String) ==> List()
-		private final Map		myMethodToParameterTypesMap = new HashMap();	// Method ==> Class[]
+
+
+
+		/**************************************************************************************************/
+		String	getMemberKind()
+		{
+			return "method";
+		}
 
 
 
@@ -208,114 +355,61 @@ public class ReflectionUtils
 				if (method != null)
 				{
 					list.add(method);
-					myMethodToParameterTypesMap.put(method,parameterTypes);
+					myMemberToParameterTypesMap.put(method,parameterTypes);
 				}
 				
 			}
 		}
+	}
 
 
-		/**************************************************************************************************/
-		private Member	findMemberInList(String methodName_i, List memberList_i, Class[] methodValueTypes_i) throws NoSuchMethodException
-		{
-			List matchingMembers = new ArrayList();
-
-			Iterator iterator = memberList_i.iterator();
-			while (iterator.hasNext())
-			{
-				Member member = (Member)iterator.next();
-
-				Class[] methodParameterTypes = (Class[])myMethodToParameterTypesMap.get(member);
-				if (Arrays.equals(methodParameterTypes,methodValueTypes_i))
-				{
-					return member;
-				}
-
-				if (ReflectionUtils.valuesAreCompatibleWithTypes(methodValueTypes_i,methodParameterTypes))
-				{
-					matchingMembers.add(member);
-				}
-			}
 
-			switch (matchingMembers.size())
-			{
-				case 0:
-						throw new NoSuchMethodException(myClass.getName() + " has no method " + MethodMatcher.getMethodInvocationKey(methodName_i, methodValueTypes_i));
 
-				case 1:
-						return (Member)matchingMembers.get(0);
 
-				default:
-						return findMostSpecificMemberIn(matchingMembers);
-			}
+	/**
+	*	The public constructors of a class, matched like the methods of a {@link MethodMatcher}, so
+	*	that a constructor declared to take an <CODE>InetAddress</CODE> accepts an
+	*	<CODE>Inet4Address</CODE>, and one declared to take an <CODE>int</CODE> an
+	*	<CODE>Integer</CODE>.
+	*/
+	public static class ConstructorMatcher extends MemberMatcher
+	{
+		/**************************************************************************************************/
+		public ConstructorMatcher(Class class_i)
+		{
+			super(class_i);
 
+			obtainAvailableConstructors();
 		}
 
 
-
 		/**************************************************************************************************/
-		private Member findMostSpecificMemberIn(List memberList) throws NoSuchMethodException
+		public Constructor	findBestConstructorMatch(Class[] constructorValueTypes_i) throws NoSuchMethodException
 		{
-			List mostSpecificMembers = new ArrayList();
-
-			for (Iterator memberIt = memberList.iterator(); memberIt.hasNext();)
-			{
-				Member member = (Member) memberIt.next();
-
-				if (mostSpecificMembers.isEmpty())
-				{
-					// First guy in is the most specific so far.
-					mostSpecificMembers.add(member);
-				}
-				else
-				{
-					boolean moreSpecific = true;
-					boolean lessSpecific = false;
+			return (Constructor)findMemberInList(CONSTRUCTOR_NAME,myConstructorList,constructorValueTypes_i);
+		}
 
-					// Is member more specific than everyone in the most-specific set?
-					for (Iterator specificIt = mostSpecificMembers.iterator(); specificIt.hasNext();)
-					{
-						Member moreSpecificMember = (Member) specificIt.next();
 
-						if (! memberIsMoreSpecific(member, moreSpecificMember))
-						{
-							moreSpecific = false;
-							lessSpecific = memberIsMoreSpecific(moreSpecificMember, member);
-							break;
-						}
-					}
+		private final List		myConstructorList = new ArrayList();
 
-					if (moreSpecific)
-					{
-						// Member is the most specific now.
-						mostSpecificMembers.clear();
-						mostSpecificMembers.add(member);
-					}
-					else if (!lessSpecific)
-					{
-						// Add to ambiguity set if mutually unspecific.
-						mostSpecificMembers.add(member);
-					}
-				}
-			}
 
-			if (mostSpecificMembers.size() > 1)
-			{
-				throw new NoSuchMethodException("Ambiguous request for member in " + myClass.getName() + " matching given args" ); 
-			}
 
-			return (Member)mostSpecificMembers.get(0);
+		/**************************************************************************************************/
+		String	getMemberKind()
+		{
+			return "constructor";
 		}
 
 
-
 		/**************************************************************************************************/
-		private boolean memberIsMoreSpecific(Member first, Member second)
+		private void	obtainAvailableConstructors()
 		{
-			Class[] firstParamTypes  = (Class[])myMethodToParameterTypesMap.get(first);
-			Class[] secondParamTypes = (Class[])myMethodToParameterTypesMap.get(second);
-
-			return ReflectionUtils.valuesAreCompatibleWithTypes(firstParamTypes,secondParamTypes);
+			Constructor[] constructors = myClass.getConstructors();
+			for (int i = 0; i < constructors.length; ++i)
+			{
+				myConstructorList.add(constructors[i]);
+				myMemberToParameterTypesMap.put(constructors[i],constructors[i].getParameterTypes());
+			}
 		}
 	}
 
@@ -557,13 +651,71 @@ public class ReflectionUtils
 																						  InvocationTargetException,
 																						  InstantiationException
 	{
-		Constructor constructor = class_i.getConstructor(parameterTypes_i);
+		Constructor constructor = ReflectionUtils.getConstructorThatBestMatches(class_i,parameterTypes_i);
 		// System.out.println("*********** constructor " + constructor);
 
 		Object object = constructor.newInstance(parameters_i);
 		return object;
 	}
 
+
+
+	/***************************************************************************************************
+	*
+	*	Look for the public constructor that best matches the given parameter types, which may be
+	*	the types of the values passed (see {@link ConstructorMatcher}).  The constructor matched is
+	*	cached for the class and the types, so creating many objects of a class costs one lookup per
+	*	signature.
+	*
+	*		@throws	NoSuchMethodException if the class has no constructor, or no single most
+	*				specific constructor, matching the types.
+	*
+	***************************************************************************************************/
+	public static Constructor	getConstructorThatBestMatches(final Class class_i, final Class[] parameterTypes_i) throws NoSuchMethodException
+	{
+		// probe the cache with this thread's reusable key, so that a hit allocates nothing
+		final MethodKey probe = MethodKey.probe(class_i,CONSTRUCTOR_NAME,parameterTypes_i);
+		final Constructor cachedConstructor = ourConstructorCache.probe(probe);
+		probe.release();
+		if (cachedConstructor != null)
+		{
+			return cachedConstructor;
+		}
+
+		// a missing constructor is not cached: the exception says why it is missing, and asking
+		// for one is a bug rather than a probe of the system
+		final Constructor constructor = getConstructorMatcherFor(class_i).findBestConstructorMatch((parameterTypes_i != null) ? parameterTypes_i : new Class[0]);
+		removeCollectedKeys();
+		ourConstructorCache.put(new MethodKey(class_i,CONSTRUCTOR_NAME,parameterTypes_i),constructor);
+		return constructor;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Obtain the index of the public constructors of a class, built the first time the class is
+	*	searched and shared by every later search.
+	*
+	***************************************************************************************************/
+	public static ConstructorMatcher	getConstructorMatcherFor(Class class_i)
+	{
+		try
+		{
+			return ourConstructorMatcherCache.get(class_i,new LRUCache.Loader<Class,ConstructorMatcher>()
+			{
+				public ConstructorMatcher	load(Class key_i)
+				{
+					return new ConstructorMatcher(key_i);
+				}
+			});
+		}
+		catch (ExecutionException e)
+		{
+			throw rethrowUnchecked(e.getCause());
+		}
+	}
+
 	/***************************************************************************************************
 	*
 	*	Determine if a collection of classes are compatible with a collection of parameter types.
@@ -634,33 +786,11 @@ public class ReflectionUtils
 																												    InvocationTargetException,
 																												    IllegalAccessException
 	{
-		// determine if we have already found a matching method
-		Method method;
-		String key = class_i + ">" + methodName_i + ":" + ArrayUtils.toString(methodParameterTypes_i,",");
-		synchronized (ReflectionUtils.class)
-		{
-			if (ourMethodCache == null)
-			{
-				ourMethodCache = new LRUCache(100);
-			}
-
-			method = (Method)ourMethodCache.get(key);
-		}
+		final Method method = lookUpMethod(class_i,methodName_i,methodParameterTypes_i);
 		if (method == null)
 		{
-			// look for a matching method
-			MethodMatcher methodMatcher = new MethodMatcher(class_i);
-			method = methodMatcher.findBestMethodMatch(methodName_i,methodParameterTypes_i);
-			if (method != null)
-			{
-				synchronized (ReflectionUtils.class)
-				{
-					ourMethodCache.put(key,method);
-				}
-			}
+			throw new NoSuchMethodException(class_i.getName() + " has no method " + MethodMatcher.getMethodInvocationKey(methodName_i,methodParameterTypes_i));
 		}
-
-		// return the method
 		return method;
 	}
 
@@ -669,18 +799,297 @@ public class ReflectionUtils
 
 	/***************************************************************************************************
 	*
+	*	Look for the method that best matches the given parameter types, like
+	*	{@link #geMethodThatBestMatches(Class,String,Class[])}, without throwing when there is none.
+	*	That a method is missing is cached as well, so probing again for a method that this build of
+	*	the system does not have is a single cache lookup (see {@link #setMissingMethodTimeToLive}
+	*	and {@link #forgetMissingMethods}).
+	*
+	*		@return		The method, or <CODE>null</CODE> if the class has no method, or no single
+	*					most specific method, matching the types.  Only the former is cached.
 	*
 	***************************************************************************************************/
-	public static Object	invokeMethod(Object object_i, String methodName_i) throws NoSuchMethodException,
-	                                                                                  InvocationTargetException,
-																					  IllegalAccessException
+	public static Method	findMethodThatBestMatches(Class class_i, String methodName_i, Class[] methodParameterTypes_i)
 	{
-		return ReflectionUtils.invokeMethod(object_i,methodName_i,null);
-	}
-
-
-
-	/***************************************************************************************************
+		try
+		{
+			return lookUpMethod(class_i,methodName_i,methodParameterTypes_i);
+		}
+		catch (NoSuchMethodException exception_i)
+		{
+			// several methods match equally well
+			return null;
+		}
+	}
+
+
+
+
+	/***************************************************************************************************
+	*
+	*	Look for the method that best matches the given parameter types in the method cache, and
+	*	search the class on a miss.  A class without a matching method caches the method as missing;
+	*	a request that several methods match equally well is not cached, so that each lookup reports
+	*	the ambiguity.
+	*
+	*		@return		The method, or <CODE>null</CODE> if the class has no method matching the types.
+	*
+	*		@throws	NoSuchMethodException if several methods match the types and none of them is
+	*				more specific than the others.
+	*
+	***************************************************************************************************/
+	private static Method	lookUpMethod(final Class class_i, final String methodName_i, final Class[] methodParameterTypes_i) throws NoSuchMethodException
+	{
+		// probe the cache with this thread's reusable key, so that a hit allocates nothing
+		final MethodKey probe = MethodKey.probe(class_i,methodName_i,methodParameterTypes_i);
+		final Method cachedMethod = ourMethodCache.probe(probe);
+		probe.release();
+		if (cachedMethod != null)
+		{
+			return (cachedMethod != NO_SUCH_METHOD) ? cachedMethod : null;
+		}
+
+		// look for a matching method; threads that miss on the same key at the same time wait
+		// for a single search instead of each walking the class
+		removeCollectedKeys();
+		final MethodKey key = new MethodKey(class_i,methodName_i,methodParameterTypes_i);
+		final Method method;
+		try
+		{
+			method = ourMethodCache.get(key,new LRUCache.Loader<MethodKey,Method>()
+			{
+				public Method	load(MethodKey key_i) throws AmbiguousMatchException
+				{
+					try
+					{
+						return getMethodMatcherFor(class_i).findBestMethodMatch(methodName_i,methodParameterTypes_i);
+					}
+					catch (AmbiguousMatchException exception_i)
+					{
+						// fails the load, which is not cached
+						throw exception_i;
+					}
+					catch (NoSuchMethodException exception_i)
+					{
+						return NO_SUCH_METHOD;
+					}
+				}
+			});
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof AmbiguousMatchException)
+			{
+				throw (AmbiguousMatchException)e.getCause();
+			}
+			throw rethrowUnchecked(e.getCause());
+		}
+
+		if (method != NO_SUCH_METHOD)
+		{
+			return method;
+		}
+
+		final long timeToLive = ourMissingMethodTimeToLive;
+		if (timeToLive > 0)
+		{
+			// store it again, now to be forgotten in time
+			ourMethodCache.put(key,NO_SUCH_METHOD,timeToLive,TimeUnit.NANOSECONDS);
+		}
+		return null;
+	}
+
+
+
+
+	/***************************************************************************************************
+	*
+	*	Limit how long the method cache remembers that a method is missing.  By default it is
+	*	remembered until evicted or forgotten (see {@link #forgetMissingMethods}), since the methods
+	*	of a class do not change while it is loaded; a limit only matters for classes whose
+	*	loader is replaced.  Applies to methods found missing from now on.
+	*
+	*		@param	duration_i				The time to remember, or 0 for no limit.
+	*
+	***************************************************************************************************/
+	public static void	setMissingMethodTimeToLive(long duration_i, TimeUnit unit_i)
+	{
+		if (duration_i < 0)
+		{
+			throw new IllegalArgumentException("duration_i must not be negative: " + duration_i);
+		}
+		ourMissingMethodTimeToLive = unit_i.toNanos(duration_i);
+	}
+
+
+
+
+	/***************************************************************************************************
+	*
+	*	Forget every method the cache remembers as missing, so that the next lookups search again.
+	*
+	***************************************************************************************************/
+	public static void	forgetMissingMethods()
+	{
+		for (Iterator<Map.Entry<MethodKey,Method>> iterator = ourMethodCache.iterator(); iterator.hasNext();)
+		{
+			if (iterator.next().getValue() == NO_SUCH_METHOD)
+			{
+				iterator.remove();
+			}
+		}
+	}
+
+
+
+
+	/***************************************************************************************************
+	*
+	*	Obtain the index of the public methods of a class, built the first time the class is
+	*	searched and shared by every later search, whatever the method name and parameter types.
+	*
+	***************************************************************************************************/
+	public static MethodMatcher	getMethodMatcherFor(Class class_i)
+	{
+		try
+		{
+			return ourMethodMatcherCache.get(class_i,new LRUCache.Loader<Class,MethodMatcher>()
+			{
+				public MethodMatcher	load(Class key_i)
+				{
+					return new MethodMatcher(key_i);
+				}
+			});
+		}
+		catch (ExecutionException e)
+		{
+			throw rethrowUnchecked(e.getCause());
+		}
+	}
+
+
+
+
+	/***************************************************************************************************
+	*
+	*	Obtain the accessor of a field of a class, looked up and made accessible on its first use
+	*	and then shared by every caller asking for the same class and name, so that reading a field
+	*	repeatedly costs one cache lookup rather than a search of the class.  A missing field is
+	*	cached as well: its accessor is simply not available (see {@link FieldRef#isAvailable}).
+	*
+	*		@param	lookup_i			Where the field is looked up.
+	*
+	***************************************************************************************************/
+	public static FieldRef	getFieldRefFor(Class class_i, String fieldName_i, FieldRef.Lookup lookup_i)
+	{
+		ClassFields fields = ourFieldCache.probe(class_i);
+		if (fields == null)
+		{
+			try
+			{
+				fields = ourFieldCache.get(class_i,new LRUCache.Loader<Class,ClassFields>()
+				{
+					public ClassFields	load(Class key_i)
+					{
+						return new ClassFields();
+					}
+				});
+			}
+			catch (ExecutionException e)
+			{
+				throw rethrowUnchecked(e.getCause());
+			}
+		}
+
+		final ConcurrentMap<String,FieldRef> fieldsOfLookup = fields.of(lookup_i);
+		final FieldRef field = fieldsOfLookup.get(fieldName_i);
+		if (field != null)
+		{
+			return field;
+		}
+		final FieldRef newField    = new FieldRef(class_i,fieldName_i,lookup_i);
+		final FieldRef racingField  = fieldsOfLookup.putIfAbsent(fieldName_i,newField);
+		return (racingField != null) ? racingField : newField;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Obtain the accessor of a field of a class, looked up among its public fields and then among
+	*	the fields declared by the class and its superclasses (see {@link FieldRef.Lookup#ANY}).
+	*
+	***************************************************************************************************/
+	public static FieldRef	getFieldRefFor(Class class_i, String fieldName_i)
+	{
+		return getFieldRefFor(class_i,fieldName_i,FieldRef.Lookup.ANY);
+	}
+
+
+
+
+	/***************************************************************************************************
+	*
+	*	Obtain the hit, miss, eviction and load statistics of the cache of matched methods, so
+	*	that its capacity can be judged against a real workload.
+	*
+	***************************************************************************************************/
+	public static CacheStats	getMethodCacheStats()
+	{
+		return ourMethodCache.stats();
+	}
+
+
+
+
+	/***************************************************************************************************
+	*
+	*	Save the cache of matched methods to a file, for {@link #restoreMethodCache} to read when
+	*	the application next starts.
+	*
+	*		@param	version_i				Identifies the build of the application (its version
+	*										code, for instance), since the methods of another build
+	*										may no longer match.
+	*
+	***************************************************************************************************/
+	public static void	saveMethodCache(File file_i, long version_i) throws IOException
+	{
+		ourMethodCache.saveSnapshot(file_i,ourMethodCodec,version_i);
+	}
+
+
+
+
+	/***************************************************************************************************
+	*
+	*	Reuse the methods matched by an earlier run of the same build, saved by
+	*	{@link #saveMethodCache}.  A saved method is only resolved again when it is first asked for.
+	*
+	*		@return		<CODE>false</CODE> if the file is missing or was saved by another build.
+	*
+	***************************************************************************************************/
+	public static boolean	restoreMethodCache(File file_i, long version_i) throws IOException
+	{
+		return ourMethodCache.restoreSnapshot(file_i,ourMethodCodec,version_i);
+	}
+
+
+
+
+	/***************************************************************************************************
+	*
+	*
+	***************************************************************************************************/
+	public static Object	invokeMethod(Object object_i, String methodName_i) throws NoSuchMethodException,
+	                                                                                  InvocationTargetException,
+																					  IllegalAccessException
+	{
+		return ReflectionUtils.invokeMethod(object_i,methodName_i,null);
+	}
+
+
+
+	/***************************************************************************************************
 	 *
 	 *
 	 ***************************************************************************************************/
@@ -744,7 +1153,7 @@ public class ReflectionUtils
 		Object result = null;
 		try
 		{
-			result = ReflectionUtils.invokeClassMethod(
+			result = ReflectionUtils.invokeClassMethodWithoutThrowing(
 													 object_i.getClass(),
 													 object_i,
 													 methodName_i,
@@ -802,7 +1211,7 @@ public class ReflectionUtils
 	{
 		try
 		{
-			return ReflectionUtils.invokeStaticMethod(class_i,methodName_i);
+			return ReflectionUtils.invokeClassMethodWithoutThrowing(class_i,null,methodName_i,null);
 		}
 		catch (Throwable exception_i)
 		{
@@ -820,7 +1229,7 @@ public class ReflectionUtils
 	{
 		try
 		{
-			return ReflectionUtils.invokeStaticMethod(class_i,methodName_i,methodParameters_i);
+			return ReflectionUtils.invokeClassMethodWithoutThrowing(class_i,null,methodName_i,methodParameters_i);
 		}
 		catch (Throwable exception_i)
 		{
@@ -838,9 +1247,11 @@ public class ReflectionUtils
 
 
 	/**
-	*
+	*	A map of the names of the primitive types, as written by {@link Class#getName}, to their
+	*	classes.  A missing name stands for void.
 	*/
 	private static final Map	ourPrimitiveTypeNameToClassMap = new HashMap(17);
+	static
 	{
 		ourPrimitiveTypeNameToClassMap.put(null,Void.TYPE);
 		ourPrimitiveTypeNameToClassMap.put("",Void.TYPE);
@@ -914,7 +1325,245 @@ public class ReflectionUtils
 	}
 
 
-	private static LRUCache		ourMethodCache;
+	/**
+	*	Methods already matched, keyed by class, method name and parameter types.  The cache is
+	*	striped so that threads invoking wrapped objects at the same time do not queue on one lock,
+	*	and uses W-TinyLFU so that a pass over many rarely called methods does not evict the hot ones.
+	*	The keys hold their classes weakly (see {@link MethodKey}) and the methods are held softly: a
+	*	cached lookup never keeps its class, and with it the class loader, from being collected when
+	*	memory is needed.  The lookups of a collected class, including the ones that found no method,
+	*	are removed on the next miss (see removeCollectedKeys()).
+	*/
+	private static final int		METHOD_CACHE_SIZE = 100;
+	private static final int		METHOD_MATCHER_CACHE_SIZE = 32;
+	private static final int		METHOD_CACHE_CONCURRENCY = 4;
+	private static final LRUCache<MethodKey,Method>	ourMethodCache = new LRUCache.Builder<MethodKey,Method>()
+	                                                                     .maximumSize(METHOD_CACHE_SIZE)
+	                                                                     .concurrencyLevel(METHOD_CACHE_CONCURRENCY)
+	                                                                     .recordStats(true)
+	                                                                     .policy(LRUCache.Policy.WINDOW_TINY_LFU)
+	                                                                     .softValues()
+	                                                                     .build();
+
+	/** The method cached for lookups that found no method; see noSuchMethod(). */
+	private static final Method	NO_SUCH_METHOD;
+	static
+	{
+		try
+		{
+			NO_SUCH_METHOD = ReflectionUtils.class.getDeclaredMethod("noSuchMethod");
+		}
+		catch (NoSuchMethodException exception_i)
+		{
+			throw new ExceptionInInitializerError(exception_i);
+		}
+	}
+
+	/** How long a missing method is remembered, in nanoseconds; 0 for as long as the cache keeps it. */
+	private static volatile long	ourMissingMethodTimeToLive;
+
+	/**
+	*	The method index of each class searched, so that the methods of a class are listed and
+	*	grouped by name only once rather than on every miss of the method cache.  The classes are
+	*	held weakly and the indexes softly; an index refers to its class, so a strongly held one
+	*	would keep its class, and the class's loader, alive forever.
+	*/
+	private static final LRUCache<Class,MethodMatcher>	ourMethodMatcherCache = new LRUCache.Builder<Class,MethodMatcher>()
+	                                                                              .maximumSize(METHOD_MATCHER_CACHE_SIZE)
+	                                                                              .concurrencyLevel(METHOD_CACHE_CONCURRENCY)
+	                                                                              .weakKeys()
+	                                                                              .softValues()
+	                                                                              .build();
+
+	/**
+	*	Constructors already matched, keyed and held like the methods with {@link #CONSTRUCTOR_NAME}
+	*	for the name, and the constructor index of each class searched, held like the method indexes.
+	*/
+	private static final String		CONSTRUCTOR_NAME = "<init>";
+	private static final int		CONSTRUCTOR_CACHE_SIZE = 32;
+	private static final LRUCache<MethodKey,Constructor>	ourConstructorCache = new LRUCache.Builder<MethodKey,Constructor>()
+	                                                                               .maximumSize(CONSTRUCTOR_CACHE_SIZE)
+	                                                                               .concurrencyLevel(METHOD_CACHE_CONCURRENCY)
+	                                                                               .softValues()
+	                                                                               .build();
+	private static final LRUCache<Class,ConstructorMatcher>	ourConstructorMatcherCache = new LRUCache.Builder<Class,ConstructorMatcher>()
+	                                                                                        .maximumSize(CONSTRUCTOR_CACHE_SIZE)
+	                                                                                        .concurrencyLevel(METHOD_CACHE_CONCURRENCY)
+	                                                                                        .weakKeys()
+	                                                                                        .softValues()
+	                                                                                        .build();
+
+	/**
+	*	The field accessors of each class (see {@link ClassFields}).  A field is read where a method
+	*	would be called, often cheaply, so the lookup must cost less than the search it saves: the
+	*	class is the key itself, without a key object to fill in.  The classes are held weakly and
+	*	the accessors softly, like the method indexes, since an accessor refers to its class.
+	*/
+	private static final int		FIELD_CACHE_SIZE = 32;
+	private static final LRUCache<Class,ClassFields>	ourFieldCache = new LRUCache.Builder<Class,ClassFields>()
+	                                                                    .maximumSize(FIELD_CACHE_SIZE)
+	                                                                    .concurrencyLevel(METHOD_CACHE_CONCURRENCY)
+	                                                                    .policy(LRUCache.Policy.SAMPLED)
+	                                                                    .weakKeys()
+	                                                                    .softValues()
+	                                                                    .build();
+
+	/**
+	*	Saves a lookup and the method matched as a class, a name and parameter types each, and
+	*	resolves them again.  Visible to the package for its tests.
+	*/
+	static final LRUCache.Codec<MethodKey,Method>	ourMethodCodec = new LRUCache.Codec<MethodKey,Method>()
+	{
+		public void	writeKey(MethodKey key_i, DataOutput output_o) throws IOException
+		{
+			writeSignature(key_i.getDeclaringClass(),key_i.getMethodName(),key_i.getParameterTypes(),output_o);
+		}
+
+		public void	writeValue(Method value_i, DataOutput output_o) throws IOException
+		{
+			writeSignature(value_i.getDeclaringClass(),value_i.getName(),value_i.getParameterTypes(),output_o);
+		}
+
+		public MethodKey	readKey(DataInput input_i) throws IOException
+		{
+			try
+			{
+				final Class   declaringClass = readClass(input_i);
+				final String  methodName     = input_i.readUTF();
+				final Class[] parameterTypes = readClasses(input_i);
+				return new MethodKey(declaringClass,methodName,parameterTypes);
+			}
+			catch (ClassNotFoundException exception_i)
+			{
+				return null;
+			}
+		}
+
+		public Method	readValue(DataInput input_i) throws IOException
+		{
+			try
+			{
+				final Class   declaringClass = readClass(input_i);
+				final String  methodName     = input_i.readUTF();
+				final Class[] parameterTypes = readClasses(input_i);
+				// the stand-in for a missing method is not public, so a missing method is looked for again
+				return declaringClass.getMethod(methodName,parameterTypes);
+			}
+			catch (ClassNotFoundException exception_i)
+			{
+				return null;
+			}
+			catch (NoSuchMethodException exception_i)
+			{
+				return null;
+			}
+		}
+
+		private void	writeSignature(Class class_i, String methodName_i, Class[] parameterTypes_i, DataOutput output_o) throws IOException
+		{
+			// a collected class is written as void, which has no methods to restore
+			output_o.writeUTF((class_i != null) ? class_i.getName() : "void");
+			output_o.writeUTF(methodName_i);
+			output_o.writeInt(parameterTypes_i.length);
+			for (int i = 0; i < parameterTypes_i.length; ++i)
+			{
+				output_o.writeUTF((parameterTypes_i[i] != null) ? parameterTypes_i[i].getName() : "void");
+			}
+		}
+
+		private Class	readClass(DataInput input_i) throws IOException, ClassNotFoundException
+		{
+			return classForTypeName(input_i.readUTF(),ReflectionUtils.class.getClassLoader());
+		}
+
+		private Class[]	readClasses(DataInput input_i) throws IOException, ClassNotFoundException
+		{
+			final Class[] classes = new Class[input_i.readInt()];
+			for (int i = 0; i < classes.length; ++i)
+			{
+				classes[i] = readClass(input_i);
+			}
+			return classes;
+		}
+	};
+
+
+
+	/**
+	*	Thrown by a matcher when several members match equally well, so that the method cache can
+	*	tell it from a missing method.
+	*/
+	private static final class AmbiguousMatchException extends NoSuchMethodException
+	{
+		private static final long serialVersionUID = 1;
+
+		AmbiguousMatchException(String message_i)
+		{
+			super(message_i);
+		}
+	}
+
+
+
+	/**
+	*	The field accessors of a class, by field name, one map for each way of looking a field up,
+	*	since the same name may find a different field, or none, in each.
+	*/
+	private static final class ClassFields
+	{
+		private final ConcurrentMap<String,FieldRef>	myPublicFields   = new ConcurrentHashMap<String,FieldRef>(4);
+		private final ConcurrentMap<String,FieldRef>	myDeclaredFields = new ConcurrentHashMap<String,FieldRef>(4);
+		private final ConcurrentMap<String,FieldRef>	myAnyFields      = new ConcurrentHashMap<String,FieldRef>(4);
+
+		ConcurrentMap<String,FieldRef>	of(FieldRef.Lookup lookup_i)
+		{
+			switch (lookup_i)
+			{
+				case PUBLIC:	return myPublicFields;
+				case DECLARED:	return myDeclaredFields;
+				default:		return myAnyFields;
+			}
+		}
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Remove from the method and constructor caches the lookups whose classes have been collected.
+	*	No lookup can find them any more, and a missing method, which is held strongly, would
+	*	otherwise stay until evicted.
+	*
+	***************************************************************************************************/
+	private static void	removeCollectedKeys()
+	{
+		for (MethodKey key = MethodKey.pollCollected(); key != null; key = MethodKey.pollCollected())
+		{
+			ourMethodCache.remove(key);
+			ourConstructorCache.remove(key);
+		}
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Throw the cause of a failed cache load, which is unchecked unless the loader was allowed
+	*	to throw it.
+	*
+	***************************************************************************************************/
+	private static RuntimeException	rethrowUnchecked(Throwable cause_i)
+	{
+		if (cause_i instanceof RuntimeException)
+		{
+			throw (RuntimeException)cause_i;
+		}
+		if (cause_i instanceof Error)
+		{
+			throw (Error)cause_i;
+		}
+		throw new IllegalStateException(cause_i);
+	}
 
 
 
@@ -995,6 +1644,38 @@ public class ReflectionUtils
 
 
 
+	/***************************************************************************************************
+	*
+	*	Invoke a method like {@link #invokeClassMethod}, but return <CODE>null</CODE> without
+	*	creating an exception when there is no such method.  Exceptions from the invocation itself
+	*	are still thrown.
+	*
+	***************************************************************************************************/
+	private static Object	invokeClassMethodWithoutThrowing(Class class_i, Object __object_i, String methodName_i, Object[] __methodParameters_i) throws InvocationTargetException,
+	                                                                                                                                                   IllegalAccessException
+	{
+		if (__methodParameters_i == null)
+		{
+			__methodParameters_i = new Object[0];
+		}
+
+		Method method = ReflectionUtils.findMethodThatBestMatches(class_i,methodName_i,ReflectionUtils.getParameterTypes(__methodParameters_i));
+		return (method != null) ? method.invoke(__object_i,__methodParameters_i) : null;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Stands in the method cache for a method found to be missing.  Never invoked.
+	*
+	***************************************************************************************************/
+	private static void	noSuchMethod()
+	{
+	}
+
+
+
 
 	/****************************************************************************************************/
 	public static void	main(String[] arguments_i)
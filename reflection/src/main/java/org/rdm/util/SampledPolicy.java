@@ -0,0 +1,254 @@
+/***************************************************************************************************
+*
+*	@(#)SampledPolicy.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.util.Arrays;
+
+
+/**
+*	Evicts an approximately least recently used node, chosen the way Redis does: a few nodes are
+*	picked at random and the one read longest ago goes.
+*
+*	No order is kept between the nodes.  A read only stamps the node with the policy's clock,
+*	which advances on every write to the segment, and it skips even that when the stamp is already
+*	current; readers therefore never take the lock nor move anything, and hot entries are read
+*	without any store at all.  The nodes are kept in an array for sampling, with each node holding
+*	its own index so that it can be removed by moving the last node into its place.  The index and
+*	the stamp are held by a node subclass that only this policy creates, which has no list links;
+*	it only has the links of the timer wheel when the entry may expire, which keeps the nodes of a
+*	cache without expiration smaller than those of the list policies.
+*/
+final class SampledPolicy<K,V> extends CachePolicy<K,V>
+{
+	/***************************************************************************************************/
+	SampledPolicy(long maximumWeight_i)
+	{
+		@SuppressWarnings("unchecked")
+		final SampledNode<K,V>[] nodes = new SampledNode[(int)Math.min(Math.max(maximumWeight_i,1),INITIAL_CAPACITY)];
+		myNodes = nodes;
+	}
+
+
+
+	/***************************************************************************************************/
+	CacheNode<K,V>	newNode(Object key_i, boolean timed_i)
+	{
+		return timed_i ? new TimedSampledNode<K,V>(key_i) : new SampledNode<K,V>(key_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	void	onInsert(CacheNode<K,V> node_i)
+	{
+		final SampledNode<K,V> node = (SampledNode<K,V>)node_i;
+		if (mySize == myNodes.length)
+		{
+			myNodes = Arrays.copyOf(myNodes,mySize * 2);
+		}
+		node.myIndex = mySize;
+		myNodes[mySize++] = node;
+		touch(node);
+	}
+
+
+
+	/***************************************************************************************************/
+	void	onAccess(CacheNode<K,V> node_i)
+	{
+		// never called, reads go to onRead()
+	}
+
+
+
+	/***************************************************************************************************/
+	void	onRead(CacheNode<K,V> node_i)
+	{
+		final SampledNode<K,V> node = (SampledNode<K,V>)node_i;
+		final int clock = myClock;
+		if (node.myAccessTime != clock)
+		{
+			node.myAccessTime = clock;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	boolean	ordersByAccess()
+	{
+		return false;
+	}
+
+
+
+	/***************************************************************************************************/
+	boolean	holds(CacheNode<K,V> node_i)
+	{
+		return ((SampledNode<K,V>)node_i).myIndex >= 0;
+	}
+
+
+
+	/***************************************************************************************************/
+	void	onUpdate(CacheNode<K,V> node_i, int previousWeight_i)
+	{
+		touch((SampledNode<K,V>)node_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	void	onRemove(CacheNode<K,V> node_i)
+	{
+		final SampledNode<K,V> node = (SampledNode<K,V>)node_i;
+		final int index = node.myIndex;
+		final SampledNode<K,V> last = myNodes[--mySize];
+		myNodes[index] = last;
+		last.myIndex   = index;
+		myNodes[mySize] = null;
+		node.myIndex    = -1;
+	}
+
+
+
+	/***************************************************************************************************/
+	CacheNode<K,V>	selectVictim()
+	{
+		final int clock = myClock;
+		SampledNode<K,V> victim = null;
+		int victimAge = -1;
+		for (int i = Math.min(SAMPLE_SIZE,mySize); i > 0; --i)
+		{
+			final SampledNode<K,V> node = myNodes[nextRandom(mySize)];
+			// the difference is right even after the clock wraps around
+			final int age = clock - node.myAccessTime;
+			if (age > victimAge)
+			{
+				victim    = node;
+				victimAge = age;
+			}
+		}
+		return victim;
+	}
+
+
+
+	/***************************************************************************************************/
+	void	clear()
+	{
+		for (int i = 0; i < mySize; ++i)
+		{
+			myNodes[i].myIndex = -1;
+			myNodes[i] = null;
+		}
+		mySize = 0;
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/** The number of nodes compared to find a victim; the default of Redis. */
+	private static final int	SAMPLE_SIZE = 5;
+	private static final int	INITIAL_CAPACITY = 16;
+
+
+	private SampledNode<K,V>[]	myNodes;
+	private int					mySize;
+	private volatile int		myClock;		// written only under the lock
+	private long				myRandom = System.nanoTime() | 1;
+
+
+
+	/**
+	*	A node with its place in the array (-1 once removed) and the clock when it was last read.
+	*/
+	private static class SampledNode<K,V> extends CacheNode<K,V>
+	{
+		SampledNode(Object key_i)
+		{
+			super(key_i,null);
+		}
+
+		int				myIndex = -1;
+		volatile int	myAccessTime;
+	}
+
+
+
+	/**
+	*	A node that may expire, with the links of the timer wheel.
+	*/
+	private static final class TimedSampledNode<K,V> extends SampledNode<K,V>
+	{
+		TimedSampledNode(Object key_i)
+		{
+			super(key_i);
+		}
+
+		boolean	isTimed()
+		{
+			return true;
+		}
+
+		CacheNode<K,V>	getPrevInWheel()
+		{
+			return myPrevInWheel;
+		}
+
+		CacheNode<K,V>	getNextInWheel()
+		{
+			return myNextInWheel;
+		}
+
+		void	setPrevInWheel(CacheNode<K,V> node_i)
+		{
+			myPrevInWheel = node_i;
+		}
+
+		void	setNextInWheel(CacheNode<K,V> node_i)
+		{
+			myNextInWheel = node_i;
+		}
+
+		private CacheNode<K,V>	myPrevInWheel;
+		private CacheNode<K,V>	myNextInWheel;
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	touch(SampledNode<K,V> node_i)
+	{
+		final int clock = myClock + 1;
+		myClock = clock;
+		node_i.myAccessTime = clock;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Return a pseudo-random number from zero up to a bound, from an xorshift generator.
+	*
+	***************************************************************************************************/
+	private int	nextRandom(int bound_i)
+	{
+		long random = myRandom;
+		random ^= (random << 13);
+		random ^= (random >>> 7);
+		random ^= (random << 17);
+		myRandom = random;
+		return (int)(((random >>> 33) * bound_i) >>> 31);
+	}
+
+}
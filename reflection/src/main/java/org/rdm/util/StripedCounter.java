@@ -0,0 +1,99 @@
+/***************************************************************************************************
+*
+*	@(#)StripedCounter.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+*	A counter that many threads may increment at once without contending on one memory location.
+*	Each thread adds into one of several cells, each on its own cache line; reading the counter
+*	sums the cells and is therefore only a moment-in-time estimate while updates are in flight.
+*/
+final class StripedCounter
+{
+	/***************************************************************************************************/
+	StripedCounter()
+	{
+		int stripes = 1;
+		while ((stripes < MAXIMUM_STRIPES) && (stripes < Runtime.getRuntime().availableProcessors() * 2))
+		{
+			stripes <<= 1;
+		}
+
+		myStripeMask = stripes - 1;
+		myCells      = new AtomicLongArray(stripes * CELL_PADDING);
+	}
+
+
+
+	/***************************************************************************************************/
+	void	increment()
+	{
+		add(1);
+	}
+
+
+
+	/***************************************************************************************************/
+	void	add(long delta_i)
+	{
+		myCells.getAndAdd(cellIndex(),delta_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	long	sum()
+	{
+		long sum = 0;
+		for (int i = 0; i < myCells.length(); i += CELL_PADDING)
+		{
+			sum += myCells.get(i);
+		}
+		return sum;
+	}
+
+
+
+	/***************************************************************************************************/
+	void	reset()
+	{
+		for (int i = 0; i < myCells.length(); i += CELL_PADDING)
+		{
+			myCells.set(i,0);
+		}
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/** One cell per 64-byte cache line, so neighbouring cells never share a line. */
+	private static final int	CELL_PADDING = 8;
+	private static final int	MAXIMUM_STRIPES = 64;
+
+
+	private final int				myStripeMask;
+	private final AtomicLongArray	myCells;
+
+
+
+	/***************************************************************************************************/
+	private int	cellIndex()
+	{
+		long id = Thread.currentThread().getId();
+		id ^= (id >>> 17);
+		id *= 0x9E3779B97F4A7C15L;
+		return ((int)(id >>> 32) & myStripeMask) * CELL_PADDING;
+	}
+
+}
@@ -0,0 +1,278 @@
+/***************************************************************************************************
+*
+*	@(#)TimerWheel.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+*	A hierarchical timer wheel that finds the cache entries whose expiration time has passed
+*	without looking at any of the others.
+*
+*	Each level of the wheel is an array of buckets, and each bucket covers a span of time that is
+*	a power of two in nanoseconds: about a second per bucket on the first level, a minute on the
+*	second, an hour on the third and a day on the fourth, with a single overflow bucket above
+*	them.  An entry is linked into the bucket of the finest level whose range still covers its
+*	expiration time.  Advancing the clock visits only the buckets whose span has passed; entries
+*	in them either expire or, when they belong to a later time (a coarse bucket, or an expiration
+*	time that was extended in the meantime), are linked into a finer bucket.  Scheduling,
+*	rescheduling and cancelling are O(1), and so is the amortized cost of expiring an entry.
+*
+*	Not thread safe; every method must be called under the owning segment's lock.
+*/
+final class TimerWheel<K,V>
+{
+	/**
+	*	Receives the entries whose time is up.
+	*/
+	interface Expirer<K,V>
+	{
+		void	expire(CacheNode<K,V> node_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	TimerWheel(Expirer<K,V> expirer_i)
+	{
+		myExpirer = expirer_i;
+
+		@SuppressWarnings("unchecked")
+		final CacheNode<K,V>[][] wheel = new CacheNode[BUCKETS.length][];
+		for (int i = 0; i < wheel.length; ++i)
+		{
+			@SuppressWarnings("unchecked")
+			final CacheNode<K,V>[] buckets = new CacheNode[BUCKETS[i]];
+			for (int j = 0; j < buckets.length; ++j)
+			{
+				final CacheNode<K,V> sentinel = new LinkedNode<K,V>(null);
+				sentinel.setPrevInWheel(sentinel);
+				sentinel.setNextInWheel(sentinel);
+				buckets[j] = sentinel;
+			}
+			wheel[i] = buckets;
+		}
+		myWheel = wheel;
+	}
+
+
+
+	/***************************************************************************************************/
+	boolean	isEmpty()
+	{
+		return myScheduledCount == 0;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Link a node into the bucket matching its expiration time.  Nodes that never expire are
+	*	ignored.
+	*
+	***************************************************************************************************/
+	void	schedule(CacheNode<K,V> node_i)
+	{
+		if (node_i.myExpirationTime == CacheNode.NEVER)
+		{
+			return;
+		}
+
+		final CacheNode<K,V> sentinel = findBucket(node_i.myExpirationTime);
+		node_i.setPrevInWheel(sentinel.getPrevInWheel());
+		node_i.setNextInWheel(sentinel);
+		sentinel.getPrevInWheel().setNextInWheel(node_i);
+		sentinel.setPrevInWheel(node_i);
+		++myScheduledCount;
+	}
+
+
+
+	/***************************************************************************************************/
+	void	reschedule(CacheNode<K,V> node_i)
+	{
+		deschedule(node_i);
+		schedule(node_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	void	deschedule(CacheNode<K,V> node_i)
+	{
+		if (node_i.getNextInWheel() == null)
+		{
+			return;
+		}
+
+		node_i.getNextInWheel().setPrevInWheel(node_i.getPrevInWheel());
+		node_i.getPrevInWheel().setNextInWheel(node_i.getNextInWheel());
+		node_i.setPrevInWheel(null);
+		node_i.setNextInWheel(null);
+		--myScheduledCount;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Move the wheel's clock forward, handing every node that has expired by then to the expirer.
+	*
+	*		@param	now_i					The current time, in nanoseconds since the cache was
+	*										created.  It never goes backwards.
+	*
+	***************************************************************************************************/
+	void	advance(long now_i)
+	{
+		final long previousTime = myTime;
+		myTime = now_i;
+
+		for (int i = 0; i < SHIFTS.length; ++i)
+		{
+			final long previousTicks = previousTime >>> SHIFTS[i];
+			final long currentTicks  = now_i >>> SHIFTS[i];
+			if (currentTicks <= previousTicks)
+			{
+				// coarser levels tick less often, so none of them has moved either
+				break;
+			}
+			expire(i,previousTicks,currentTicks - previousTicks);
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	void	clear()
+	{
+		for (int i = 0; i < myWheel.length; ++i)
+		{
+			for (int j = 0; j < myWheel[i].length; ++j)
+			{
+				final CacheNode<K,V> sentinel = myWheel[i][j];
+				for (CacheNode<K,V> node = sentinel.getNextInWheel(); node != sentinel;)
+				{
+					final CacheNode<K,V> next = node.getNextInWheel();
+					node.setPrevInWheel(null);
+					node.setNextInWheel(null);
+					node = next;
+				}
+				sentinel.setPrevInWheel(sentinel);
+				sentinel.setNextInWheel(sentinel);
+			}
+		}
+		myScheduledCount = 0;
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/** The number of buckets on each level of the wheel. */
+	private static final int[]	BUCKETS = { 64, 64, 32, 4, 1 };
+
+	/** The time covered by one bucket on each level, rounded up to a power of two. */
+	private static final long[]	SPANS =
+	{
+		ceilingPowerOfTwo(TimeUnit.SECONDS.toNanos(1)),		// 1.07 s
+		ceilingPowerOfTwo(TimeUnit.MINUTES.toNanos(1)),		// 1.14 m
+		ceilingPowerOfTwo(TimeUnit.HOURS.toNanos(1)),		// 1.22 h
+		ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)),		// 1.63 d
+		BUCKETS[3] * ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)),	// 6.5 d
+		BUCKETS[3] * ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)),	// 6.5 d
+	};
+
+	/** log2 of each level's span, to turn a time into a tick count. */
+	private static final long[]	SHIFTS =
+	{
+		Long.numberOfTrailingZeros(SPANS[0]),
+		Long.numberOfTrailingZeros(SPANS[1]),
+		Long.numberOfTrailingZeros(SPANS[2]),
+		Long.numberOfTrailingZeros(SPANS[3]),
+		Long.numberOfTrailingZeros(SPANS[4]),
+	};
+
+
+	private final Expirer<K,V>			myExpirer;
+	private final CacheNode<K,V>[][]	myWheel;
+	private long						myTime;
+	private int							myScheduledCount;
+
+
+
+	/***************************************************************************************************/
+	private static long	ceilingPowerOfTwo(long value_i)
+	{
+		return 1L << (64 - Long.numberOfLeadingZeros(value_i - 1));
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Visit the buckets of one level that the clock passed over, expiring or re-filing their nodes.
+	*
+	***************************************************************************************************/
+	private void	expire(int level_i, long previousTicks_i, long elapsedTicks_i)
+	{
+		final CacheNode<K,V>[] buckets = myWheel[level_i];
+		final int mask  = buckets.length - 1;
+		final int steps = (int)Math.min(1 + elapsedTicks_i,buckets.length);
+		final int start = (int)(previousTicks_i & mask);
+
+		for (int i = start; i < start + steps; ++i)
+		{
+			final CacheNode<K,V> sentinel = buckets[i & mask];
+
+			// detach the bucket's chain first, since re-filed nodes may land in the same bucket
+			CacheNode<K,V> node = sentinel.getNextInWheel();
+			sentinel.setPrevInWheel(sentinel);
+			sentinel.setNextInWheel(sentinel);
+
+			while (node != sentinel)
+			{
+				final CacheNode<K,V> next = node.getNextInWheel();
+				node.setPrevInWheel(null);
+				node.setNextInWheel(null);
+				--myScheduledCount;
+
+				if (node.myExpirationTime - myTime > 0)
+				{
+					schedule(node);
+				}
+				else
+				{
+					myExpirer.expire(node);
+				}
+				node = next;
+			}
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	private CacheNode<K,V>	findBucket(long time_i)
+	{
+		final long duration  = time_i - myTime;
+		final int  lastLevel = myWheel.length - 1;
+		for (int i = 0; i < lastLevel; ++i)
+		{
+			if (duration < SPANS[i + 1])
+			{
+				final long ticks = time_i >>> SHIFTS[i];
+				return myWheel[i][(int)(ticks & (myWheel[i].length - 1))];
+			}
+		}
+		return myWheel[lastLevel][0];
+	}
+
+}
@@ -0,0 +1,236 @@
+/***************************************************************************************************
+*
+*	@(#)WindowTinyLfuPolicy.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+/**
+*	The W-TinyLFU policy: a small LRU window in front of a main area whose admission is guarded by
+*	a {@link FrequencySketch}, which makes the cache resistant to scans of one-off keys.
+*
+*	New nodes enter the window, which takes about one percent of the segment's weight.  Nodes
+*	pushed out of the window move into the main area while it has room.  Once it is full, the
+*	node leaving the window (the candidate) must be used more often than the main area's next
+*	victim to be admitted; otherwise the candidate is evicted instead.  The main area is a
+*	segmented LRU: nodes start in the probation list and move to the protected list, which holds
+*	up to eighty percent of the main area, when they are read again.
+*/
+final class WindowTinyLfuPolicy<K,V> extends CachePolicy<K,V>
+{
+	/***************************************************************************************************/
+	WindowTinyLfuPolicy(long maximumWeight_i)
+	{
+		myWindowMaximum    = Math.max(1,(long)(maximumWeight_i * WINDOW_FRACTION));
+		myMainMaximum      = Math.max(0,maximumWeight_i - myWindowMaximum);
+		myProtectedMaximum = (long)(myMainMaximum * PROTECTED_FRACTION);
+		mySketch           = new FrequencySketch(Math.min(maximumWeight_i,INITIAL_SKETCH_SIZE));
+	}
+
+
+
+	/***************************************************************************************************/
+	void	onInsert(CacheNode<K,V> node_i)
+	{
+		final LinkedNode<K,V> node = (LinkedNode<K,V>)node_i;
+		++myNodeCount;
+		if (myNodeCount > mySketch.capacity())
+		{
+			mySketch.ensureCapacity(2L * myNodeCount);
+		}
+		mySketch.increment(node.myKey);
+
+		node.myQueue = WINDOW;
+		linkLast(myWindow,node);
+		myWindowWeight += node.myWeight;
+
+		// let the window overflow into the main area while that is not full
+		while ((myWindowWeight > myWindowMaximum) && (myWindow.myNext != myWindow))
+		{
+			final LinkedNode<K,V> candidate = myWindow.myNext;
+			if (myProbationWeight + myProtectedWeight + candidate.myWeight > myMainMaximum)
+			{
+				break;
+			}
+			moveToProbation(candidate);
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	void	onAccess(CacheNode<K,V> node_i)
+	{
+		final LinkedNode<K,V> node = (LinkedNode<K,V>)node_i;
+		mySketch.increment(node.myKey);
+
+		switch (node.myQueue)
+		{
+			case WINDOW:
+					moveToLast(myWindow,node);
+					break;
+
+			case PROBATION:
+					unlink(node);
+					myProbationWeight -= node.myWeight;
+					node.myQueue = PROTECTED;
+					linkLast(myProtected,node);
+					myProtectedWeight += node.myWeight;
+					demoteProtectedOverflow();
+					break;
+
+			default:
+					moveToLast(myProtected,node);
+					break;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	void	onUpdate(CacheNode<K,V> node_i, int previousWeight_i)
+	{
+		final int delta = node_i.myWeight - previousWeight_i;
+		switch (((LinkedNode<K,V>)node_i).myQueue)
+		{
+			case WINDOW:	myWindowWeight    += delta;	break;
+			case PROBATION:	myProbationWeight += delta;	break;
+			default:		myProtectedWeight += delta;	break;
+		}
+		onAccess(node_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	void	onRemove(CacheNode<K,V> node_i)
+	{
+		final LinkedNode<K,V> node = (LinkedNode<K,V>)node_i;
+		--myNodeCount;
+		unlink(node);
+		switch (node.myQueue)
+		{
+			case WINDOW:	myWindowWeight    -= node.myWeight;	break;
+			case PROBATION:	myProbationWeight -= node.myWeight;	break;
+			default:		myProtectedWeight -= node.myWeight;	break;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	CacheNode<K,V>	selectVictim()
+	{
+		final LinkedNode<K,V> candidate = (myWindowWeight > myWindowMaximum) ? myWindow.myNext : null;
+		final LinkedNode<K,V> victim    = mainVictim();
+
+		if ((candidate == null) || (candidate == myWindow))
+		{
+			return (victim != null) ? victim : myWindow.myNext;
+		}
+		if (victim == null)
+		{
+			return candidate;
+		}
+
+		// TinyLFU admission: the more frequently used of the two stays
+		if (mySketch.frequency(candidate.myKey) > mySketch.frequency(victim.myKey))
+		{
+			moveToProbation(candidate);
+			return victim;
+		}
+		return candidate;
+	}
+
+
+
+	/***************************************************************************************************/
+	void	clear()
+	{
+		clearList(myWindow);
+		clearList(myProbation);
+		clearList(myProtected);
+		myWindowWeight    = 0;
+		myProbationWeight = 0;
+		myProtectedWeight = 0;
+		myNodeCount       = 0;
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	static final byte	WINDOW    = 0;
+	static final byte	PROBATION = 1;
+	static final byte	PROTECTED = 2;
+
+	private static final double	WINDOW_FRACTION    = 0.01;
+	private static final double	PROTECTED_FRACTION = 0.80;
+	private static final long	INITIAL_SKETCH_SIZE = 1 << 10;
+
+
+	private final long				myWindowMaximum;
+	private final long				myMainMaximum;
+	private final long				myProtectedMaximum;
+	private final FrequencySketch	mySketch;
+
+	// each list is circular around a sentinel, with its eldest node first
+	private final LinkedNode<K,V>	myWindow    = newListHead();
+	private final LinkedNode<K,V>	myProbation = newListHead();
+	private final LinkedNode<K,V>	myProtected = newListHead();
+
+	private long	myWindowWeight;
+	private long	myProbationWeight;
+	private long	myProtectedWeight;
+	private int		myNodeCount;
+
+
+
+	/***************************************************************************************************/
+	private LinkedNode<K,V>	mainVictim()
+	{
+		if (myProbation.myNext != myProbation)
+		{
+			return myProbation.myNext;
+		}
+		if (myProtected.myNext != myProtected)
+		{
+			return myProtected.myNext;
+		}
+		return null;
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	moveToProbation(LinkedNode<K,V> node_i)
+	{
+		unlink(node_i);
+		myWindowWeight -= node_i.myWeight;
+		node_i.myQueue = PROBATION;
+		linkLast(myProbation,node_i);
+		myProbationWeight += node_i.myWeight;
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	demoteProtectedOverflow()
+	{
+		while ((myProtectedWeight > myProtectedMaximum) && (myProtected.myNext != myProtected))
+		{
+			final LinkedNode<K,V> demoted = myProtected.myNext;
+			unlink(demoted);
+			myProtectedWeight -= demoted.myWeight;
+			demoted.myQueue = PROBATION;
+			linkLast(myProbation,demoted);
+			myProbationWeight += demoted.myWeight;
+		}
+	}
+
+}
@@ -0,0 +1,265 @@
+/***************************************************************************************************
+*
+*	@(#)ConstructorMatcherTest.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.lang.reflect.Constructor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+
+/**
+*	Checks that {@link ReflectionUtils#getConstructorThatBestMatches} picks among overloaded
+*	constructors an exact match first, or else the most specific of the constructors that take
+*	the values boxed, unboxed or widened, a <CODE>null</CODE> value passing for any object.
+*/
+public class ConstructorMatcherTest
+{
+	/** Overloads taking numbers. */
+	public static final class Numbers
+	{
+		public Numbers()
+		{
+			myChosen = "()";
+		}
+
+		public Numbers(int value_i)
+		{
+			myChosen = "(int)";
+		}
+
+		public Numbers(long value_i)
+		{
+			myChosen = "(long)";
+		}
+
+		public Numbers(double value_i)
+		{
+			myChosen = "(double)";
+		}
+
+		final String	myChosen;
+	}
+
+
+
+	/** Overloads taking objects. */
+	public static final class Texts
+	{
+		public Texts(Object value_i)
+		{
+			myChosen = "(Object)";
+		}
+
+		public Texts(CharSequence value_i)
+		{
+			myChosen = "(CharSequence)";
+		}
+
+		public Texts(String text_i, int count_i)
+		{
+			myChosen = "(String,int)";
+		}
+
+		public Texts(String first_i, CharSequence second_i)
+		{
+			myChosen = "(String,CharSequence)";
+		}
+
+		public Texts(CharSequence first_i, String second_i)
+		{
+			myChosen = "(CharSequence,String)";
+		}
+
+		final String	myChosen;
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	exactMatchWins()
+	{
+		assertChosen("()",Numbers.class);
+		assertChosen("()",Numbers.class,(Class[])null);
+		assertChosen("(int)",Numbers.class,int.class);
+		assertChosen("(long)",Numbers.class,long.class);
+		assertChosen("(double)",Numbers.class,double.class);
+		assertChosen("(Object)",Texts.class,Object.class);
+		assertChosen("(CharSequence)",Texts.class,CharSequence.class);
+		assertChosen("(String,int)",Texts.class,String.class,int.class);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	boxedValueMatchesPrimitive()
+	{
+		assertChosen("(int)",Numbers.class,Integer.class);
+		assertChosen("(long)",Numbers.class,Long.class);
+		assertChosen("(double)",Numbers.class,Double.class);
+		assertChosen("(String,int)",Texts.class,String.class,Integer.class);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	narrowerValueMatchesMostSpecificWidening()
+	{
+		assertChosen("(int)",Numbers.class,short.class);
+		assertChosen("(int)",Numbers.class,Byte.class);
+		assertChosen("(int)",Numbers.class,char.class);
+		assertChosen("(double)",Numbers.class,float.class);
+		assertChosen("(double)",Numbers.class,Float.class);
+
+		// and never narrows, nor turns a boolean into a number
+		assertNoMatch(Numbers.class,boolean.class);
+		assertNoMatch(Numbers.class,Boolean.class);
+		assertNoMatch(Numbers.class,String.class);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	subclassMatchesMostSpecificSuperType()
+	{
+		assertChosen("(CharSequence)",Texts.class,String.class);
+		assertChosen("(CharSequence)",Texts.class,StringBuilder.class);
+		assertChosen("(Object)",Texts.class,Integer.class);
+		assertChosen("(String,CharSequence)",Texts.class,String.class,StringBuilder.class);
+		assertChosen("(CharSequence,String)",Texts.class,StringBuilder.class,String.class);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	nullMatchesAnyObject() throws Exception
+	{
+		// the type of a null value is void
+		assertEquals(Void.TYPE,ReflectionUtils.getParameterTypes(new Object[] { null })[0]);
+
+		assertChosen("(CharSequence)",Texts.class,Void.TYPE);
+		assertChosen("(CharSequence,String)",Texts.class,StringBuilder.class,Void.TYPE);
+		assertChosen("(String,int)",Texts.class,Void.TYPE,int.class);
+		assertNoMatch(Numbers.class,Void.TYPE);
+
+		final Texts texts = (Texts)ReflectionUtils.instantiateClass(Texts.class,new Object[] { null });
+		assertEquals("(CharSequence)",texts.myChosen);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	ambiguousMatchIsRejected()
+	{
+		assertNoMatch(Texts.class,String.class,String.class);
+		assertNoMatch(Texts.class,String.class,Void.TYPE);
+		assertNoMatch(Texts.class,Void.TYPE,Void.TYPE);
+
+		// every time, since it is not cached
+		assertNoMatch(Texts.class,String.class,String.class);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	matchIsCachedPerSignature() throws NoSuchMethodException
+	{
+		final Constructor first = ReflectionUtils.getConstructorThatBestMatches(Numbers.class,new Class[] { Integer.class });
+		assertSame(first,ReflectionUtils.getConstructorThatBestMatches(Numbers.class,new Class[] { Integer.class }));
+		assertSame(ReflectionUtils.getConstructorMatcherFor(Numbers.class),ReflectionUtils.getConstructorMatcherFor(Numbers.class));
+
+		// the types of another signature are matched anew
+		final Constructor other = ReflectionUtils.getConstructorThatBestMatches(Numbers.class,new Class[] { Long.class });
+		assertEquals(long.class,other.getParameterTypes()[0]);
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/***************************************************************************************************
+	*
+	*	Describe the constructor matched for the types, as the object it creates describes it.
+	*
+	***************************************************************************************************/
+	private static String	chosen(Class class_i, Class... __types_i)
+	{
+		try
+		{
+			final Constructor constructor = ReflectionUtils.getConstructorThatBestMatches(class_i,__types_i);
+			final Object[] arguments = new Object[constructor.getParameterTypes().length];
+			for (int i = 0; i < arguments.length; ++i)
+			{
+				arguments[i] = defaultValueOf(constructor.getParameterTypes()[i]);
+			}
+			final Object object = constructor.newInstance(arguments);
+			return (object instanceof Numbers) ? ((Numbers)object).myChosen : ((Texts)object).myChosen;
+		}
+		catch (Exception e)
+		{
+			throw new AssertionError(e);
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	private static Object	defaultValueOf(Class type_i)
+	{
+		if (type_i == int.class)
+		{
+			return Integer.valueOf(0);
+		}
+		if (type_i == long.class)
+		{
+			return Long.valueOf(0);
+		}
+		if (type_i == double.class)
+		{
+			return Double.valueOf(0);
+		}
+		return null;
+	}
+
+
+
+	/***************************************************************************************************/
+	private static void	assertChosen(String expected_i, Class class_i, Class... __types_i)
+	{
+		assertEquals(expected_i,chosen(class_i,__types_i));
+	}
+
+
+
+	/***************************************************************************************************/
+	private static void	assertNoMatch(Class class_i, Class... types_i)
+	{
+		try
+		{
+			ReflectionUtils.getConstructorThatBestMatches(class_i,types_i);
+			fail("matched " + class_i.getSimpleName() + ArrayUtils.toString(types_i,"(",",",")"));
+		}
+		catch (NoSuchMethodException expected)
+		{
+		}
+	}
+
+}
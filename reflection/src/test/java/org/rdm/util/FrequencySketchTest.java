@@ -0,0 +1,121 @@
+/***************************************************************************************************
+*
+*	@(#)FrequencySketchTest.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+*	Checks the counting and aging of a {@link FrequencySketch}.
+*/
+public class FrequencySketchTest
+{
+	/***************************************************************************************************/
+	@Test
+	public void	countsUpToFifteen()
+	{
+		final FrequencySketch sketch = new FrequencySketch(1024);
+		final Object key = "key";
+		for (int i = 1; i <= 20; ++i)
+		{
+			sketch.increment(key);
+			assertEquals(Math.min(i,15),sketch.frequency(key));
+		}
+		assertEquals(0,sketch.frequency("other"));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	halvesCountsWhenSampleIsComplete()
+	{
+		final FrequencySketch sketch = new FrequencySketch(SIZE);
+		final Object hot  = "hot";
+		final Object warm = "warm";
+		for (int i = 0; i < 15; ++i)
+		{
+			sketch.increment(hot);
+		}
+		for (int i = 0; i < 6; ++i)
+		{
+			sketch.increment(warm);
+		}
+
+		// one-off keys fill the sample: ten times the size, less the counts above
+		int increments = 0;
+		int warmBefore = sketch.frequency(warm);
+		while (sketch.frequency(hot) == 15)
+		{
+			warmBefore = sketch.frequency(warm);
+			sketch.increment(Integer.valueOf(increments++));
+			assertTrue("never reset",increments <= 10 * SIZE);
+		}
+
+		assertEquals(7,sketch.frequency(hot));
+		// the one-off key counted just before the reset may share a counter with warm
+		final int warmAfter = sketch.frequency(warm);
+		assertTrue(warmBefore + " -> " + warmAfter,(warmAfter == warmBefore / 2) || (warmAfter == (warmBefore + 1) / 2));
+		assertTrue(Integer.toString(increments),increments > 10 * SIZE - 15 - 6 - 1);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	keepsHalvingIdleKeys()
+	{
+		final FrequencySketch sketch = new FrequencySketch(SIZE);
+		final Object hot = "hot";
+		for (int i = 0; i < 15; ++i)
+		{
+			sketch.increment(hot);
+		}
+
+		// four halvings take 15 down to 0; the one-off keys sharing its counters add a little
+		for (int i = 0; i < 4 * 10 * SIZE; ++i)
+		{
+			sketch.increment(Integer.valueOf(i));
+		}
+		assertTrue(Integer.toString(sketch.frequency(hot)),sketch.frequency(hot) <= 3);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	growsToPowerOfTwoAndForgets()
+	{
+		final FrequencySketch sketch = new FrequencySketch(100);
+		assertEquals(128,sketch.capacity());
+		sketch.increment("key");
+		assertEquals(1,sketch.frequency("key"));
+
+		sketch.ensureCapacity(64);
+		assertEquals(128,sketch.capacity());
+		assertEquals(1,sketch.frequency("key"));
+
+		sketch.ensureCapacity(1000);
+		assertEquals(1024,sketch.capacity());
+		assertEquals(0,sketch.frequency("key"));
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/** Large enough for the few keys counted to rarely share a counter. */
+	private static final int	SIZE = 1024;
+
+}
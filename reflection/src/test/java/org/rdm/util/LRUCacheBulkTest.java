@@ -0,0 +1,225 @@
+/***************************************************************************************************
+*
+*	@(#)LRUCacheBulkTest.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+
+/**
+*	Checks {@link LRUCache#putAll} and {@link LRUCache#getAll} over a cache striped into many
+*	segments, so that every batch spans several of them.
+*/
+public class LRUCacheBulkTest
+{
+	/***************************************************************************************************/
+	@Before
+	public void	setUp()
+	{
+		myCache = new LRUCache<Integer,String>(CAPACITY,SEGMENTS);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	putAllStoresEveryEntry()
+	{
+		myCache.putAll(values(0,KEYS));
+		assertEquals(KEYS,myCache.usedEntries());
+		for (int key = 0; key < KEYS; ++key)
+		{
+			assertEquals(Integer.toString(key),myCache.get(Integer.valueOf(key)));
+		}
+
+		// and replaces what was there
+		final Map<Integer,String> replacements = new HashMap<Integer,String>();
+		for (int key = 0; key < KEYS; key += 2)
+		{
+			replacements.put(Integer.valueOf(key),"new");
+		}
+		myCache.putAll(replacements);
+		assertEquals(KEYS,myCache.usedEntries());
+		for (int key = 0; key < KEYS; ++key)
+		{
+			assertEquals(((key % 2) == 0) ? "new" : Integer.toString(key),myCache.get(Integer.valueOf(key)));
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	getAllLoadsOnlyMissingKeys() throws ExecutionException
+	{
+		myCache.putAll(values(0,KEYS / 2));
+		final RecordingLoader loader = new RecordingLoader();
+		final List<Integer> keys = keys(0,KEYS);
+
+		final Map<Integer,String> found = myCache.getAll(keys,loader);
+		assertEquals(1,loader.myRequests.size());
+		assertEquals(new ArrayList<Integer>(keys(KEYS / 2,KEYS)),new ArrayList<Integer>(loader.myRequests.get(0)));
+		assertEquals(keys,new ArrayList<Integer>(found.keySet()));
+		for (int key = 0; key < KEYS; ++key)
+		{
+			assertEquals(Integer.toString(key),found.get(Integer.valueOf(key)));
+			assertEquals(Integer.toString(key),myCache.get(Integer.valueOf(key)));
+		}
+
+		// now every key hits
+		assertEquals(found,myCache.getAll(keys,loader));
+		assertEquals(1,loader.myRequests.size());
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	getAllReturnsKeysOnceInRequestOrder() throws ExecutionException
+	{
+		myCache.putAll(values(0,10));
+		final List<Integer> keys = Arrays.asList(7,3,7,12,3,0,12);
+		final RecordingLoader loader = new RecordingLoader();
+
+		final Map<Integer,String> found = myCache.getAll(keys,loader);
+		assertEquals(Arrays.asList(7,3,12,0),new ArrayList<Integer>(found.keySet()));
+		assertEquals(Arrays.asList(12),new ArrayList<Integer>(loader.myRequests.get(0)));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	getAllLeavesOutKeysWithoutValue() throws ExecutionException
+	{
+		final Map<Integer,String> found = myCache.getAll(keys(0,10),new LRUCache.BulkLoader<Integer,String>()
+		{
+			public Map<Integer,String>	loadAll(Set<Integer> keys_i)
+			{
+				// odd keys have no value; an extra key is stored as well
+				final Map<Integer,String> values = new HashMap<Integer,String>();
+				for (Integer key : keys_i)
+				{
+					values.put(key,((key.intValue() % 2) == 0) ? key.toString() : null);
+				}
+				values.put(Integer.valueOf(100),"extra");
+				return values;
+			}
+		});
+
+		assertEquals(Arrays.asList(0,2,4,6,8),new ArrayList<Integer>(found.keySet()));
+		assertNull(myCache.get(Integer.valueOf(1)));
+		assertEquals("extra",myCache.get(Integer.valueOf(100)));
+		assertEquals(6,myCache.usedEntries());
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	getAllFailureStoresNothing()
+	{
+		myCache.putAll(values(0,5));
+		final IOException failure = new IOException();
+		try
+		{
+			myCache.getAll(keys(0,10),new LRUCache.BulkLoader<Integer,String>()
+			{
+				public Map<Integer,String>	loadAll(Set<Integer> keys_i) throws IOException
+				{
+					throw failure;
+				}
+			});
+			fail();
+		}
+		catch (ExecutionException e)
+		{
+			assertSame(failure,e.getCause());
+		}
+		assertEquals(5,myCache.usedEntries());
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static final int	SEGMENTS = 16;
+	private static final int	KEYS = 1000;
+
+	/** Enough room for every key in every segment, so that nothing is evicted. */
+	private static final int	CAPACITY = SEGMENTS * KEYS;
+
+
+	private LRUCache<Integer,String>	myCache;
+
+
+
+	/**
+	*	Loads the string of each key, and records the keys it is asked for.
+	*/
+	private static final class RecordingLoader implements LRUCache.BulkLoader<Integer,String>
+	{
+		public Map<Integer,String>	loadAll(Set<Integer> keys_i)
+		{
+			myRequests.add(keys_i);
+			final Map<Integer,String> values = new LinkedHashMap<Integer,String>();
+			for (Integer key : keys_i)
+			{
+				values.put(key,key.toString());
+			}
+			return values;
+		}
+
+		final List<Set<Integer>>	myRequests = new ArrayList<Set<Integer>>();
+	}
+
+
+
+	/***************************************************************************************************/
+	private static List<Integer>	keys(int from_i, int to_i)
+	{
+		final List<Integer> keys = new ArrayList<Integer>();
+		for (int key = from_i; key < to_i; ++key)
+		{
+			keys.add(Integer.valueOf(key));
+		}
+		return keys;
+	}
+
+
+
+	/***************************************************************************************************/
+	private static Map<Integer,String>	values(int from_i, int to_i)
+	{
+		final Map<Integer,String> values = new LinkedHashMap<Integer,String>();
+		for (int key = from_i; key < to_i; ++key)
+		{
+			values.put(Integer.valueOf(key),Integer.toString(key));
+		}
+		return values;
+	}
+
+}
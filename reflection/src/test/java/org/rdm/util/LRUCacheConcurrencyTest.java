@@ -0,0 +1,238 @@
+/***************************************************************************************************
+*
+*	@(#)LRUCacheConcurrencyTest.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+*	Checks a striped {@link LRUCache} under threads that put, read, evict and remove at once, with
+*	every eviction policy: the cache holds no more than its maximum once the writes are done, and
+*	every entry stored is either still held or was reported to the removal listener, exactly once.
+*	The concurrency level is also the segment count, since the capacity allows it.
+*/
+public class LRUCacheConcurrencyTest
+{
+	/***************************************************************************************************/
+	@Test
+	public void	staysWithinMaximumSize() throws Throwable
+	{
+		for (LRUCache.Policy policy : LRUCache.Policy.values())
+		{
+			final LRUCache<Integer,Integer> cache = new LRUCache.Builder<Integer,Integer>().maximumSize(CAPACITY).concurrencyLevel(THREADS).policy(policy).build();
+			final AtomicInteger largest = new AtomicInteger();
+
+			run(new Task()
+			{
+				public void	run(int thread_i)
+				{
+					for (int i = 0; i < OPERATIONS; ++i)
+					{
+						final Integer key = Integer.valueOf((i * 31 + thread_i * 7919) % (4 * CAPACITY));
+						switch (i % 8)
+						{
+							case 0:		cache.remove(key);				break;
+							case 1:
+							case 2:		cache.put(key,key);				break;
+							default:	checkValue(key,cache.get(key));	break;
+						}
+						if ((i % 64) == 0)
+						{
+							largest.set(Math.max(largest.get(),cache.usedEntries()));
+						}
+					}
+				}
+			});
+
+			// a segment stores the new entry before evicting, so one more per segment may be seen
+			assertTrue(policy + ": " + largest.get(),largest.get() <= CAPACITY + THREADS);
+			assertTrue(policy + ": " + cache.usedEntries(),cache.usedEntries() <= CAPACITY);
+			assertEquals(policy.toString(),cache.usedEntries(),cache.weightedSize());
+			assertEquals(policy.toString(),cache.usedEntries(),cache.toMap().size());
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	losesNoEntryBelowMaximumSize() throws Throwable
+	{
+		for (LRUCache.Policy policy : LRUCache.Policy.values())
+		{
+			// twice the room needed, since the keys spread over the segments only about evenly
+			final LRUCache<Integer,Integer> cache = new LRUCache.Builder<Integer,Integer>().maximumSize(2 * THREADS * KEYS_PER_THREAD).concurrencyLevel(THREADS).policy(policy).build();
+
+			run(new Task()
+			{
+				public void	run(int thread_i)
+				{
+					for (int i = 0; i < KEYS_PER_THREAD; ++i)
+					{
+						final Integer key = Integer.valueOf(thread_i * KEYS_PER_THREAD + i);
+						cache.put(key,key);
+						// a write is seen at once by the thread that made it
+						assertEquals(key,cache.get(key));
+					}
+				}
+			});
+
+			assertEquals(policy.toString(),THREADS * KEYS_PER_THREAD,cache.usedEntries());
+			for (int key = 0; key < THREADS * KEYS_PER_THREAD; ++key)
+			{
+				assertEquals(policy.toString(),Integer.valueOf(key),cache.get(Integer.valueOf(key)));
+			}
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	reportsEveryEvictedEntryOnce() throws Throwable
+	{
+		for (LRUCache.Policy policy : LRUCache.Policy.values())
+		{
+			final Map<Integer,LRUCache.RemovalCause> removed = new ConcurrentHashMap<Integer,LRUCache.RemovalCause>();
+			final AtomicReference<Integer> twice = new AtomicReference<Integer>();
+			final LRUCache<Integer,Integer> cache = new LRUCache.Builder<Integer,Integer>()
+				.maximumSize(CAPACITY)
+				.concurrencyLevel(THREADS)
+				.policy(policy)
+				.removalListener(new LRUCache.RemovalListener<Integer,Integer>()
+				{
+					public void	onRemoval(Integer key_i, Integer value_i, LRUCache.RemovalCause cause_i)
+					{
+						if (removed.put(key_i,cause_i) != null)
+						{
+							twice.set(key_i);
+						}
+					}
+				})
+				.build();
+
+			// every thread stores keys of its own, each once, so that nothing is replaced
+			run(new Task()
+			{
+				public void	run(int thread_i)
+				{
+					for (int i = 0; i < KEYS_PER_THREAD; ++i)
+					{
+						final Integer key = Integer.valueOf(thread_i * KEYS_PER_THREAD + i);
+						cache.put(key,key);
+						cache.get(Integer.valueOf(thread_i * KEYS_PER_THREAD + i / 2));
+					}
+				}
+			});
+
+			assertNull(policy + ": removed twice",twice.get());
+			for (int key = 0; key < THREADS * KEYS_PER_THREAD; ++key)
+			{
+				final LRUCache.RemovalCause cause = removed.get(Integer.valueOf(key));
+				final boolean held = cache.containsKey(Integer.valueOf(key));
+				assertTrue(policy + ": key " + key + " held " + held + ", removed " + cause,held != (cause != null));
+				assertTrue(policy + ": " + cause,(cause == null) || (cause == LRUCache.RemovalCause.SIZE));
+			}
+			assertEquals(policy.toString(),THREADS * KEYS_PER_THREAD,cache.usedEntries() + removed.size());
+			assertEquals(policy.toString(),CAPACITY,cache.usedEntries());
+		}
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static final int	THREADS = 8;
+	private static final int	CAPACITY = 1024;
+	private static final int	OPERATIONS = 200000;
+	private static final int	KEYS_PER_THREAD = 4096;
+
+
+
+	/**
+	*	The work of one of the threads started by {@link #run}.
+	*/
+	private interface Task
+	{
+		void	run(int thread_i);
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Run a task on several threads started together, and rethrow the first failure of any of
+	*	them.
+	*
+	***************************************************************************************************/
+	private static void	run(final Task task_i) throws Throwable
+	{
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < THREADS; ++i)
+		{
+			final int thread = i;
+			threads.add(new Thread()
+			{
+				public void	run()
+				{
+					try
+					{
+						start.await();
+						task_i.run(thread);
+					}
+					catch (Throwable e)
+					{
+						failure.compareAndSet(null,e);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads)
+		{
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		if (failure.get() != null)
+		{
+			throw failure.get();
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	private static void	checkValue(Integer key_i, Integer __value_i)
+	{
+		if ((__value_i != null) && !__value_i.equals(key_i))
+		{
+			throw new AssertionError("key " + key_i + " holds " + __value_i);
+		}
+	}
+
+}
@@ -0,0 +1,337 @@
+/***************************************************************************************************
+*
+*	@(#)LRUCacheExpirationTest.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+*	Checks the expiration of {@link LRUCache} entries against a ticker moved by hand: after write,
+*	after access, with a time to live per entry, and as found by the timer wheel across all of its
+*	levels.
+*/
+public class LRUCacheExpirationTest
+{
+	/***************************************************************************************************/
+	@Before
+	public void	setUp()
+	{
+		myTicker   = new FakeTicker();
+		myRemovals = new HashMap<String,Long>();
+		myCauses   = new HashMap<String,LRUCache.RemovalCause>();
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	expiresAfterWriteDespiteReads()
+	{
+		final LRUCache<String,String> cache = newBuilder(LRUCache.Policy.LRU).expireAfterWrite(10,TimeUnit.SECONDS).build();
+		cache.put("a","1");
+
+		for (int i = 0; i < 9; ++i)
+		{
+			myTicker.advance(1,TimeUnit.SECONDS);
+			assertEquals("1",cache.get("a"));
+		}
+		myTicker.advance(1,TimeUnit.SECONDS);
+		assertNull(cache.get("a"));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	expiresAfterWriteFromLastWrite()
+	{
+		final LRUCache<String,String> cache = newBuilder(LRUCache.Policy.LRU).expireAfterWrite(10,TimeUnit.SECONDS).build();
+		cache.put("a","1");
+		myTicker.advance(8,TimeUnit.SECONDS);
+		cache.put("a","2");
+		myTicker.advance(8,TimeUnit.SECONDS);
+		assertEquals("2",cache.get("a"));
+		myTicker.advance(2,TimeUnit.SECONDS);
+		assertNull(cache.get("a"));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	expiresAfterAccessOnlyWhenIdle()
+	{
+		final LRUCache<String,String> cache = newBuilder(LRUCache.Policy.LRU).expireAfterAccess(10,TimeUnit.SECONDS).build();
+		cache.put("a","1");
+
+		// read well past the idle time, but never idle for that long
+		for (int i = 0; i < 10; ++i)
+		{
+			myTicker.advance(6,TimeUnit.SECONDS);
+			assertEquals("1",cache.get("a"));
+		}
+		myTicker.advance(10,TimeUnit.SECONDS);
+		assertNull(cache.get("a"));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	expiresAfterAccessNoLaterThanAfterWrite()
+	{
+		final LRUCache<String,String> cache = newBuilder(LRUCache.Policy.LRU).expireAfterAccess(10,TimeUnit.SECONDS).expireAfterWrite(25,TimeUnit.SECONDS).build();
+		cache.put("a","1");
+		for (int i = 0; i < 4; ++i)
+		{
+			myTicker.advance(6,TimeUnit.SECONDS);
+			assertEquals("1",cache.get("a"));
+		}
+		myTicker.advance(1,TimeUnit.SECONDS);
+		assertNull(cache.get("a"));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	expiresEntryAfterItsTimeToLive()
+	{
+		for (LRUCache.Policy policy : LRUCache.Policy.values())
+		{
+			setUp();
+			// without any expiration of its own, so that SAMPLED gives a timed node to the entry
+			final LRUCache<String,String> cache = newBuilder(policy).build();
+			cache.put("short","1");
+			cache.put("short","2",5,TimeUnit.SECONDS);
+			cache.put("long","3",1,TimeUnit.MINUTES);
+			cache.put("forever","4");
+			assertEquals(policy.toString(),LRUCache.RemovalCause.REPLACED,myCauses.get("short"));
+
+			myTicker.advance(4,TimeUnit.SECONDS);
+			assertEquals(policy.toString(),"2",cache.get("short"));
+			myTicker.advance(1,TimeUnit.SECONDS);
+			cache.cleanUp();
+			assertEquals(policy.toString(),LRUCache.RemovalCause.EXPIRED,myCauses.get("short"));
+			assertNull(policy.toString(),cache.get("short"));
+			assertEquals(policy.toString(),"3",cache.get("long"));
+
+			myTicker.advance(1,TimeUnit.DAYS);
+			assertNull(policy.toString(),cache.get("long"));
+			assertEquals(policy.toString(),"4",cache.get("forever"));
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	timeToLiveIsNotExtendedByAccess()
+	{
+		final LRUCache<String,String> cache = newBuilder(LRUCache.Policy.LRU).expireAfterAccess(10,TimeUnit.SECONDS).build();
+		cache.put("a","1",5,TimeUnit.SECONDS);
+		cache.put("b","2");
+		for (int i = 0; i < 4; ++i)
+		{
+			myTicker.advance(1,TimeUnit.SECONDS);
+			assertEquals("1",cache.get("a"));
+		}
+		myTicker.advance(1,TimeUnit.SECONDS);
+		assertNull(cache.get("a"));
+
+		// a later put without a time to live returns to the cache's own setting
+		cache.put("a","3");
+		myTicker.advance(9,TimeUnit.SECONDS);
+		assertEquals("3",cache.get("a"));
+		assertNull(cache.get("b"));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	sweepFindsEntriesOnEveryLevel()
+	{
+		final LRUCache<String,String> cache = newBuilder(LRUCache.Policy.LRU).build();
+		final long[] timesToLive = timesToLive();
+		for (int i = 0; i < timesToLive.length; ++i)
+		{
+			cache.put(Long.toString(timesToLive[i]),"v",timesToLive[i],TimeUnit.NANOSECONDS);
+		}
+
+		// sweep with cleanUp() alone, in steps that grow with the elapsed time
+		final long start = myTicker.myTime;
+		final long end   = TimeUnit.DAYS.toNanos(12);
+		while (myTicker.myTime - start < end)
+		{
+			final long elapsed = myTicker.myTime - start;
+			final long step = (elapsed < TimeUnit.MINUTES.toNanos(5)) ? TimeUnit.MILLISECONDS.toNanos(250) : (elapsed < TimeUnit.HOURS.toNanos(3)) ? TimeUnit.SECONDS.toNanos(15) : TimeUnit.MINUTES.toNanos(10);
+			myTicker.myTime += step;
+			cache.cleanUp();
+
+			for (int i = 0; i < timesToLive.length; ++i)
+			{
+				final String key = Long.toString(timesToLive[i]);
+				final Long removal = myRemovals.get(key);
+				if (removal == null)
+				{
+					// found no later than the step after the finest bucket holding its time has passed
+					assertTrue(key + " held at " + (myTicker.myTime - start),myTicker.myTime - start < timesToLive[i] + WHEEL_RESOLUTION + step);
+				}
+				else
+				{
+					assertTrue(key + " removed at " + (removal - start),removal - start >= timesToLive[i]);
+				}
+			}
+		}
+
+		assertEquals(0,cache.usedEntries());
+		for (int i = 0; i < timesToLive.length; ++i)
+		{
+			assertEquals(LRUCache.RemovalCause.EXPIRED,myCauses.get(Long.toString(timesToLive[i])));
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	sweepExpiresEveryLevelInOneJump()
+	{
+		final LRUCache<String,String> cache = newBuilder(LRUCache.Policy.LRU).build();
+		final long[] timesToLive = timesToLive();
+		for (int i = 0; i < timesToLive.length; ++i)
+		{
+			cache.put(Long.toString(timesToLive[i]),"v",timesToLive[i],TimeUnit.NANOSECONDS);
+		}
+		cache.put("forever","v");
+
+		myTicker.advance(3,TimeUnit.HOURS);
+		cache.cleanUp();
+		for (int i = 0; i < timesToLive.length; ++i)
+		{
+			final String key = Long.toString(timesToLive[i]);
+			assertEquals(key,timesToLive[i] <= TimeUnit.HOURS.toNanos(3),myRemovals.containsKey(key));
+		}
+
+		myTicker.advance(30,TimeUnit.DAYS);
+		cache.cleanUp();
+		assertEquals(1,cache.usedEntries());
+		assertEquals("v",cache.get("forever"));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	sweepRefilesEntriesReadInTheMeantime()
+	{
+		final LRUCache<String,String> cache = newBuilder(LRUCache.Policy.LRU).expireAfterAccess(2,TimeUnit.HOURS).build();
+		cache.put("read","v");
+		cache.put("idle","v");
+
+		// the read moves the expiration time past the bucket the entry was filed in
+		myTicker.advance(90,TimeUnit.MINUTES);
+		assertEquals("v",cache.get("read"));
+		myTicker.advance(40,TimeUnit.MINUTES);
+		cache.cleanUp();
+		assertEquals(LRUCache.RemovalCause.EXPIRED,myCauses.get("idle"));
+		assertNull(myCauses.get("read"));
+
+		myTicker.advance(90,TimeUnit.MINUTES);
+		cache.cleanUp();
+		assertEquals(LRUCache.RemovalCause.EXPIRED,myCauses.get("read"));
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/** The span of a bucket on the finest level of the timer wheel, 2^30 ns. */
+	private static final long	WHEEL_RESOLUTION = 1L << 30;
+
+
+	private FakeTicker							myTicker;
+	private Map<String,Long>					myRemovals;		// the ticker's time when each key was removed
+	private Map<String,LRUCache.RemovalCause>	myCauses;
+
+
+
+	/**
+	*	A ticker that only moves when told to, starting at an arbitrary time.
+	*/
+	private static final class FakeTicker implements LRUCache.Ticker
+	{
+		public long	read()
+		{
+			return myTime;
+		}
+
+		void	advance(long duration_i, TimeUnit unit_i)
+		{
+			myTime += unit_i.toNanos(duration_i);
+		}
+
+		volatile long	myTime = 1234567890123L;
+	}
+
+
+
+	/***************************************************************************************************/
+	private LRUCache.Builder<String,String>	newBuilder(LRUCache.Policy policy_i)
+	{
+		return new LRUCache.Builder<String,String>()
+			.maximumSize(100)
+			.policy(policy_i)
+			.ticker(myTicker)
+			.removalListener(new LRUCache.RemovalListener<String,String>()
+			{
+				public void	onRemoval(String key_i, String value_i, LRUCache.RemovalCause cause_i)
+				{
+					myRemovals.put(key_i,Long.valueOf(myTicker.myTime));
+					myCauses.put(key_i,cause_i);
+				}
+			});
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Return times to live that land on each level of the timer wheel and in its overflow bucket,
+	*	some of them just past a level's span.
+	*
+	***************************************************************************************************/
+	private static long[]	timesToLive()
+	{
+		return new long[]
+		{
+			TimeUnit.MILLISECONDS.toNanos(1500),
+			TimeUnit.SECONDS.toNanos(70),
+			TimeUnit.SECONDS.toNanos(90),
+			TimeUnit.MINUTES.toNanos(65),
+			TimeUnit.MINUTES.toNanos(90),
+			TimeUnit.HOURS.toNanos(30),
+			TimeUnit.DAYS.toNanos(2),
+			TimeUnit.DAYS.toNanos(10),
+		};
+	}
+
+}
@@ -0,0 +1,287 @@
+/***************************************************************************************************
+*
+*	@(#)LRUCacheLoaderTest.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+*	Checks {@link LRUCache#get(Object,LRUCache.Loader)}: threads missing on the same key share one
+*	run of the loader, and a failure reaches every one of them but is forgotten afterwards unless
+*	the cache remembers failures.
+*/
+public class LRUCacheLoaderTest
+{
+	/***************************************************************************************************/
+	@Test
+	public void	loadsOnceForConcurrentMisses() throws Exception
+	{
+		final LRUCache<String,Object> cache = new LRUCache<String,Object>(100,THREADS);
+		for (int round = 0; round < ROUNDS; ++round)
+		{
+			final String key = "key" + round;
+			final CountingLoader loader = new CountingLoader(null);
+			final Object[] results = getOnAllThreads(cache,key,loader);
+
+			assertEquals(1,loader.myCalls.get());
+			for (int i = 0; i < THREADS; ++i)
+			{
+				assertSame(loader.myValue,results[i]);
+			}
+			assertSame(loader.myValue,cache.get(key));
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	sharesFailureOfConcurrentLoad() throws Exception
+	{
+		final LRUCache<String,Object> cache = new LRUCache<String,Object>(100,THREADS);
+		final FailingLoader loader = new FailingLoader();
+		final Object[] results = getOnAllThreads(cache,"key",loader);
+
+		// a thread arriving after a failure runs the loader again, which fails anew
+		final Set<Object> causes = new HashSet<Object>();
+		for (int i = 0; i < THREADS; ++i)
+		{
+			assertTrue(String.valueOf(results[i]),results[i] instanceof IOException);
+			causes.add(results[i]);
+		}
+		assertEquals(loader.myCalls.get(),causes.size());
+		assertTrue(Integer.toString(causes.size()),causes.size() < THREADS);
+		assertNull(cache.get("key"));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	forgetsFailure() throws Exception
+	{
+		final LRUCache<String,Object> cache = new LRUCache<String,Object>(100);
+		final IOException failure = new IOException();
+		final CountingLoader failing = new CountingLoader(failure);
+		try
+		{
+			cache.get("key",failing);
+			fail();
+		}
+		catch (ExecutionException e)
+		{
+			assertSame(failure,e.getCause());
+		}
+		assertNull(cache.get("key"));
+		assertEquals(0,cache.usedEntries());
+
+		final CountingLoader loader = new CountingLoader(null);
+		assertSame(loader.myValue,cache.get("key",loader));
+		assertEquals(1,loader.myCalls.get());
+		assertSame(loader.myValue,cache.get("key"));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	propagatesRuntimeException() throws Exception
+	{
+		final LRUCache<String,Object> cache = new LRUCache<String,Object>(100);
+		final IllegalStateException failure = new IllegalStateException();
+		try
+		{
+			cache.get("key",new CountingLoader(failure));
+			fail();
+		}
+		catch (ExecutionException e)
+		{
+			assertSame(failure,e.getCause());
+		}
+		assertEquals(0,cache.usedEntries());
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	remembersFailureWhenAsked() throws Exception
+	{
+		final long[] time = { 0 };
+		final LRUCache<String,Object> cache = new LRUCache.Builder<String,Object>()
+			.maximumSize(100)
+			.cacheLoadFailures(1,TimeUnit.MINUTES)
+			.ticker(new LRUCache.Ticker()
+			{
+				public long	read()
+				{
+					return time[0];
+				}
+			})
+			.build();
+		final CountingLoader failing = new CountingLoader(new IOException());
+		final CountingLoader loader  = new CountingLoader(null);
+
+		assertFails(cache,failing);
+		assertFails(cache,loader);
+		assertEquals(1,failing.myCalls.get());
+		assertEquals(0,loader.myCalls.get());
+
+		time[0] += TimeUnit.MINUTES.toNanos(1);
+		assertSame(loader.myValue,cache.get("key",loader));
+		assertEquals(1,loader.myCalls.get());
+
+		// removing the key forgets a remembered failure at once
+		cache.remove("key");
+		assertFails(cache,failing);
+		cache.remove("key");
+		assertSame(loader.myValue,cache.get("key",loader));
+		assertEquals(2,failing.myCalls.get());
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static final int	THREADS = 16;
+	private static final int	ROUNDS = 20;
+
+	/** How long the loader waits, so that the other threads miss while it runs. */
+	private static final long	LOAD_MILLIS = 20;
+
+
+
+	/**
+	*	Counts its calls, and returns a value of its own, or throws a given exception, after a short
+	*	wait.
+	*/
+	private static final class CountingLoader implements LRUCache.Loader<String,Object>
+	{
+		CountingLoader(Exception __failure_i)
+		{
+			myFailure = __failure_i;
+		}
+
+		public Object	load(String key_i) throws Exception
+		{
+			myCalls.incrementAndGet();
+			Thread.sleep(LOAD_MILLIS);
+			if (myFailure != null)
+			{
+				throw myFailure;
+			}
+			return myValue;
+		}
+
+		final Object			myValue = new Object();
+		final AtomicInteger		myCalls = new AtomicInteger();
+		private final Exception	myFailure;
+	}
+
+
+
+	/**
+	*	Counts its calls, and throws a new exception from each after a short wait.
+	*/
+	private static final class FailingLoader implements LRUCache.Loader<String,Object>
+	{
+		public Object	load(String key_i) throws Exception
+		{
+			myCalls.incrementAndGet();
+			Thread.sleep(LOAD_MILLIS);
+			throw new IOException();
+		}
+
+		final AtomicInteger		myCalls = new AtomicInteger();
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Ask for a key on several threads started together.
+	*
+	*		@return		What each thread got: the value, or the cause of the failure.
+	*
+	***************************************************************************************************/
+	private static Object[]	getOnAllThreads(final LRUCache<String,Object> cache_i, final String key_i, final LRUCache.Loader<String,Object> loader_i) throws InterruptedException
+	{
+		final CountDownLatch start = new CountDownLatch(1);
+		final Object[] results = new Object[THREADS];
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < THREADS; ++i)
+		{
+			final int thread = i;
+			threads.add(new Thread()
+			{
+				public void	run()
+				{
+					try
+					{
+						start.await();
+						results[thread] = cache_i.get(key_i,loader_i);
+					}
+					catch (ExecutionException e)
+					{
+						results[thread] = e.getCause();
+					}
+					catch (InterruptedException e)
+					{
+						results[thread] = e;
+					}
+				}
+			});
+		}
+		for (Thread thread : threads)
+		{
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		return results;
+	}
+
+
+
+	/***************************************************************************************************/
+	private static void	assertFails(LRUCache<String,Object> cache_i, CountingLoader loader_i)
+	{
+		try
+		{
+			cache_i.get("key",loader_i);
+			fail();
+		}
+		catch (ExecutionException e)
+		{
+			assertTrue(e.getCause() instanceof IOException);
+		}
+	}
+
+}
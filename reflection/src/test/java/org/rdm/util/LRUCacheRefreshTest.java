@@ -0,0 +1,175 @@
+/***************************************************************************************************
+*
+*	@(#)LRUCacheRefreshTest.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+/**
+*	Checks refresh-after-write in an {@link LRUCache}, with the reload run at once on the calling
+*	thread and a ticker moved by hand: the old value is served while it reloads, the reloaded
+*	value replaces it, and the expiration of the entry survives the refresh.
+*/
+public class LRUCacheRefreshTest
+{
+	/***************************************************************************************************/
+	@Before
+	public void	setUp()
+	{
+		myTime = 0;
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	servesOldValueWhileRefreshing() throws ExecutionException
+	{
+		final LRUCache<String,String> cache = newBuilder().build();
+		cache.put("a","1");
+
+		advance(30);
+		assertEquals("1",cache.get("a",loader("2")));
+		assertEquals("1",cache.get("a"));
+
+		advance(31);
+		assertEquals("1",cache.get("a",loader("2")));
+		assertEquals("2",cache.get("a"));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	keepsOldValueWhenRefreshFails() throws ExecutionException
+	{
+		final LRUCache<String,String> cache = newBuilder().build();
+		cache.put("a","1");
+
+		advance(90);
+		assertEquals("1",cache.get("a",new LRUCache.Loader<String,String>()
+		{
+			public String	load(String key_i) throws Exception
+			{
+				throw new IOException();
+			}
+		}));
+		assertEquals("1",cache.get("a"));
+
+		// the next request tries again
+		assertEquals("1",cache.get("a",loader("2")));
+		assertEquals("2",cache.get("a"));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	keepsTimeToLiveOfEntry() throws ExecutionException
+	{
+		final LRUCache<String,String> cache = newBuilder().build();
+		cache.put("a","1",10,TimeUnit.MINUTES);
+
+		advance(120);
+		assertEquals("1",cache.get("a",loader("2")));
+		assertEquals("2",cache.get("a"));
+
+		// still due to expire ten minutes after it was first stored
+		advance(479);
+		assertEquals("2",cache.get("a"));
+		advance(1);
+		assertNull(cache.get("a"));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	refreshCountsAsWriteForCacheExpiration() throws ExecutionException
+	{
+		final LRUCache<String,String> cache = newBuilder().expireAfterWrite(5,TimeUnit.MINUTES).build();
+		cache.put("a","1");
+
+		advance(120);
+		assertEquals("1",cache.get("a",loader("2")));
+
+		advance(240);
+		assertEquals("2",cache.get("a"));
+		advance(60);
+		assertNull(cache.get("a"));
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private long	myTime;		// the time read by the caches' ticker, in nanoseconds
+
+
+
+	/***************************************************************************************************
+	*
+	*	Return a builder of caches that refresh a minute after write, on the thread that asks.
+	*
+	***************************************************************************************************/
+	private LRUCache.Builder<String,String>	newBuilder()
+	{
+		return new LRUCache.Builder<String,String>()
+			.maximumSize(100)
+			.refreshAfterWrite(1,TimeUnit.MINUTES)
+			.refreshExecutor(new Executor()
+			{
+				public void	execute(Runnable command_i)
+				{
+					command_i.run();
+				}
+			})
+			.ticker(new LRUCache.Ticker()
+			{
+				public long	read()
+				{
+					return myTime;
+				}
+			});
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	advance(long seconds_i)
+	{
+		myTime += TimeUnit.SECONDS.toNanos(seconds_i);
+	}
+
+
+
+	/***************************************************************************************************/
+	private static LRUCache.Loader<String,String>	loader(final String value_i)
+	{
+		return new LRUCache.Loader<String,String>()
+		{
+			public String	load(String key_i)
+			{
+				return value_i;
+			}
+		};
+	}
+
+}
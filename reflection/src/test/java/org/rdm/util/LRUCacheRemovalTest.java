@@ -0,0 +1,313 @@
+/***************************************************************************************************
+*
+*	@(#)LRUCacheRemovalTest.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+*	Checks that the removal listener of an {@link LRUCache} hears of the entries leaving it on
+*	every path, with the cause of each.
+*/
+public class LRUCacheRemovalTest
+{
+	/***************************************************************************************************/
+	@Before
+	public void	setUp()
+	{
+		myTime     = 0;
+		myRemovals = new ArrayList<String>();
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	removeIsExplicit()
+	{
+		final LRUCache<String,String> cache = newBuilder().build();
+		cache.put("a","1");
+		cache.put("b","2");
+		assertEquals("1",cache.remove("a"));
+		assertNull(cache.remove("missing"));
+		assertRemovals("a=1 EXPLICIT");
+
+		cache.clear();
+		assertRemovals("a=1 EXPLICIT","b=2 EXPLICIT");
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	iteratorRemoveIsExplicit()
+	{
+		final LRUCache<String,String> cache = newBuilder().build();
+		cache.put("a","1");
+		final Iterator<Map.Entry<String,String>> entries = cache.iterator();
+		entries.next();
+		entries.remove();
+		assertRemovals("a=1 EXPLICIT");
+		assertEquals(0,cache.usedEntries());
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	putOverValueIsReplaced()
+	{
+		final LRUCache<String,String> cache = newBuilder().build();
+		cache.put("a","1");
+		cache.put("a","2");
+		assertRemovals("a=1 REPLACED");
+		assertEquals("2",cache.get("a"));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	evictionIsSize()
+	{
+		for (LRUCache.Policy policy : LRUCache.Policy.values())
+		{
+			setUp();
+			final LRUCache<String,String> cache = newBuilder().maximumSize(2).policy(policy).build();
+			cache.put("a","1");
+			cache.put("b","2");
+			cache.put("c","3");
+			assertEquals(policy.toString(),1,myRemovals.size());
+			assertTrue(policy + ": " + myRemovals,myRemovals.get(0).endsWith(" SIZE"));
+			assertEquals(policy.toString(),2,cache.usedEntries());
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	entryHeavierThanCacheIsSize()
+	{
+		final LRUCache<String,String> cache = newBuilder().maximumWeight(5,new LRUCache.Weigher<String,String>()
+		{
+			public int	weigh(String key_i, String value_i)
+			{
+				return value_i.length();
+			}
+		}).build();
+		cache.put("a","1");
+		cache.put("a","123456");
+		assertRemovals("a=1 REPLACED","a=123456 SIZE");
+		assertNull(cache.get("a"));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	timeRunningOutIsExpired()
+	{
+		final LRUCache<String,String> cache = newBuilder().expireAfterWrite(1,TimeUnit.MINUTES).build();
+		cache.put("a","1");
+		cache.put("b","2");
+		cache.put("c","3",2,TimeUnit.MINUTES);
+		myTime += TimeUnit.MINUTES.toNanos(1);
+
+		// found by a read, by removing it, and by the timer wheel
+		assertNull(cache.get("a"));
+		assertNull(cache.remove("b"));
+		assertRemovals("a=1 EXPIRED","b=2 EXPIRED");
+		myTime += TimeUnit.MINUTES.toNanos(2);
+		cache.cleanUp();
+		assertRemovals("a=1 EXPIRED","b=2 EXPIRED","c=3 EXPIRED");
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	collectedValueIsCollected() throws InterruptedException
+	{
+		final LRUCache<String,Object> cache = new LRUCache.Builder<String,Object>().maximumSize(10).weakValues().removalListener(new Recorder<Object>()).build();
+		cache.put("kept","1");
+		cache.put("a",new Object());
+
+		collect(cache);
+		assertRemovals("a=null COLLECTED");
+		assertEquals(1,cache.usedEntries());
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	collectedKeyIsCollected() throws InterruptedException
+	{
+		final LRUCache<Object,String> cache = new LRUCache.Builder<Object,String>().maximumSize(10).weakKeys().removalListener(new Recorder<String>()).build();
+		final Object kept = new Object();
+		cache.put(kept,"1");
+		cache.put(new Object(),"2");
+
+		collect(cache);
+		assertRemovals("null=2 COLLECTED");
+		assertEquals("1",cache.get(kept));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	listenerRunsAfterEntryHasLeft()
+	{
+		final LRUCache<String,String>[] cache = newCacheArray();
+		final List<String> seen = new ArrayList<String>();
+		cache[0] = new LRUCache.Builder<String,String>().maximumSize(10).removalListener(new LRUCache.RemovalListener<String,String>()
+		{
+			public void	onRemoval(String key_i, String value_i, LRUCache.RemovalCause cause_i)
+			{
+				// the cache is usable from here, and no longer holds the entry
+				seen.add(key_i + "=" + cache[0].get(key_i));
+				cache[0].put("from listener","x");
+			}
+		}).build();
+		cache[0].put("a","1");
+		cache[0].remove("a");
+		assertEquals("[a=null]",seen.toString());
+		assertEquals("x",cache[0].get("from listener"));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	listenerFailureIsIgnored()
+	{
+		final LRUCache<String,String> cache = new LRUCache.Builder<String,String>().maximumSize(10).removalListener(new LRUCache.RemovalListener<String,String>()
+		{
+			public void	onRemoval(String key_i, String value_i, LRUCache.RemovalCause cause_i)
+			{
+				throw new IllegalStateException();
+			}
+		}).build();
+		cache.put("a","1");
+		cache.put("a","2");
+		assertEquals("2",cache.remove("a"));
+		assertEquals(0,cache.usedEntries());
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	onlyDroppedEntriesWereEvicted()
+	{
+		assertFalse(LRUCache.RemovalCause.EXPLICIT.wasEvicted());
+		assertFalse(LRUCache.RemovalCause.REPLACED.wasEvicted());
+		assertTrue(LRUCache.RemovalCause.SIZE.wasEvicted());
+		assertTrue(LRUCache.RemovalCause.EXPIRED.wasEvicted());
+		assertTrue(LRUCache.RemovalCause.COLLECTED.wasEvicted());
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/** How many times the garbage collector is asked to take an unreachable key or value. */
+	private static final int	COLLECTION_ATTEMPTS = 50;
+
+
+	private long			myTime;			// the time read by the caches' ticker, in nanoseconds
+	private List<String>	myRemovals;		// "key=value CAUSE" for each removal heard of
+
+
+
+	/**
+	*	Records the removals it hears of.
+	*/
+	private final class Recorder<V> implements LRUCache.RemovalListener<Object,V>
+	{
+		public void	onRemoval(Object key_i, V value_i, LRUCache.RemovalCause cause_i)
+		{
+			myRemovals.add(key_i + "=" + value_i + " " + cause_i);
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	private LRUCache.Builder<String,String>	newBuilder()
+	{
+		return new LRUCache.Builder<String,String>()
+			.maximumSize(10)
+			.removalListener(new Recorder<String>())
+			.ticker(new LRUCache.Ticker()
+			{
+				public long	read()
+				{
+					return myTime;
+				}
+			});
+	}
+
+
+
+	/***************************************************************************************************/
+	@SuppressWarnings("unchecked")
+	private static LRUCache<String,String>[]	newCacheArray()
+	{
+		return new LRUCache[1];
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Run the garbage collector until the cache has heard of a removal, cleaning it up after each
+	*	run.
+	*
+	***************************************************************************************************/
+	private void	collect(LRUCache<?,?> cache_i) throws InterruptedException
+	{
+		for (int i = 0; (i < COLLECTION_ATTEMPTS) && myRemovals.isEmpty(); ++i)
+		{
+			System.gc();
+			Thread.sleep(10);
+			cache_i.cleanUp();
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	private void	assertRemovals(String... removals_i)
+	{
+		final List<String> expected = new ArrayList<String>();
+		for (String removal : removals_i)
+		{
+			expected.add(removal);
+		}
+		assertEquals(expected,myRemovals);
+	}
+
+}
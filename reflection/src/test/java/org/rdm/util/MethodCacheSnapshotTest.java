@@ -0,0 +1,129 @@
+/***************************************************************************************************
+*
+*	@(#)MethodCacheSnapshotTest.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+*	Checks that the lookups of the method cache, saved to a file, are restored by a later run,
+*	whatever the types of their parameters.
+*/
+public class MethodCacheSnapshotTest
+{
+	/** The class whose methods are looked up. */
+	public static final class Target
+	{
+		public int	twice(int value_i)
+		{
+			return 2 * value_i;
+		}
+
+		public String	echo(String value_i)
+		{
+			return value_i;
+		}
+
+		public boolean	isNull(Object value_i)
+		{
+			return value_i == null;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	@Before
+	public void	setUp() throws IOException
+	{
+		myFile = File.createTempFile("methods",".snapshot");
+	}
+
+
+
+	/***************************************************************************************************/
+	@After
+	public void	tearDown()
+	{
+		myFile.delete();
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	primitiveTypeNamesAreKnown() throws ClassNotFoundException
+	{
+		assertEquals(Integer.TYPE,ReflectionUtils.classForTypeName("int",null));
+		assertEquals(Boolean.TYPE,ReflectionUtils.classForTypeName("boolean",null));
+		assertEquals(Void.TYPE,ReflectionUtils.classForTypeName("void",null));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	restoresMethodWithPrimitiveParameter() throws Exception
+	{
+		assertRestored(new MethodKey(Target.class,"twice",new Class[] { Integer.TYPE }),Target.class.getMethod("twice",Integer.TYPE));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	restoresMethodWithObjectParameter() throws Exception
+	{
+		assertRestored(new MethodKey(Target.class,"echo",new Class[] { String.class }),Target.class.getMethod("echo",String.class));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	restoresLookupWithNullArgument() throws Exception
+	{
+		// a null argument is looked up as void (see ReflectionUtils.getParameterTypes)
+		assertRestored(new MethodKey(Target.class,"isNull",new Class[] { Void.TYPE }),Target.class.getMethod("isNull",Object.class));
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static final long	VERSION = 1;
+
+	private File				myFile;
+
+
+
+	/***************************************************************************************************/
+	private void	assertRestored(MethodKey key_i, Method method_i) throws IOException
+	{
+		final LRUCache<MethodKey,Method> saved = new LRUCache<MethodKey,Method>(10);
+		saved.put(key_i,method_i);
+		saved.saveSnapshot(myFile,ReflectionUtils.ourMethodCodec,VERSION);
+
+		final LRUCache<MethodKey,Method> restored = new LRUCache<MethodKey,Method>(10);
+		assertTrue(restored.restoreSnapshot(myFile,ReflectionUtils.ourMethodCodec,VERSION));
+		assertEquals(method_i,restored.get(key_i));
+	}
+
+}
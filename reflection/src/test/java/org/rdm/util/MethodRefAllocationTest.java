@@ -0,0 +1,170 @@
+/***************************************************************************************************
+*
+*	@(#)MethodRefAllocationTest.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+*	Checks that the primitive-slot calls of a {@link MethodRef} allocate nothing once the method
+*	has a generated invoker, counting the bytes the calling thread allocates around them.  The
+*	test is skipped on a JVM that cannot count them.
+*/
+public class MethodRefAllocationTest
+{
+	/**
+	*	The object called.  Public, so that the generated invokers, which are defined by their own
+	*	class loader, may call it.
+	*/
+	public static final class Target
+	{
+		public int	add(int a_i, int b_i)
+		{
+			return a_i + b_i;
+		}
+
+		public boolean	isLongerThan(String string_i, int length_i)
+		{
+			return string_i.length() > length_i;
+		}
+
+		public boolean	not(boolean value_i)
+		{
+			return !value_i;
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	@Before
+	public void	setUp()
+	{
+		Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		myThreads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(myThreads.isThreadAllocatedMemorySupported());
+		myThreads.setThreadAllocatedMemoryEnabled(true);
+
+		MethodRef.setInflationThreshold(INFLATION_THRESHOLD);
+	}
+
+
+
+	/***************************************************************************************************/
+	@After
+	public void	tearDown()
+	{
+		MethodRef.setInflationThreshold(0);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	invokeIntSlotsAllocatesNothing()
+	{
+		final MethodRef add = new MethodRef(Target.class,"add",int.class,int.class);
+		final Target target = new Target();
+
+		sumOfAdds(add,target,WARMUP_CALLS);
+		final long before = allocatedBytes();
+		final long sum = sumOfAdds(add,target,CALLS);
+		final long allocated = allocatedBytes() - before - myMeasurementBytes;
+
+		assertEquals((long)CALLS * (CALLS - 1) / 2 + CALLS,sum);
+		assertEquals(0,allocated);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	invokeBooleanSlotsAllocatesNothing()
+	{
+		final MethodRef isLongerThan = new MethodRef(Target.class,"isLongerThan",String.class,int.class);
+		final MethodRef not = new MethodRef(Target.class,"not",boolean.class);
+		final Target target = new Target();
+
+		countOfTrues(isLongerThan,not,target,WARMUP_CALLS);
+		final long before = allocatedBytes();
+		final int count = countOfTrues(isLongerThan,not,target,CALLS);
+		final long allocated = allocatedBytes() - before - myMeasurementBytes;
+
+		assertEquals(CALLS,count);
+		assertEquals(0,allocated);
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/** Low, so that the warmup calls run through the generated invoker and get compiled. */
+	private static final int	INFLATION_THRESHOLD = 100;
+	private static final int	WARMUP_CALLS = 20000;
+	private static final int	CALLS = 100000;
+
+	private com.sun.management.ThreadMXBean	myThreads;
+	private long							myMeasurementBytes;		// what reading the count allocates itself
+
+
+
+	/***************************************************************************************************/
+	private long	allocatedBytes()
+	{
+		final long id = Thread.currentThread().getId();
+		final long first = myThreads.getThreadAllocatedBytes(id);
+		final long second = myThreads.getThreadAllocatedBytes(id);
+		myMeasurementBytes = second - first;
+		return second;
+	}
+
+
+
+	/***************************************************************************************************/
+	private static long	sumOfAdds(MethodRef add_i, Target target_i, int calls_i)
+	{
+		long sum = 0;
+		for (int i = 0; i < calls_i; ++i)
+		{
+			sum += add_i.invokeIntSlots(target_i,i,1);
+		}
+		return sum;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*		@return		The number of iterations in which a call returned <CODE>true</CODE>: all of them.
+	*
+	***************************************************************************************************/
+	private static int	countOfTrues(MethodRef isLongerThan_i, MethodRef not_i, Target target_i, int calls_i)
+	{
+		int count = 0;
+		for (int i = 0; i < calls_i; ++i)
+		{
+			// one of the two calls returns true
+			if (isLongerThan_i.invokeBooleanSlots(target_i,"abcd",(i & 1) * 4) || not_i.invokeBooleanSlots(target_i,0))
+			{
+				++count;
+			}
+		}
+		return count;
+	}
+
+}
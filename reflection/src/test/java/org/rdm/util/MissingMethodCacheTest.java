@@ -0,0 +1,166 @@
+/***************************************************************************************************
+*
+*	@(#)MissingMethodCacheTest.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+
+/**
+*	Checks that the method cache of {@link ReflectionUtils} remembers that a method is missing, for
+*	as long as it is told to, and never remembers a request that several methods match equally
+*	well.  Each search of a class follows a miss of the cache, so the searches are counted from
+*	its statistics.
+*/
+public class MissingMethodCacheTest
+{
+	/** The class searched; every test looks up names of its own, since the cache is shared. */
+	public static final class Target
+	{
+		public void	present(String value_i)
+		{
+		}
+
+		public void	either(String first_i, Object second_i)
+		{
+		}
+
+		public void	either(Object first_i, String second_i)
+		{
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	@After
+	public void	tearDown()
+	{
+		ReflectionUtils.setMissingMethodTimeToLive(0,TimeUnit.NANOSECONDS);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	missingMethodIsCached()
+	{
+		final long searches = searchCount();
+		assertNull(find("missing"));
+		assertEquals(searches + 1,searchCount());
+
+		final long hits = ReflectionUtils.getMethodCacheStats().hitCount();
+		for (int i = 0; i < 10; ++i)
+		{
+			assertNull(find("missing"));
+		}
+		assertEquals(searches + 1,searchCount());
+		assertEquals(hits + 10,ReflectionUtils.getMethodCacheStats().hitCount());
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	missingMethodIsForgottenAfterTimeToLive() throws InterruptedException
+	{
+		ReflectionUtils.setMissingMethodTimeToLive(TIME_TO_LIVE_MILLIS,TimeUnit.MILLISECONDS);
+		final long searches = searchCount();
+		assertNull(find("missingForAWhile"));
+		assertNull(find("missingForAWhile"));
+		assertEquals(searches + 1,searchCount());
+
+		Thread.sleep(4 * TIME_TO_LIVE_MILLIS);
+		assertNull(find("missingForAWhile"));
+		assertEquals(searches + 2,searchCount());
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	forgetMissingMethodsSearchesAgain()
+	{
+		assertNotNull(find("present"));
+		final long searches = searchCount();
+		assertNull(find("missingUntilForgotten"));
+		assertEquals(searches + 1,searchCount());
+
+		ReflectionUtils.forgetMissingMethods();
+		assertNull(find("missingUntilForgotten"));
+		assertEquals(searches + 2,searchCount());
+
+		// the methods found are kept
+		assertNotNull(find("present"));
+		assertEquals(searches + 2,searchCount());
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	ambiguousMatchIsNotCached()
+	{
+		final Class[] types = { String.class, String.class };
+		final long searches = searchCount();
+		for (int i = 1; i <= 3; ++i)
+		{
+			assertNull(ReflectionUtils.findMethodThatBestMatches(Target.class,"either",types));
+			assertEquals(searches + i,searchCount());
+		}
+
+		// and each lookup reports it
+		try
+		{
+			ReflectionUtils.geMethodThatBestMatches(Target.class,"either",types);
+			fail();
+		}
+		catch (NoSuchMethodException e)
+		{
+			assertEquals(searches + 4,searchCount());
+		}
+		catch (Exception e)
+		{
+			throw new AssertionError(e);
+		}
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static final long	TIME_TO_LIVE_MILLIS = 50;
+
+
+
+	/***************************************************************************************************/
+	private static long	searchCount()
+	{
+		return ReflectionUtils.getMethodCacheStats().missCount();
+	}
+
+
+
+	/***************************************************************************************************/
+	private static Method	find(String methodName_i)
+	{
+		return ReflectionUtils.findMethodThatBestMatches(Target.class,methodName_i,new Class[] { String.class });
+	}
+
+}
@@ -0,0 +1,155 @@
+/***************************************************************************************************
+*
+*	@(#)ReflectionObjectTest.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.lang.ref.WeakReference;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+
+/**
+*	Checks how a {@link ReflectionObject} resolves the class it wraps: once per subclass, with a
+*	missing class remembered without the object that asked for it, and a class failing to
+*	initialize reported as such.
+*/
+public class ReflectionObjectTest
+{
+	/** Wraps a class of this library. */
+	public static final class Present extends ReflectionObject
+	{
+		public Present()
+		{
+			super();
+		}
+
+		public String	className()
+		{
+			return StringBuilder.class.getName();
+		}
+	}
+
+
+
+	/** Wraps a class missing from this system, and remembers the last object asking for it. */
+	public static final class Missing extends ReflectionObject
+	{
+		public Missing()
+		{
+			super();
+		}
+
+		public String	className()
+		{
+			ourLastAsking = new WeakReference<Object>(this);
+			return "org.rdm.util.ReflectionObjectTest$NoSuchClass";
+		}
+
+		static WeakReference<Object>	ourLastAsking;
+	}
+
+
+
+	/** Wraps a class whose static initializer fails. */
+	public static final class Failing extends ReflectionObject
+	{
+		public Failing()
+		{
+			super();
+		}
+
+		public String	className()
+		{
+			return FailsToInitialize.class.getName();
+		}
+	}
+
+
+
+	/** Cannot be initialized. */
+	public static final class FailsToInitialize
+	{
+		static
+		{
+			if (true)
+			{
+				throw new IllegalStateException("cannot initialize");
+			}
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	wrapsPresentClass()
+	{
+		final Present present = new Present();
+		assertSame(StringBuilder.class,present.mClass);
+		assertEquals(StringBuilder.class,present.getObject().getClass());
+		assertSame(present.mClass,new Present().mClass);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	missingClassDoesNotKeepObject() throws InterruptedException
+	{
+		for (int i = 0; i < 2; ++i)
+		{
+			try
+			{
+				new Missing();
+				fail();
+			}
+			catch (NullPointerException expected)
+			{
+			}
+		}
+
+		for (int i = 0; (i < COLLECTION_ATTEMPTS) && (Missing.ourLastAsking.get() != null); ++i)
+		{
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(Missing.ourLastAsking.get());
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	initializationFailureIsNotMissingClass()
+	{
+		try
+		{
+			new Failing();
+			fail();
+		}
+		catch (ExceptionInInitializerError e)
+		{
+			assertEquals("cannot initialize",e.getCause().getMessage());
+		}
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/** How many times the garbage collector is asked to take an unreachable object. */
+	private static final int	COLLECTION_ATTEMPTS = 50;
+
+}
@@ -0,0 +1,248 @@
+/***************************************************************************************************
+*
+*	@(#)WindowTinyLfuPolicyTest.java
+*
+***************************************************************************************************/
+package org.rdm.util;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+*	Checks how a {@link WindowTinyLfuPolicy} divides its weight between the window and the main
+*	area, and that a cache using it keeps its frequently read entries through a scan of one-off
+*	keys that flushes them out of an LRU cache.
+*/
+public class WindowTinyLfuPolicyTest
+{
+	/***************************************************************************************************/
+	@Test
+	public void	windowTakesOnePercent()
+	{
+		final WindowTinyLfuPolicy<Integer,Integer> policy = new WindowTinyLfuPolicy<Integer,Integer>(1000);
+		final List<LinkedNode<Integer,Integer>> nodes = insert(policy,0,1000);
+
+		assertEquals(10,count(nodes,WindowTinyLfuPolicy.WINDOW));
+		assertEquals(990,count(nodes,WindowTinyLfuPolicy.PROBATION));
+		assertEquals(0,count(nodes,WindowTinyLfuPolicy.PROTECTED));
+
+		// the newest nodes are in the window, the eldest go first
+		for (int i = 990; i < 1000; ++i)
+		{
+			assertEquals(WindowTinyLfuPolicy.WINDOW,nodes.get(i).myQueue);
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	protectedTakesEightyPercentOfMain()
+	{
+		final WindowTinyLfuPolicy<Integer,Integer> policy = new WindowTinyLfuPolicy<Integer,Integer>(1000);
+		final List<LinkedNode<Integer,Integer>> nodes = insert(policy,0,1000);
+
+		// reading a probation node protects it, up to 80% of the main area's 990
+		for (int i = 0; i < 900; ++i)
+		{
+			policy.onAccess(nodes.get(i));
+		}
+		assertEquals(10,count(nodes,WindowTinyLfuPolicy.WINDOW));
+		assertEquals(792,count(nodes,WindowTinyLfuPolicy.PROTECTED));
+		assertEquals(198,count(nodes,WindowTinyLfuPolicy.PROBATION));
+
+		// the overflow was demoted from the front of the protected list
+		for (int i = 0; i < 108; ++i)
+		{
+			assertEquals(WindowTinyLfuPolicy.PROBATION,nodes.get(i).myQueue);
+		}
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	smallCacheKeepsOneWindowEntry()
+	{
+		final WindowTinyLfuPolicy<Integer,Integer> policy = new WindowTinyLfuPolicy<Integer,Integer>(10);
+		final List<LinkedNode<Integer,Integer>> nodes = insert(policy,0,10);
+		assertEquals(1,count(nodes,WindowTinyLfuPolicy.WINDOW));
+		assertEquals(9,count(nodes,WindowTinyLfuPolicy.PROBATION));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	evictsCandidateUsedLessThanVictim()
+	{
+		final WindowTinyLfuPolicy<Integer,Integer> policy = new WindowTinyLfuPolicy<Integer,Integer>(100);
+		final List<LinkedNode<Integer,Integer>> nodes = readMainTwice(policy);
+
+		// a new key pushes the window's eldest out; it was used once, less than the main area's
+		insert(policy,100,101);
+		assertEquals(nodes.get(99),policy.selectVictim());
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	admitsCandidateUsedMoreThanVictim()
+	{
+		final WindowTinyLfuPolicy<Integer,Integer> policy = new WindowTinyLfuPolicy<Integer,Integer>(100);
+		final List<LinkedNode<Integer,Integer>> nodes = readMainTwice(policy);
+		for (int i = 0; i < 5; ++i)
+		{
+			policy.onAccess(nodes.get(99));
+		}
+
+		// the candidate moves into the main area, whose eldest probation node goes instead
+		insert(policy,100,101);
+		assertEquals(nodes.get(0),policy.selectVictim());
+		assertEquals(WindowTinyLfuPolicy.PROBATION,nodes.get(99).myQueue);
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	frequentEntriesSurviveScan()
+	{
+		assertEquals(HOT_KEYS,hotKeysAfterScan(LRUCache.Policy.WINDOW_TINY_LFU));
+	}
+
+
+
+	/***************************************************************************************************/
+	@Test
+	public void	scanFlushesLruCache()
+	{
+		// the same load without admission, to show that the scan is long enough to matter
+		assertEquals(0,hotKeysAfterScan(LRUCache.Policy.LRU));
+	}
+
+
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	//	IMPLEMENTATION DETAILS -- NO EXTERNAL REFERENCE TO THE FOLLOWING INFORMATION SHOULD BE MADE.
+	//
+	////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static final int	CAPACITY = 100;
+	private static final int	HOT_KEYS = 20;
+	private static final int	SCAN_KEYS = 20000;
+
+	/** Further apart than the capacity, so that LRU has evicted a hot key before it is read again. */
+	private static final int	HOT_READ_INTERVAL = 200;
+
+
+
+	/***************************************************************************************************
+	*
+	*	Insert nodes of weight one for a range of keys, as a segment would.
+	*
+	***************************************************************************************************/
+	private static List<LinkedNode<Integer,Integer>>	insert(WindowTinyLfuPolicy<Integer,Integer> policy_i, int from_i, int to_i)
+	{
+		final List<LinkedNode<Integer,Integer>> nodes = new ArrayList<LinkedNode<Integer,Integer>>();
+		for (int key = from_i; key < to_i; ++key)
+		{
+			final LinkedNode<Integer,Integer> node = (LinkedNode<Integer,Integer>)policy_i.newNode(Integer.valueOf(key),false);
+			node.myWeight = 1;
+			policy_i.onInsert(node);
+			nodes.add(node);
+		}
+		return nodes;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Fill a policy of weight 100, and read twice each node of its main area.  Node 99 is left
+	*	alone in the window.
+	*
+	***************************************************************************************************/
+	private static List<LinkedNode<Integer,Integer>>	readMainTwice(WindowTinyLfuPolicy<Integer,Integer> policy_i)
+	{
+		final List<LinkedNode<Integer,Integer>> nodes = insert(policy_i,0,100);
+		for (int i = 0; i < 99; ++i)
+		{
+			policy_i.onAccess(nodes.get(i));
+			policy_i.onAccess(nodes.get(i));
+		}
+		assertEquals(WindowTinyLfuPolicy.WINDOW,nodes.get(99).myQueue);
+		return nodes;
+	}
+
+
+
+	/***************************************************************************************************/
+	private static int	count(List<LinkedNode<Integer,Integer>> nodes_i, byte queue_i)
+	{
+		int count = 0;
+		for (LinkedNode<Integer,Integer> node : nodes_i)
+		{
+			if (node.myQueue == queue_i)
+			{
+				++count;
+			}
+		}
+		return count;
+	}
+
+
+
+	/***************************************************************************************************
+	*
+	*	Read a few keys often, then store many keys once each while still reading the first ones
+	*	now and then.
+	*
+	*		@return		The number of the frequently read keys still held at the end.
+	*
+	***************************************************************************************************/
+	private static int	hotKeysAfterScan(LRUCache.Policy policy_i)
+	{
+		final LRUCache<Integer,Integer> cache = new LRUCache.Builder<Integer,Integer>().maximumSize(CAPACITY).policy(policy_i).build();
+		for (int key = 0; key < HOT_KEYS; ++key)
+		{
+			cache.put(Integer.valueOf(key),Integer.valueOf(key));
+			for (int i = 0; i < 10; ++i)
+			{
+				cache.get(Integer.valueOf(key));
+			}
+		}
+
+		for (int i = 0; i < SCAN_KEYS; ++i)
+		{
+			final Integer key = Integer.valueOf(HOT_KEYS + i);
+			cache.put(key,key);
+			if ((i % HOT_READ_INTERVAL) == 0)
+			{
+				for (int hot = 0; hot < HOT_KEYS; ++hot)
+				{
+					cache.get(Integer.valueOf(hot));
+				}
+			}
+		}
+
+		int held = 0;
+		for (int key = 0; key < HOT_KEYS; ++key)
+		{
+			if (cache.containsKey(Integer.valueOf(key)))
+			{
+				++held;
+			}
+		}
+		return held;
+	}
+
+}
@@ -4,6 +4,8 @@ import android.net.wifi.WifiConfiguration;
 import android.os.Parcel;
 import android.util.Log;
 
+import org.rdm.util.ReflectedClass;
+import org.rdm.util.ReflectedMethod;
 import org.rdm.util.ReflectionObject;
 import org.rdm.util.ReflectionUtils;
 
@@ -282,51 +284,70 @@ public class WifiConfigurationWrapper
      * ****** Wrapped helper classes ********
      */
 
-    public static class LinkPropertiesWrapped extends ReflectionObject
+    // The members of the hidden classes; the reflection processor generates the
+    // wrappers that call them (AndroidLinkPropertiesWrapped, etc.)
+
+    @ReflectedClass("android.net.LinkProperties")
+    interface AndroidLinkProperties
     {
-        public String className() { return "android.net.LinkProperties"; }
+        void setHttpProxy(@ReflectedClass("android.net.ProxyProperties") ProxyPropertiesWrapped proxyPropertiesWrapped);
 
-        public LinkPropertiesWrapped(Object object) throws ClassNotFoundException
-        {
-            super(object);
-        }
+        void addLinkAddress(@ReflectedClass("android.net.LinkAddress") LinkAddressWrapped linkAddressWrapped);
 
-        void setHttpProxy(ProxyPropertiesWrapped proxyPropertiesWrapped)
-        {
-            invokeVoidMethod("setHttpProxy", proxyPropertiesWrapped.getObject());
-        }
+        void addRoute(@ReflectedClass("android.net.RouteInfo") RouteInfoWrapped routeInfoWrapped);
 
-        void addLinkAddress(LinkAddressWrapped linkAddressWrapped)
-        {
-            invokeVoidMethod("addLinkAddress", linkAddressWrapped.getObject());
-        }
+        void addDns(InetAddress inetAddress);
 
-        void addRoute(RouteInfoWrapped routeInfoWrapped)
-        {
-            invokeVoidMethod("addRoute", routeInfoWrapped.getObject());
-        }
+        Collection<InetAddress> getAddresses();
 
-        void addDns(InetAddress inetAddress)
-        {
-            invokeVoidMethod("addDns", inetAddress);
-        }
+        // Returns Collection<android.net.LinkAddress>
+        Collection<?> getLinkAddresses();
 
-        @SuppressWarnings("unchecked")
-        public Collection<InetAddress> getAddresses()
-        {
-            return (Collection<InetAddress>) invokeObjectMethod("getAddresses");
-        }
+        @ReflectedMethod("getHttpProxy")
+        Object getHttpProxyObject();
 
-        @SuppressWarnings("unchecked")
-        // Returns Collection<android.net.LinkAddress>
-        public Collection getLinkAddresses()
+        @ReflectedMethod("getDnses")
+        Collection<InetAddress> getDnsCollection();
+
+        // Returns Collection<android.net.RouteInfo>
+        @ReflectedMethod("getRoutes")
+        Collection<?> getRouteCollection();
+    }
+
+    @ReflectedClass("android.net.ProxyProperties")
+    interface AndroidProxyProperties
+    {
+        String getHost();
+
+        int getPort();
+    }
+
+    @ReflectedClass("android.net.LinkAddress")
+    interface AndroidLinkAddress
+    {
+        InetAddress getAddress();
+
+        int getNetworkPrefixLength();
+    }
+
+    @ReflectedClass("android.net.RouteInfo")
+    interface AndroidRouteInfo
+    {
+        InetAddress getGateway();
+
+        boolean isDefaultRoute();
+    }
+
+    public static class LinkPropertiesWrapped extends AndroidLinkPropertiesWrapped
+    {
+        public LinkPropertiesWrapped(Object object) throws ClassNotFoundException
         {
-            return (Collection) invokeObjectMethod("getLinkAddresses");
+            super(object);
         }
 
         public ProxyPropertiesWrapped getHttpProxy() throws ClassNotFoundException
         {
-            Object o = invokeObjectMethod("getHttpProxy");
+            Object o = getHttpProxyObject();
             if (o == null)
             {
                 return null;
@@ -334,12 +355,11 @@ public class WifiConfigurationWrapper
             return new ProxyPropertiesWrapped(o);
         }
 
-        @SuppressWarnings("unchecked")
         public ArrayList<InetAddress> getDnses()
         {
             // Make a new list so it can be compared to another list of DNS addresses
             ArrayList<InetAddress> dnses = new ArrayList<>();
-            for (InetAddress address : (Collection<InetAddress>) invokeObjectMethod("getDnses"))
+            for (InetAddress address : getDnsCollection())
             {
                 dnses.add(address);
             }
@@ -351,7 +371,7 @@ public class WifiConfigurationWrapper
             ArrayList<RouteInfoWrapped> routes = new ArrayList<>(1);
             try
             {
-                for (Object route : (Collection) invokeObjectMethod("getRoutes"))
+                for (Object route : getRouteCollection())
                 {
                     routes.add(new RouteInfoWrapped(route));
                 }
@@ -364,10 +384,8 @@ public class WifiConfigurationWrapper
         }
     }
 
-    public static class ProxyPropertiesWrapped extends ReflectionObject
+    public static class ProxyPropertiesWrapped extends AndroidProxyPropertiesWrapped
     {
-        public final String className() { return "android.net.ProxyProperties"; }
-
         public ProxyPropertiesWrapped(Object object) throws ClassNotFoundException
         {
             super(object);
@@ -378,22 +396,10 @@ public class WifiConfigurationWrapper
         {
             super(new Class[] {String.class, int.class, String.class}, host, port, exclusionList);
         }
-
-        public String getHost()
-        {
-            return invokeStringMethod("getHost");
-        }
-
-        public int getPort()
-        {
-            return invokeIntMethod("getPort");
-        }
     }
 
-    public static class LinkAddressWrapped extends ReflectionObject
+    public static class LinkAddressWrapped extends AndroidLinkAddressWrapped
     {
-        public final String className() { return "android.net.LinkAddress"; }
-
         public LinkAddressWrapped(Object object) throws ClassNotFoundException
         {
             super(object);
@@ -404,22 +410,10 @@ public class WifiConfigurationWrapper
         {
             super(new Class[] {InetAddress.class, int.class}, inetAddress, prefixLength);
         }
-
-        public InetAddress getAddress()
-        {
-            return invokeInetAddressMethod("getAddress");
-        }
-
-        public int getNetworkPrefixLength()
-        {
-            return invokeIntMethod("getNetworkPrefixLength");
-        }
     }
 
-    public static class RouteInfoWrapped extends ReflectionObject
+    public static class RouteInfoWrapped extends AndroidRouteInfoWrapped
     {
-        public final String className() { return "android.net.RouteInfo"; }
-
         public RouteInfoWrapped(Object object) throws ClassNotFoundException
         {
             super(object);
@@ -429,16 +423,6 @@ public class WifiConfigurationWrapper
         {
             super(new Class[] {InetAddress.class}, inetAddress);
         }
-
-        public InetAddress getGateway()
-        {
-            return invokeInetAddressMethod("getGateway");
-        }
-
-        public boolean isDefaultRoute()
-        {
-            return invokeBooleanMethod("isDefaultRoute");
-        }
     }
 
     /**